@@ -1,3 +1,5 @@
+import java.io.ByteArrayOutputStream
+
 plugins {
     java
     application
@@ -49,7 +51,58 @@ tasks.jar {
     archiveFileName.set("cli.jar")
 }
 
+// Class data sharing archive of the classes loaded by a typical session (JDK 13+).
+// The launcher in bin/cli uses it when it exists, which cuts the JVM startup time
+tasks.register<Exec>("cdsArchive") {
+    group = "Distribution"
+    description = "Generate an AppCDS archive for cli.jar from a training run"
+    dependsOn(tasks.jar)
+
+    val jar = tasks.jar.get().archiveFile.get().asFile
+    val archive = layout.buildDirectory.file("libs/cli.jsa").get().asFile
+    inputs.file(jar)
+    inputs.file("src/cds/training.txt")
+    outputs.file(archive)
+
+    workingDir = projectDir
+    standardOutput = ByteArrayOutputStream()
+    doFirst {
+        standardInput = file("src/cds/training.txt").inputStream()
+    }
+    commandLine("java", "-XX:ArchiveClassesAtExit=${archive.absolutePath}", "-Xshare:auto", "-jar", jar.absolutePath)
+}
+
 tasks.test {
     useJUnitPlatform()
 }
 
+// End-to-end soak test: the harness in src/perf runs the scripts of src/perf/scripts through
+// separate interpreter processes over a synthetic log and fails when a metric regresses
+// against src/perf/baseline.properties
+sourceSets {
+    create("perf") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+tasks.register<JavaExec>("perfTest") {
+    group = "Verification"
+    description = "Measure throughput, latency, RSS and GC pauses of the CLI (-Pperf.size=2g, -Pperf.updateBaseline=true)"
+    classpath = sourceSets["perf"].runtimeClasspath
+    mainClass.set("org.cli.PerfTest")
+    workingDir = projectDir
+
+    val interpreterClasspath = sourceSets.main.get().runtimeClasspath
+    inputs.files(interpreterClasspath)
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-Dperf.classpath=${interpreterClasspath.asPath}")
+    })
+    systemProperty("perf.dir", layout.buildDirectory.dir("perf").get().asFile.absolutePath)
+    systemProperty("perf.scripts", file("src/perf/scripts").absolutePath)
+    systemProperty("perf.baseline", file("src/perf/baseline.properties").absolutePath)
+    listOf("perf.size", "perf.tolerance", "perf.runs", "perf.updateBaseline", "perf.jvmArgs").forEach { name ->
+        project.findProperty(name)?.let { systemProperty(name, it) }
+    }
+}
+
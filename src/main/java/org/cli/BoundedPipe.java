@@ -0,0 +1,216 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// BoundedPipe connects two pipeline stages running in the same JVM.
+// The buffer has a fixed capacity: a writer blocks while it is full, so a slow consumer
+// slows the producer down instead of letting the data pile up in memory.
+// Closing the reading side is the cancellation signal: every following write fails with
+// BrokenPipeException, which stops the upstream stage.
+// The buffer is borrowed from the BufferPool and returned when both sides are closed.
+class BoundedPipe implements PipelineLink {
+
+    // Default capacity of the pipe buffer, the same as the Linux pipe buffer
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final int capacity;
+    // null once both sides are closed and the buffer is back in the pool
+    private byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // index of the next byte to read and number of stored bytes
+    private int head;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+    // error of the writer, the reader gets it after the buffered data instead of end of stream
+    private IOException failure;
+
+    private final InputStream source = new Source();
+    private final OutputStream sink = new Sink();
+
+    BoundedPipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    BoundedPipe(int capacity) {
+        this.capacity = capacity;
+        this.buffer = BufferPool.shared().borrow(capacity);
+    }
+
+    // Reading side of the pipe (stdin of the downstream stage)
+    @Override
+    public InputStream source() {
+        return source;
+    }
+
+    // Writing side of the pipe (stdout of the upstream stage)
+    @Override
+    public OutputStream sink() {
+        return sink;
+    }
+
+    // Closes the reading side: the downstream stage is done, the upstream one should stop
+    @Override
+    public void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            count = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+            releaseIfClosed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closes the writing side: the upstream stage is done, the downstream one gets end of stream
+    @Override
+    public void closeWriter() {
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+            releaseIfClosed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closes the writing side because the writer failed, the reader gets the error instead of end of stream
+    void closeWriter(IOException failure) {
+        lock.lock();
+        try {
+            this.failure = failure;
+            writerClosed = true;
+            notEmpty.signalAll();
+            releaseIfClosed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Nobody reads or writes the buffer after both sides are closed, it goes back to the pool
+    private void releaseIfClosed() {
+        if (readerClosed && writerClosed && buffer != null) {
+            BufferPool.shared().release(buffer);
+            buffer = null;
+        }
+    }
+
+    private class Source extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                while (count == 0) {
+                    if (readerClosed) {
+                        throw new IOException("Pipe closed");
+                    }
+                    if (writerClosed) {
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        return -1;
+                    }
+                    await(notEmpty);
+                }
+                int read = Math.min(length, count);
+                int first = Math.min(read, capacity - head);
+                System.arraycopy(buffer, head, bytes, offset, first);
+                System.arraycopy(buffer, 0, bytes, offset + first, read - first);
+                head = (head + read) % capacity;
+                count -= read;
+                notFull.signalAll();
+                return read;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Closing the reading side discards the buffered data and breaks the pipe for the writer
+        @Override
+        public void close() {
+            closeReader();
+        }
+    }
+
+    private class Sink extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            lock.lock();
+            try {
+                while (length > 0) {
+                    while (count == capacity && !readerClosed) {
+                        await(notFull);
+                    }
+                    if (readerClosed) {
+                        throw new BrokenPipeException();
+                    }
+                    if (writerClosed) {
+                        throw new IOException("Pipe closed");
+                    }
+                    int tail = (head + count) % capacity;
+                    int written = Math.min(length, capacity - count);
+                    int first = Math.min(written, capacity - tail);
+                    System.arraycopy(bytes, offset, buffer, tail, first);
+                    System.arraycopy(bytes, offset + first, buffer, 0, written - first);
+                    count += written;
+                    offset += written;
+                    length -= written;
+                    notEmpty.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Closing the writing side is the end of the stream for the reader
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    }
+
+    // Waits for the condition, converting an interrupt into InterruptedIOException
+    private static void await(Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipe wait interrupted");
+        }
+    }
+}
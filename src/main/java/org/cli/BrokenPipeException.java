@@ -0,0 +1,12 @@
+package org.cli;
+
+import java.io.IOException;
+
+// Thrown when writing to a pipe whose reading side is closed (the downstream stage finished)
+class BrokenPipeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    BrokenPipeException() {
+        super("Broken pipe");
+    }
+}
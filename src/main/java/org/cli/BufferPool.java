@@ -0,0 +1,163 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// BufferPool lends reusable byte buffers to the copies of the shell: cat and zcat, the threads
+// feeding and draining external processes, the pipes between pipeline stages, tee and the
+// decompressors. A buffer goes back to the pool when its copy or pipe is done, so running
+// pipelines again and again doesn't allocate new buffers for every stage.
+// Buffers come in size classes (powers of two from 4 KB to 1 MB), a request is rounded up to its
+// class. The pool keeps at most a byte budget of idle buffers, the others are left to the GC,
+// so the memory it holds stays predictable however many stages a pipeline had.
+//
+// The budget is configured with a system property:
+//   cli.buffers.size=N   bytes of idle buffers kept (16 MB by default, 0 disables pooling)
+// The occupancy of the shared pool is printed by the `buffers` builtin.
+final class BufferPool {
+
+    // Buffer of the feeders of process stdin, there is one per external command
+    static final int SMALL = 8 * 1024;
+    // Buffer of the copies between streams, the pipes and the tee chunks
+    static final int LARGE = 64 * 1024;
+
+    private static final int MIN_CLASS_SHIFT = 12;
+    private static final int MAX_CLASS_SHIFT = 20;
+    private static final long DEFAULT_BUDGET = 16L * 1024 * 1024;
+
+    private static final BufferPool SHARED = new BufferPool(Long.getLong("cli.buffers.size", DEFAULT_BUDGET));
+
+    private final long budget;
+    // idle buffers of every size class, the most recently returned one is lent first
+    private final List<ArrayDeque<byte[]>> idle;
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final AtomicLong lentBuffers = new AtomicLong();
+    private final AtomicLong lentBytes = new AtomicLong();
+    private final AtomicLong peakLentBytes = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    /**
+     * Occupancy of the pool.
+     *
+     * @param lentBuffers   buffers borrowed and not returned yet
+     * @param lentBytes     bytes of the borrowed buffers
+     * @param peakLentBytes the most bytes borrowed at the same time
+     * @param idleBuffers   buffers kept for the next borrowers
+     * @param idleBytes     bytes of the kept buffers, at most the budget
+     * @param allocated     buffers allocated because no idle buffer of the class was there
+     * @param reused        borrows served with an idle buffer
+     */
+    record Stats(long lentBuffers, long lentBytes, long peakLentBytes, long idleBuffers, long idleBytes,
+                 long allocated, long reused) {
+    }
+
+    BufferPool(long budget) {
+        this.budget = budget;
+        this.idle = new ArrayList<>();
+        for (int shift = MIN_CLASS_SHIFT; shift <= MAX_CLASS_SHIFT; shift++) {
+            idle.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Returns the pool shared by the whole shell.
+     */
+    static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Borrows a buffer of at least the size, rounded up to its size class.
+     * Sizes above the largest class are allocated as they are and never pooled.
+     */
+    byte[] borrow(int size) {
+        int sizeClass = sizeClass(size);
+        byte[] buffer = null;
+        if (sizeClass >= 0) {
+            ArrayDeque<byte[]> buffers = idle.get(sizeClass);
+            synchronized (buffers) {
+                buffer = buffers.pollFirst();
+            }
+        }
+        if (buffer != null) {
+            idleBytes.addAndGet(-buffer.length);
+            reused.incrementAndGet();
+        } else {
+            buffer = new byte[sizeClass >= 0 ? 1 << (sizeClass + MIN_CLASS_SHIFT) : size];
+            allocated.incrementAndGet();
+        }
+        lentBuffers.incrementAndGet();
+        peakLentBytes.accumulateAndGet(lentBytes.addAndGet(buffer.length), Math::max);
+        return buffer;
+    }
+
+    /**
+     * Returns a borrowed buffer. It is kept for the next borrower if the budget allows it.
+     * The caller must not use the buffer anymore.
+     */
+    void release(byte[] buffer) {
+        lentBuffers.decrementAndGet();
+        lentBytes.addAndGet(-buffer.length);
+        int sizeClass = sizeClass(buffer.length);
+        if (sizeClass < 0 || buffer.length != 1 << (sizeClass + MIN_CLASS_SHIFT)) {
+            return;
+        }
+        if (idleBytes.addAndGet(buffer.length) > budget) {
+            idleBytes.addAndGet(-buffer.length);
+            return;
+        }
+        ArrayDeque<byte[]> buffers = idle.get(sizeClass);
+        synchronized (buffers) {
+            buffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Copies the rest of the input to the output through a borrowed buffer, like InputStream.transferTo.
+     *
+     * @return number of bytes copied
+     */
+    long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = borrow(LARGE);
+        try {
+            long copied = 0;
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+                copied += read;
+            }
+            return copied;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Returns the current occupancy of the pool.
+     */
+    Stats stats() {
+        long idleBuffers = 0;
+        for (ArrayDeque<byte[]> buffers : idle) {
+            synchronized (buffers) {
+                idleBuffers += buffers.size();
+            }
+        }
+        return new Stats(lentBuffers.get(), lentBytes.get(), peakLentBytes.get(), idleBuffers, idleBytes.get(),
+                allocated.get(), reused.get());
+    }
+
+    // Index of the smallest size class holding the size, -1 if it is bigger than every class
+    private static int sizeClass(int size) {
+        if (size > 1 << MAX_CLASS_SHIFT) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+}
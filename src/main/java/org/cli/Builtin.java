@@ -0,0 +1,54 @@
+package org.cli;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A command executed inside the interpreter process instead of starting an external program.
+ * Implementations are discovered with {@link java.util.ServiceLoader}: list the class in
+ * {@code META-INF/services/org.cli.Builtin} of a jar on the class path. A builtin of the
+ * interpreter itself can't be replaced, the first of several builtins with the same name wins.
+ */
+public interface Builtin {
+
+    /**
+     * Execution properties of a builtin, the interpreter uses them to choose how to run it.
+     */
+    enum Trait {
+        /** Output is written while the input is read. Builtins without it get a buffered stdout. */
+        STREAMING,
+        /** Output depends only on the arguments and the input files, so it can be cached. */
+        PURE,
+        /**
+         * Every input line is processed independently, the input can be split between workers.
+         * The stdin of grep is searched by several workers only with it, other builtins (plugins
+         * included) still run on one thread.
+         */
+        PARALLELIZABLE,
+        /** Input and output are sequences of lines terminated by '\n'. */
+        LINE_ORIENTED
+    }
+
+    /**
+     * @return the command name the builtin is called by
+     */
+    String name();
+
+    /**
+     * @return execution traits of the builtin, none by default
+     */
+    default Set<Trait> traits() {
+        return Set.of();
+    }
+
+    /**
+     * Executes the command.
+     * The input is {@link Command#getStdin()}, the output is {@link Command#getStdout()} and error
+     * messages go to {@link Command#getStderr()}. Redirections are already applied.
+     *
+     * @param command the command with its arguments and streams
+     * @return        exit status: 0 for success, non-zero for errors
+     * @throws IOException if reading the input or writing the output fails, the interpreter reports it
+     */
+    int execute(Command command) throws IOException;
+}
@@ -0,0 +1,87 @@
+package org.cli;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import static org.cli.Builtin.Trait.LINE_ORIENTED;
+import static org.cli.Builtin.Trait.PARALLELIZABLE;
+import static org.cli.Builtin.Trait.PURE;
+import static org.cli.Builtin.Trait.STREAMING;
+
+// BuiltinRegistry knows the traits of every builtin and finds builtins provided by other jars.
+// Builtins of the interpreter are dispatched by Executor directly, the ServiceLoader lookup
+// happens only when a name is not one of them, so plain sessions never pay for it.
+final class BuiltinRegistry {
+
+    // Traits of the builtins of the interpreter.
+    // cat and zcat are not PURE: caching a copy of the file saves nothing,
+    // tee is not PURE: it writes files
+    private static final Map<String, Set<Builtin.Trait>> CORE_TRAITS = Map.ofEntries(
+            Map.entry("cat", EnumSet.of(STREAMING)),
+            Map.entry("zcat", EnumSet.of(STREAMING)),
+            Map.entry("echo", EnumSet.of(STREAMING)),
+            Map.entry("pwd", EnumSet.noneOf(Builtin.Trait.class)),
+            Map.entry("wc", EnumSet.of(PURE, LINE_ORIENTED)),
+            Map.entry("grep", EnumSet.of(STREAMING, PURE, PARALLELIZABLE, LINE_ORIENTED)),
+            Map.entry("tail", EnumSet.of(PURE, LINE_ORIENTED)),
+            Map.entry("sort", EnumSet.of(PURE, LINE_ORIENTED)),
+            Map.entry("count", EnumSet.of(PURE, LINE_ORIENTED)),
+            Map.entry("history", EnumSet.noneOf(Builtin.Trait.class)),
+            Map.entry("buffers", EnumSet.noneOf(Builtin.Trait.class)),
+            Map.entry("tee", EnumSet.of(STREAMING)),
+            Map.entry("cut", EnumSet.of(STREAMING, PURE, PARALLELIZABLE, LINE_ORIENTED)),
+            Map.entry("sha256sum", EnumSet.of(STREAMING, PURE)),
+            Map.entry("md5sum", EnumSet.of(STREAMING, PURE)),
+            Map.entry("crc32", EnumSet.of(STREAMING, PURE))
+    );
+
+    private BuiltinRegistry() {
+    }
+
+    // Builtins found on the class path, loaded on the first lookup
+    private static final class Plugins {
+        private static final Map<String, Builtin> BUILTINS = load();
+
+        private static Map<String, Builtin> load() {
+            Map<String, Builtin> builtins = new HashMap<>();
+            for (Builtin builtin : ServiceLoader.load(Builtin.class)) {
+                if (!CORE_TRAITS.containsKey(builtin.name())) {
+                    builtins.putIfAbsent(builtin.name(), builtin);
+                }
+            }
+            return builtins;
+        }
+    }
+
+    /**
+     * Returns true for the builtins of the interpreter.
+     */
+    static boolean isCore(String name) {
+        return CORE_TRAITS.containsKey(name);
+    }
+
+    /**
+     * Returns the builtin provided by another jar, or null if there is no such builtin.
+     */
+    static Builtin find(String name) {
+        if (CORE_TRAITS.containsKey(name)) {
+            return null;
+        }
+        return Plugins.BUILTINS.get(name);
+    }
+
+    /**
+     * Returns the traits of the builtin, no traits for unknown commands.
+     */
+    static Set<Builtin.Trait> traits(String name) {
+        Set<Builtin.Trait> traits = CORE_TRAITS.get(name);
+        if (traits != null) {
+            return traits;
+        }
+        Builtin builtin = find(name);
+        return builtin == null ? Set.of() : builtin.traits();
+    }
+}
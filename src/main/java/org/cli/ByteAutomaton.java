@@ -0,0 +1,1014 @@
+package org.cli;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// ByteAutomaton searches lines for a regular expression in time linear in the length of the line,
+// whatever the expression is. java.util.regex backtracks: a pattern like (a|aa)*b takes
+// exponential time on a long line without a match.
+// The expression (the java.util.regex syntax without backreferences, lookaround, possessive
+// quantifiers, inline flags and the rarer escapes) is compiled into a Thompson NFA over the UTF-8
+// bytes of the line, which runs as a DFA built lazily: a DFA state is the set of NFA states the
+// search can be in, and its transitions are computed when they are first taken and kept in a
+// table. The table holds at most MAX_DFA_STATES states; when it is full it is emptied and built
+// again, so the memory is bounded and a byte never costs more than one step of the NFA.
+// Bytes are mapped to classes of the bytes no part of the pattern tells apart, so the table has
+// a column per class instead of a column per byte.
+// Zero-width assertions (^ $ \b \B) are marker symbols fed between the characters where they hold:
+// the states waiting for an assertion move on with its marker, the others stay where they are.
+// The semantics are those of java.util.regex without flags or with CASE_INSENSITIVE: \w, \d, \s,
+// \b and case-insensitivity are ASCII only, '.' is any character except a line terminator.
+// Lines are searched as bytes if they are ASCII, or valid UTF-8 and the default charset is UTF-8;
+// other lines are encoded to UTF-8 first.
+final class ByteAutomaton implements LineMatcher {
+
+    // States of the DFA table, it is emptied when it is full
+    static final int MAX_DFA_STATES = 2048;
+    // States of the NFA (counted repetitions are expanded), bigger patterns use java.util.regex
+    static final int MAX_NFA_STATES = 20_000;
+
+    private static final boolean RAW_UTF8 = Charset.defaultCharset().equals(StandardCharsets.UTF_8);
+
+    // Bits of a marker: the zero-width assertions that hold at a position
+    private static final int AT_START = 1;
+    private static final int AT_END = 2;
+    private static final int AT_BOUNDARY = 4;
+    private static final int MARKERS = 8;
+
+    // Kinds of the NFA states
+    private static final int BYTES = 0;   // consumes a byte from low to high, goes to out
+    private static final int SPLIT = 1;   // goes to out and out2 without consuming
+    private static final int ASSERT = 2;  // goes to out at a marker with (bits & low) == high
+    private static final int MATCH = 3;
+
+    private static final boolean[] WORD_BYTES = new boolean[256];
+    private static final boolean[] DIGITS = new boolean[128];
+    private static final boolean[] WORD = new boolean[128];
+    private static final boolean[] SPACE = new boolean[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            DIGITS[c] = c >= '0' && c <= '9';
+            WORD[c] = DIGITS[c] || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+            SPACE[c] = c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+            WORD_BYTES[c] = WORD[c];
+        }
+    }
+
+    // NFA
+    private int[] kind = new int[64];
+    private int[] low = new int[64];
+    private int[] high = new int[64];
+    private int[] out = new int[64];
+    private int[] out2 = new int[64];
+    private int nfaSize;
+    private int matchState;
+    // assertions used by the pattern, bits of the markers
+    private int markers;
+
+    // byte classes
+    private final int[] byteClass = new int[256];
+    private int[] classByte;
+    private int stride;
+
+    // DFA: the NFA states of every DFA state and the transitions computed so far (target + 1)
+    private final List<int[]> sets = new ArrayList<>();
+    private final Map<StateSet, Integer> index = new HashMap<>();
+    private boolean[] accepting = new boolean[64];
+    private int[] table;
+    private int[] startSet;
+    private int startState;
+    // times the table was emptied, the states numbered before are gone
+    private int flushes;
+
+    // work arrays of the closure
+    private int[] stack;
+    private int[] seen;
+    private int stamp;
+
+    private final Scan scan = new Scan();
+    // UTF-8 encoding of a line that isn't searched as bytes
+    private byte[] encoded = new byte[256];
+
+    // Parsed expression
+    private interface Node {
+    }
+
+    // A set of characters: ASCII characters, every non-ASCII character or some of them
+    private record Chars(boolean[] ascii, boolean nonAscii, int[] codePoints) implements Node {
+    }
+
+    // '.'
+    private record AnyChar() implements Node {
+    }
+
+    private record Sequence(List<Node> nodes) implements Node {
+    }
+
+    private record Alternation(List<Node> nodes) implements Node {
+    }
+
+    // max is -1 without a limit
+    private record Repeat(Node node, int min, int max) implements Node {
+    }
+
+    private record Assertion(int mask, int value) implements Node {
+    }
+
+    // '$': the end of the line, or before a line terminator ending the line
+    private record LineEnd() implements Node {
+    }
+
+    // A pattern the automaton doesn't run
+    private static final class UnsupportedSyntaxException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedSyntaxException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    // Key of the DFA state of a set of NFA states
+    private record StateSet(int[] states, int hash) {
+        StateSet(int[] states) {
+            this(states, Arrays.hashCode(states));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSet set && hash == set.hash && Arrays.equals(states, set.states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private ByteAutomaton(Node expression) {
+        matchState = newState(MATCH, 0, 0, -1, -1);
+        int pattern = compile(expression, matchState);
+        // the search starts at every position: a loop over the bytes before the pattern
+        int loop = newState(SPLIT, 0, 0, -1, pattern);
+        // the state is created before the assignment: newState can replace the out array
+        int anyByte = newState(BYTES, 0, 255, loop, -1);
+        out[loop] = anyByte;
+
+        computeByteClasses();
+        stack = new int[nfaSize];
+        seen = new int[nfaSize];
+        table = new int[64 * stride];
+        startSet = closure(new int[]{loop}, 1, -1);
+        startState = state(startSet);
+    }
+
+    /**
+     * Compiles the pattern, or returns null if it uses features the automaton doesn't have.
+     */
+    static ByteAutomaton compile(Pattern pattern) {
+        int flags = pattern.flags();
+        if ((flags & ~Pattern.CASE_INSENSITIVE) != 0) {
+            return null;
+        }
+        try {
+            Node expression = new ExpressionParser(pattern.pattern(), flags != 0).parse();
+            return new ByteAutomaton(expression);
+        } catch (UnsupportedSyntaxException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean find(CharSequence line) {
+        int length = encode(line);
+        scan.start();
+        return scan.feed(encoded, 0, length) || scan.end();
+    }
+
+    @Override
+    public boolean find(LineInput line) {
+        if (line.hasAsciiBytes() || RAW_UTF8 && isUtf8(line.buffer(), line.start(), line.start() + line.length())) {
+            scan.start();
+            return scan.feed(line.buffer(), line.start(), line.start() + line.length()) || scan.end();
+        }
+        return find(line.chars());
+    }
+
+    /**
+     * Returns true if the pattern is found in the bytes.
+     */
+    boolean find(byte[] bytes, int from, int to) {
+        scan.start();
+        return scan.feed(bytes, from, to) || scan.end();
+    }
+
+    @Override
+    public Parts parts() {
+        Scan parts = new Scan();
+        return new Parts() {
+            private boolean found;
+
+            @Override
+            public void start() {
+                parts.start();
+                found = false;
+            }
+
+            @Override
+            public boolean find(LineInput part) {
+                if (!found) {
+                    if (part.hasAsciiBytes() || RAW_UTF8) {
+                        found = parts.feed(part.buffer(), part.start(), part.start() + part.length());
+                    } else {
+                        found = parts.feed(encoded, 0, encode(part.chars()));
+                    }
+                    if (!found && !part.isPartial()) {
+                        found = parts.end();
+                    }
+                }
+                return found;
+            }
+        };
+    }
+
+    // A search of one line, fed with the bytes of the line
+    private final class Scan {
+        private int state;
+        // the NFA states of the state, to find it again if the table is emptied between two parts
+        private int[] stateSet;
+        private int generation;
+        private boolean atStart;
+        private boolean previousWord;
+
+        void start() {
+            save(startState);
+            atStart = true;
+            previousWord = false;
+        }
+
+        private void save(int current) {
+            state = current;
+            stateSet = sets.get(current);
+            generation = flushes;
+        }
+
+        private int restore() {
+            return generation == flushes ? state : state(stateSet);
+        }
+
+        // Feeds the next bytes of the line, returns true when the pattern is found
+        boolean feed(byte[] bytes, int from, int to) {
+            if (from == to) {
+                return accepting[restore()];
+            }
+            int current = restore();
+            int i = from;
+            if ((markers & AT_BOUNDARY) != 0) {
+                // a marker before every character, not between the bytes of a multibyte character
+                for (; i < to; i++) {
+                    if ((bytes[i] & 0xC0) != 0x80) {
+                        boolean word = WORD_BYTES[bytes[i] & 0xFF];
+                        int bits = (atStart ? AT_START : 0) | (previousWord != word ? AT_BOUNDARY : 0);
+                        current = step(current, stride - MARKERS + bits);
+                        atStart = false;
+                        previousWord = word;
+                        if (accepting[current]) {
+                            save(current);
+                            return true;
+                        }
+                    }
+                    current = step(current, byteClass[bytes[i] & 0xFF]);
+                }
+            } else {
+                if (atStart && markers != 0) {
+                    current = step(current, stride - MARKERS + AT_START);
+                }
+                // the transitions already computed are taken without calling step
+                int[] transitions = table;
+                boolean[] accept = accepting;
+                for (; i < to; i++) {
+                    if (accept[current]) {
+                        save(current);
+                        atStart = false;
+                        return true;
+                    }
+                    int symbol = byteClass[bytes[i] & 0xFF];
+                    int next = transitions[current * stride + symbol] - 1;
+                    if (next < 0) {
+                        next = step(current, symbol);
+                        transitions = table;
+                        accept = accepting;
+                    }
+                    current = next;
+                }
+            }
+            atStart = false;
+            previousWord = WORD_BYTES[bytes[to - 1] & 0xFF];
+            save(current);
+            return accepting[current];
+        }
+
+        // Feeds the end of the line, returns true if the pattern is found
+        boolean end() {
+            int current = restore();
+            if (markers != 0) {
+                int bits = AT_END | (atStart ? AT_START : 0) | (previousWord ? AT_BOUNDARY : 0);
+                current = step(current, stride - MARKERS + bits);
+            }
+            save(current);
+            return accepting[current];
+        }
+    }
+
+    // The DFA state after the symbol (a byte class or a marker), computed once
+    private int step(int state, int symbol) {
+        int target = table[state * stride + symbol] - 1;
+        if (target >= 0) {
+            return target;
+        }
+        int[] set = sets.get(state);
+        int[] next;
+        if (symbol >= stride - MARKERS) {
+            // the states stay, the assertions holding at the marker are passed
+            next = closure(set, set.length, symbol - (stride - MARKERS));
+        } else {
+            int b = classByte[symbol];
+            int[] moved = new int[set.length];
+            int count = 0;
+            for (int s : set) {
+                if (kind[s] == BYTES && low[s] <= b && b <= high[s]) {
+                    moved[count++] = out[s];
+                }
+            }
+            next = closure(moved, count, -1);
+        }
+        int flushed = flushes;
+        target = state(next);
+        // an emptied table has no state to record the transition from
+        if (flushed == flushes) {
+            table[state * stride + symbol] = target + 1;
+        }
+        return target;
+    }
+
+    // The DFA state of the set of NFA states, added if it is new
+    private int state(int[] set) {
+        StateSet key = new StateSet(set);
+        Integer existing = index.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (sets.size() == MAX_DFA_STATES) {
+            // the table is full: start again, with the start state and this one
+            sets.clear();
+            index.clear();
+            Arrays.fill(table, 0);
+            flushes++;
+            startState = state(startSet);
+            return state(set);
+        }
+        int state = sets.size();
+        sets.add(set);
+        index.put(key, state);
+        if (state == accepting.length) {
+            accepting = Arrays.copyOf(accepting, state * 2);
+            table = Arrays.copyOf(table, state * 2 * stride);
+        }
+        accepting[state] = Arrays.binarySearch(set, matchState) >= 0;
+        return state;
+    }
+
+    // The NFA states reachable from the states without consuming a byte: through splits, and
+    // through assertions holding at the marker if there is one (marker -1 otherwise).
+    // Only the states consuming bytes, waiting for assertions and the match are kept, sorted.
+    private int[] closure(int[] states, int count, int marker) {
+        stamp++;
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            if (seen[states[i]] != stamp) {
+                seen[states[i]] = stamp;
+                stack[top++] = states[i];
+            }
+        }
+        int[] result = new int[nfaSize];
+        int size = 0;
+        while (top > 0) {
+            int s = stack[--top];
+            int next = -1;
+            int next2 = -1;
+            switch (kind[s]) {
+                case SPLIT -> {
+                    next = out[s];
+                    next2 = out2[s];
+                }
+                case ASSERT -> {
+                    result[size++] = s;
+                    if (marker >= 0 && (marker & low[s]) == high[s]) {
+                        next = out[s];
+                    }
+                }
+                default -> result[size++] = s;
+            }
+            if (next >= 0 && seen[next] != stamp) {
+                seen[next] = stamp;
+                stack[top++] = next;
+            }
+            if (next2 >= 0 && seen[next2] != stamp) {
+                seen[next2] = stamp;
+                stack[top++] = next2;
+            }
+        }
+        int[] sorted = Arrays.copyOf(result, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // Bytes are in the same class if every BYTES state takes both or neither of them
+    private void computeByteClasses() {
+        boolean[] starts = new boolean[257];
+        for (int s = 0; s < nfaSize; s++) {
+            if (kind[s] == BYTES) {
+                starts[low[s]] = true;
+                starts[high[s] + 1] = true;
+            }
+        }
+        List<Integer> representatives = new ArrayList<>();
+        for (int b = 0; b < 256; b++) {
+            if (b == 0 || starts[b]) {
+                representatives.add(b);
+            }
+            byteClass[b] = representatives.size() - 1;
+        }
+        classByte = representatives.stream().mapToInt(Integer::intValue).toArray();
+        stride = classByte.length + MARKERS;
+    }
+
+    // True if the bytes are valid UTF-8: other bytes are decoded to U+FFFD, like java.util.regex sees them
+    private static boolean isUtf8(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int length = b >= 0xC2 && b <= 0xDF ? 2 : b >= 0xE0 && b <= 0xEF ? 3 : b >= 0xF0 && b <= 0xF4 ? 4 : 0;
+            if (length == 0 || to - i < length) {
+                return false;
+            }
+            int second = bytes[i + 1] & 0xFF;
+            // no overlong forms, surrogates or code points above U+10FFFF
+            int secondLow = b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80;
+            int secondHigh = b == 0xED ? 0x9F : b == 0xF4 ? 0x8F : 0xBF;
+            if (second < secondLow || second > secondHigh) {
+                return false;
+            }
+            for (int j = 2; j < length; j++) {
+                if ((bytes[i + j] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += length;
+        }
+        return true;
+    }
+
+    // Encodes the characters to UTF-8 into the encoded buffer, returns the length
+    private int encode(CharSequence chars) {
+        int length = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            if (encoded.length - length < 4) {
+                encoded = Arrays.copyOf(encoded, encoded.length * 2);
+            }
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                encoded[length++] = (byte) c;
+            } else if (c < 0x800) {
+                encoded[length++] = (byte) (0xC0 | c >> 6);
+                encoded[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars.length()
+                    && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                encoded[length++] = (byte) (0xF0 | codePoint >> 18);
+                encoded[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                encoded[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                encoded[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                encoded[length++] = '?';
+            } else {
+                encoded[length++] = (byte) (0xE0 | c >> 12);
+                encoded[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                encoded[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return length;
+    }
+
+    // Compiles the expression into states ending in next, returns the first state
+    private int compile(Node node, int next) {
+        if (node instanceof Sequence sequence) {
+            for (int i = sequence.nodes().size() - 1; i >= 0; i--) {
+                next = compile(sequence.nodes().get(i), next);
+            }
+            return next;
+        }
+        if (node instanceof Alternation alternation) {
+            List<Node> nodes = alternation.nodes();
+            int start = compile(nodes.getLast(), next);
+            for (int i = nodes.size() - 2; i >= 0; i--) {
+                start = either(compile(nodes.get(i), next), start);
+            }
+            return start;
+        }
+        if (node instanceof Repeat repeat) {
+            int tail = next;
+            if (repeat.max() < 0) {
+                int loop = newState(SPLIT, 0, 0, -1, next);
+                // compiled before the assignment: newState can replace the out array
+                int body = compile(repeat.node(), loop);
+                out[loop] = body;
+                tail = loop;
+            } else {
+                for (int i = repeat.min(); i < repeat.max(); i++) {
+                    tail = either(compile(repeat.node(), tail), tail);
+                }
+            }
+            for (int i = 0; i < repeat.min(); i++) {
+                tail = compile(repeat.node(), tail);
+            }
+            return tail;
+        }
+        if (node instanceof Assertion assertion) {
+            markers |= assertion.mask();
+            return newState(ASSERT, assertion.mask(), assertion.value(), next, -1);
+        }
+        if (node instanceof LineEnd) {
+            markers |= AT_END;
+            int end = newState(ASSERT, AT_END, AT_END, next, -1);
+            // "\n", "\r\n", "\r", U+0085, U+2028 and U+2029 ending the line
+            int start = either(end, bytes(0x0A, 0x0A, end));
+            start = either(start, bytes(0x0D, 0x0D, either(end, bytes(0x0A, 0x0A, end))));
+            start = either(start, bytes(0xC2, 0xC2, bytes(0x85, 0x85, end)));
+            return either(start, bytes(0xE2, 0xE2, bytes(0x80, 0x80, bytes(0xA8, 0xA9, end))));
+        }
+        if (node instanceof AnyChar) {
+            // any character except '\n', '\r', U+0085, U+2028 and U+2029
+            int continuation = bytes(0x80, 0xBF, next);
+            int start = either(bytes(0x00, 0x09, next), bytes(0x0B, 0x0C, next));
+            start = either(start, bytes(0x0E, 0x7F, next));
+            start = either(start, bytes(0xC2, 0xC2, either(bytes(0x80, 0x84, next), bytes(0x86, 0xBF, next))));
+            start = either(start, bytes(0xC3, 0xDF, continuation));
+            int lineSeparators = either(bytes(0x80, 0x80, either(bytes(0x80, 0xA7, next), bytes(0xAA, 0xBF, next))),
+                    bytes(0x81, 0xBF, continuation));
+            start = either(start, bytes(0xE2, 0xE2, lineSeparators));
+            int continuation2 = bytes(0x80, 0xBF, continuation);
+            start = either(start, bytes(0xE0, 0xE1, continuation2));
+            start = either(start, bytes(0xE3, 0xEF, continuation2));
+            return either(start, bytes(0xF0, 0xF4, bytes(0x80, 0xBF, continuation2)));
+        }
+        Chars chars = (Chars) node;
+        int start = -1;
+        for (int c = 0; c < 128; c++) {
+            if (chars.ascii()[c]) {
+                int end = c;
+                while (end + 1 < 128 && chars.ascii()[end + 1]) {
+                    end++;
+                }
+                start = either(start, bytes(c, end, next));
+                c = end;
+            }
+        }
+        if (chars.nonAscii()) {
+            // any multibyte UTF-8 sequence
+            int continuation = bytes(0x80, 0xBF, next);
+            int continuation2 = bytes(0x80, 0xBF, continuation);
+            start = either(start, bytes(0xC2, 0xDF, continuation));
+            start = either(start, bytes(0xE0, 0xEF, continuation2));
+            start = either(start, bytes(0xF0, 0xF4, bytes(0x80, 0xBF, continuation2)));
+        }
+        for (int codePoint : chars.codePoints()) {
+            byte[] encoding = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+            int sequence = next;
+            for (int i = encoding.length - 1; i >= 0; i--) {
+                sequence = bytes(encoding[i] & 0xFF, encoding[i] & 0xFF, sequence);
+            }
+            start = either(start, sequence);
+        }
+        // an empty set never matches
+        return start >= 0 ? start : bytes(1, 0, next);
+    }
+
+    private int bytes(int from, int to, int next) {
+        return newState(BYTES, from, to, next, -1);
+    }
+
+    // A split to both states, or the other state if one of them is -1
+    private int either(int first, int second) {
+        if (first < 0) {
+            return second;
+        }
+        return newState(SPLIT, 0, 0, first, second);
+    }
+
+    private int newState(int stateKind, int stateLow, int stateHigh, int next, int next2) {
+        if (nfaSize == MAX_NFA_STATES) {
+            throw new UnsupportedSyntaxException("pattern too big");
+        }
+        if (nfaSize == kind.length) {
+            int capacity = nfaSize * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            low = Arrays.copyOf(low, capacity);
+            high = Arrays.copyOf(high, capacity);
+            out = Arrays.copyOf(out, capacity);
+            out2 = Arrays.copyOf(out2, capacity);
+        }
+        kind[nfaSize] = stateKind;
+        low[nfaSize] = stateLow;
+        high[nfaSize] = stateHigh;
+        out[nfaSize] = next;
+        out2[nfaSize] = next2;
+        return nfaSize++;
+    }
+
+    // Parser of the java.util.regex syntax the automaton runs, it throws
+    // UnsupportedSyntaxException for everything else. The pattern is already compiled by
+    // java.util.regex, so it is valid.
+    private static final class ExpressionParser {
+        private final String regex;
+        private final boolean ignoreCase;
+        private int position;
+
+        ExpressionParser(String regex, boolean ignoreCase) {
+            this.regex = regex;
+            this.ignoreCase = ignoreCase;
+        }
+
+        Node parse() {
+            Node expression = alternation();
+            if (position < regex.length()) {
+                throw new UnsupportedSyntaxException("unexpected " + regex.charAt(position));
+            }
+            return expression;
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(sequence());
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                alternatives.add(sequence());
+            }
+            return alternatives.size() == 1 ? alternatives.getFirst() : new Alternation(alternatives);
+        }
+
+        private Node sequence() {
+            List<Node> nodes = new ArrayList<>();
+            while (position < regex.length() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+                nodes.add(quantified(atom()));
+            }
+            return new Sequence(nodes);
+        }
+
+        private Node quantified(Node atom) {
+            while (position < regex.length()) {
+                int min;
+                int max;
+                switch (regex.charAt(position)) {
+                    case '*' -> {
+                        min = 0;
+                        max = -1;
+                    }
+                    case '+' -> {
+                        min = 1;
+                        max = -1;
+                    }
+                    case '?' -> {
+                        min = 0;
+                        max = 1;
+                    }
+                    case '{' -> {
+                        position++;
+                        min = number();
+                        max = min;
+                        if (peek() == ',') {
+                            position++;
+                            max = peek() == '}' ? -1 : number();
+                        }
+                        if (peek() != '}' || max >= 0 && max < min) {
+                            throw new UnsupportedSyntaxException("repetition");
+                        }
+                    }
+                    default -> {
+                        return atom;
+                    }
+                }
+                position++;
+                if (peek() == '?') {
+                    // a lazy quantifier matches the same lines
+                    position++;
+                } else if (peek() == '+') {
+                    throw new UnsupportedSyntaxException("possessive quantifier");
+                }
+                atom = new Repeat(atom, min, max);
+            }
+            return atom;
+        }
+
+        private Node atom() {
+            char c = regex.charAt(position);
+            switch (c) {
+                case '(' -> {
+                    position++;
+                    if (regex.startsWith("?:", position)) {
+                        position += 2;
+                    } else if (regex.startsWith("?<", position) && position + 2 < regex.length()
+                            && Character.isLetter(regex.charAt(position + 2))) {
+                        // a named group is a group
+                        position = regex.indexOf('>', position) + 1;
+                    } else if (peek() == '?') {
+                        throw new UnsupportedSyntaxException("group construct");
+                    }
+                    Node group = alternation();
+                    if (peek() != ')') {
+                        throw new UnsupportedSyntaxException("unclosed group");
+                    }
+                    position++;
+                    return group;
+                }
+                case '[' -> {
+                    return characterClass();
+                }
+                case '.' -> {
+                    position++;
+                    return new AnyChar();
+                }
+                case '^' -> {
+                    position++;
+                    return new Assertion(AT_START, AT_START);
+                }
+                case '$' -> {
+                    position++;
+                    return new LineEnd();
+                }
+                case '\\' -> {
+                    return escape();
+                }
+                case '*', '+', '?', '{' -> throw new UnsupportedSyntaxException("dangling " + c);
+                default -> {
+                    int codePoint = regex.codePointAt(position);
+                    position += Character.charCount(codePoint);
+                    return literal(codePoint);
+                }
+            }
+        }
+
+        private Node escape() {
+            position++;
+            if (position >= regex.length()) {
+                throw new UnsupportedSyntaxException("trailing backslash");
+            }
+            char c = regex.charAt(position++);
+            Chars predefined = predefined(c);
+            if (predefined != null) {
+                return predefined;
+            }
+            switch (c) {
+                case 'b' -> {
+                    if (peek() == '{') {
+                        throw new UnsupportedSyntaxException("\\b{");
+                    }
+                    return new Assertion(AT_BOUNDARY, AT_BOUNDARY);
+                }
+                case 'B' -> {
+                    return new Assertion(AT_BOUNDARY, 0);
+                }
+                case 'A' -> {
+                    return new Assertion(AT_START, AT_START);
+                }
+                case 'z' -> {
+                    return new Assertion(AT_END, AT_END);
+                }
+                case 'Z' -> {
+                    return new LineEnd();
+                }
+                case 'Q' -> {
+                    int end = regex.indexOf("\\E", position);
+                    String quoted = regex.substring(position, end < 0 ? regex.length() : end);
+                    position = end < 0 ? regex.length() : end + 2;
+                    List<Node> nodes = new ArrayList<>();
+                    quoted.codePoints().forEach(codePoint -> nodes.add(literal(codePoint)));
+                    return new Sequence(nodes);
+                }
+                default -> {
+                    return literal(escapedChar(c));
+                }
+            }
+        }
+
+        // The character of an escape like \t or \x41, other escapes of letters and digits are not supported
+        private int escapedChar(char c) {
+            switch (c) {
+                case 't' -> {
+                    return '\t';
+                }
+                case 'n' -> {
+                    return '\n';
+                }
+                case 'r' -> {
+                    return '\r';
+                }
+                case 'f' -> {
+                    return '\f';
+                }
+                case 'a' -> {
+                    return 0x07;
+                }
+                case 'e' -> {
+                    return 0x1B;
+                }
+                case 'x' -> {
+                    if (peek() == '{') {
+                        int end = regex.indexOf('}', position);
+                        int codePoint = hex(position + 1, end);
+                        position = end + 1;
+                        return codePoint;
+                    }
+                    position += 2;
+                    return hex(position - 2, position);
+                }
+                case 'u' -> {
+                    position += 4;
+                    int codePoint = hex(position - 4, position);
+                    if (Character.isSurrogate((char) codePoint)) {
+                        throw new UnsupportedSyntaxException("surrogate escape");
+                    }
+                    return codePoint;
+                }
+                default -> {
+                    if (Character.isLetterOrDigit(c)) {
+                        // backreferences, octal escapes, \p, \h, \R and the like
+                        throw new UnsupportedSyntaxException("escape \\" + c);
+                    }
+                    return c;
+                }
+            }
+        }
+
+        private Node characterClass() {
+            position++;
+            boolean negated = peek() == '^';
+            if (negated) {
+                position++;
+            }
+            boolean[] ascii = new boolean[128];
+            boolean nonAscii = false;
+            List<Integer> codePoints = new ArrayList<>();
+            if (peek() == ']') {
+                throw new UnsupportedSyntaxException("] first in a class");
+            }
+            while (true) {
+                if (position >= regex.length()) {
+                    throw new UnsupportedSyntaxException("unclosed class");
+                }
+                char c = regex.charAt(position);
+                if (c == ']') {
+                    position++;
+                    break;
+                }
+                if (c == '[' || regex.startsWith("&&", position)) {
+                    throw new UnsupportedSyntaxException("nested class");
+                }
+                int from = classChar();
+                if (from < 0) {
+                    // \d and the like
+                    Chars predefined = predefined(regex.charAt(position - 1));
+                    for (int i = 0; i < 128; i++) {
+                        ascii[i] |= predefined.ascii()[i];
+                    }
+                    nonAscii |= predefined.nonAscii();
+                    continue;
+                }
+                int to = from;
+                if (peek() == '-' && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                    position++;
+                    if (peek() == '[') {
+                        throw new UnsupportedSyntaxException("nested class");
+                    }
+                    to = classChar();
+                    if (to < from) {
+                        throw new UnsupportedSyntaxException("range");
+                    }
+                }
+                if (to < 128) {
+                    for (int i = from; i <= to; i++) {
+                        addAscii(ascii, i);
+                    }
+                } else if (from == to) {
+                    codePoints.add(from);
+                } else {
+                    throw new UnsupportedSyntaxException("non-ASCII range");
+                }
+            }
+            if (negated) {
+                if (!codePoints.isEmpty()) {
+                    throw new UnsupportedSyntaxException("negated non-ASCII characters");
+                }
+                for (int i = 0; i < 128; i++) {
+                    ascii[i] = !ascii[i];
+                }
+                nonAscii = !nonAscii;
+            }
+            return new Chars(ascii, nonAscii, nonAscii ? new int[0] :
+                    codePoints.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        // A character of a class, or -1 after a predefined class like \d
+        private int classChar() {
+            char c = regex.charAt(position);
+            if (c == '\\') {
+                position++;
+                if (position >= regex.length()) {
+                    throw new UnsupportedSyntaxException("trailing backslash");
+                }
+                char escaped = regex.charAt(position++);
+                if (predefined(escaped) != null) {
+                    return -1;
+                }
+                if (escaped == 'Q' || escaped == 'b') {
+                    throw new UnsupportedSyntaxException("escape in a class");
+                }
+                return escapedChar(escaped);
+            }
+            int codePoint = regex.codePointAt(position);
+            position += Character.charCount(codePoint);
+            return codePoint;
+        }
+
+        // \d \D \w \W \s \S, null for other letters
+        private static Chars predefined(char c) {
+            boolean[] set = switch (Character.toLowerCase(c)) {
+                case 'd' -> DIGITS;
+                case 'w' -> WORD;
+                case 's' -> SPACE;
+                default -> null;
+            };
+            if (set == null) {
+                return null;
+            }
+            boolean negated = Character.isUpperCase(c);
+            boolean[] ascii = new boolean[128];
+            for (int i = 0; i < 128; i++) {
+                ascii[i] = set[i] != negated;
+            }
+            return new Chars(ascii, negated, new int[0]);
+        }
+
+        private Node literal(int codePoint) {
+            if (codePoint < 128) {
+                boolean[] ascii = new boolean[128];
+                addAscii(ascii, codePoint);
+                return new Chars(ascii, false, new int[0]);
+            }
+            // case-insensitivity without UNICODE_CASE is ASCII only
+            return new Chars(new boolean[128], false, new int[]{codePoint});
+        }
+
+        private void addAscii(boolean[] ascii, int c) {
+            ascii[c] = true;
+            if (ignoreCase && c >= 'a' && c <= 'z') {
+                ascii[c - 32] = true;
+            } else if (ignoreCase && c >= 'A' && c <= 'Z') {
+                ascii[c + 32] = true;
+            }
+        }
+
+        private int number() {
+            int start = position;
+            while (position < regex.length() && Character.isDigit(regex.charAt(position)) && position - start < 4) {
+                position++;
+            }
+            if (position == start || position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                throw new UnsupportedSyntaxException("repetition count");
+            }
+            return Integer.parseInt(regex.substring(start, position));
+        }
+
+        private int hex(int from, int to) {
+            try {
+                return Integer.parseInt(regex.substring(from, to), 16);
+            } catch (RuntimeException e) {
+                throw new UnsupportedSyntaxException("hex escape");
+            }
+        }
+
+        private char peek() {
+            return position < regex.length() ? regex.charAt(position) : '\0';
+        }
+    }
+}
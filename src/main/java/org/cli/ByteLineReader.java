@@ -0,0 +1,161 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// ByteLineReader splits a stream into lines without decoding them into Strings.
+// Lines end with '\n', '\r' or "\r\n", the same as in BufferedReader.readLine.
+// The current line is a slice of the internal buffer, it stays valid only until the next call to next().
+// A reader with a window never grows its buffer over the window: a longer line is returned in parts
+// of the window size (cut between UTF-8 characters), so a line of gigabytes never has to fit in memory.
+final class ByteLineReader implements ByteLines {
+
+    // Default size of the read buffer, it grows when a line doesn't fit into it
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // Window of the builtins that handle lines in parts
+    static final int DEFAULT_WINDOW_SIZE = 1 << 20;
+
+    private final InputStream input;
+    private final int windowSize;
+    private byte[] buffer;
+    // start of the data that isn't returned yet and end of the data read from the input
+    private int position;
+    private int limit;
+    private int lineStart;
+    private int lineLength;
+    // previous line ended with '\r', so a '\n' right after it belongs to that line
+    private boolean skipLineFeed;
+    private boolean endOfStream;
+    // the current line is a part of a line longer than the window
+    private boolean partial;
+
+    ByteLineReader(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    ByteLineReader(InputStream input, int bufferSize) {
+        this(input, bufferSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param windowSize maximum size of the buffer, longer lines are returned in parts
+     */
+    ByteLineReader(InputStream input, int bufferSize, int windowSize) {
+        this.input = input;
+        this.windowSize = Math.max(windowSize, 4); // room for a whole UTF-8 character
+        this.buffer = new byte[Math.min(bufferSize, this.windowSize)];
+    }
+
+    /**
+     * Moves to the next line of the input.
+     *
+     * @return true if there is a line, false at the end of the input
+     */
+    @Override
+    public boolean next() throws IOException {
+        if (skipLineFeed) {
+            if (position == limit && !endOfStream) {
+                fill();
+            }
+            if (position < limit && buffer[position] == '\n') {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+
+        // a long line filling the last window still needs its last part, even an empty one
+        boolean continued = partial;
+        partial = false;
+        int scanned = 0;
+        while (true) {
+            for (int i = position + scanned; i < limit; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    lineStart = position;
+                    lineLength = i - position;
+                    position = i + 1;
+                    skipLineFeed = b == '\r';
+                    return true;
+                }
+            }
+            scanned = limit - position;
+            if (endOfStream) {
+                // Last line without line terminator
+                if (position < limit || continued) {
+                    lineStart = position;
+                    lineLength = limit - position;
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            if (position == 0 && limit == buffer.length && buffer.length >= windowSize) {
+                // The window is full of one line: return its part, without cutting a character
+                lineStart = 0;
+                lineLength = characterBoundary(buffer, 0, limit);
+                position = lineLength;
+                partial = true;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    @Override
+    public boolean isPartial() {
+        return partial;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    @Override
+    public int start() {
+        return lineStart;
+    }
+
+    @Override
+    public int length() {
+        return lineLength;
+    }
+
+    // Move the unread data to the beginning of the buffer, grow it if it is full, and read more data
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, windowSize));
+        }
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Returns the end of the bytes [start, end) without an incomplete UTF-8 character at the end.
+     * Bytes that are not UTF-8 are not cut.
+     */
+    static int characterBoundary(byte[] bytes, int start, int end) {
+        for (int i = end - 1; i >= Math.max(start, end - 3); i--) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                return end;
+            }
+            if (b >= 0xC0) {
+                // lead byte of a character of 2, 3 or 4 bytes
+                int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                return i + length > end && i > start ? i : end;
+            }
+        }
+        return end;
+    }
+}
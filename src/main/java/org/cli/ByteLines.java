@@ -0,0 +1,30 @@
+package org.cli;
+
+import java.io.IOException;
+
+// ByteLines is a sequence of lines as byte slices without their line terminators.
+// The current line stays valid only until the next call to next().
+interface ByteLines {
+
+    /**
+     * Moves to the next line.
+     *
+     * @return true if there is a line, false at the end of the input
+     */
+    boolean next() throws IOException;
+
+    // Buffer that holds the current line
+    byte[] buffer();
+
+    // Offset of the current line in the buffer
+    int start();
+
+    // Length of the current line without the line terminator
+    int length();
+
+    // True if the current line is only the first part (or a middle part) of a line longer than the
+    // window of the reader, the next parts follow. Only readers with a window split lines
+    default boolean isPartial() {
+        return false;
+    }
+}
@@ -1,21 +1,53 @@
 package org.cli;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class CLI {
+    /**
+     * Runs the interpreter.
+     * Without arguments lines are read from stdin until EOF or "exit" command,
+     * in a terminal they are recorded in the history file (see History).
+     * With "-c LINE" only the given line is executed and its exit code becomes the exit code of the JVM.
+     * With "--daemon SOCKET" the interpreter serves DaemonClient requests on the Unix domain socket.
+     *
+     * @param args command line arguments
+     */
     public static void main(String[] args) {
-        // Using try-with-resources to automatically close Scanner
-        try (Scanner scanner = new Scanner(System.in)) {
-            // Create new environment
-            Environment env = new Environment();
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            if (args.length != 2) {
+                System.err.println("Usage: cli --daemon SOCKET");
+                System.exit(2);
+            }
+            try {
+                Daemon.serve(Path.of(args[1]));
+            } catch (IOException e) {
+                System.err.println("cli: " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
 
-            // Loop to read input line by line until EOF or "exit" command
-            while (scanner.hasNextLine()) {
-                String inputLine = scanner.nextLine().trim(); // Read and trim the input
-                List<Command> parserResult = Parser.parse(inputLine, env); // Parse input line
-                int returnCode = Pipeline.pipe(parserResult); // pipeline or single command
-                env.setVar("?", String.valueOf(returnCode)); // update return code
+        // Session of the interpreter works with the standard streams of the process
+        Session session = new Session(System.in, System.out, System.err);
+        if (args.length > 0 && args[0].equals("-c")) {
+            if (args.length != 2) {
+                System.err.println("Usage: cli [-c LINE]");
+                System.exit(2);
             }
-        } // Scanner is automatically closed here
+            System.exit(session.run(args[1]));
+        }
+
+        // Lines typed by the user are recorded in the history, scripts piped to stdin are not
+        if (System.console() != null || Boolean.getBoolean("cli.interactive")) {
+            session.setHistory(History.get());
+        }
+
+        // Loop to read input line by line until EOF or "exit" command
+        try {
+            session.runLines();
+        } catch (IOException e) {
+            System.err.println("cli: " + e.getMessage());
+        }
+        System.exit(0);
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,10 @@ package org.cli;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 
@@ -15,6 +19,26 @@ public class Command {
     // Standard input and output (can be redirected in a pipeline)
     private InputStream stdin;
     private OutputStream stdout;
+    // Standard error, builtins print their error messages here
+    private PrintStream stderr;
+
+    // Files behind stdin and stdout when they are redirected to files (null otherwise),
+    // builtins can use them to transfer data between channels directly
+    private FileChannel stdinChannel;
+    private FileChannel stdoutChannel;
+    // Line channels behind stdin and stdout when the neighbouring stages are line-oriented builtins
+    // (null otherwise), builtins can exchange lines without splitting and decoding the bytes again
+    private LineChannel lineInput;
+    private LineChannel lineOutput;
+
+    // Redirections parsed from the command line (<, >, >>, 2>), null if there is no redirection
+    private Path inputRedirect;
+    private Path outputRedirect;
+    private boolean appendOutput;
+    private Path errorRedirect;
+
+    // Working directory relative file names are resolved against, null for the one of the process
+    private Path directory;
 
     public Command(List<String> tokens) {
         if (tokens.isEmpty()) {
@@ -27,15 +51,64 @@ public class Command {
         }
         this.stdin = System.in;
         this.stdout = System.out;
+        this.stderr = System.err;
     }
 
     // Setter for stdin and stdout (used in pipelines)
     public void setStdin(InputStream stdin) {
         this.stdin = stdin;
+        this.stdinChannel = null;
+        this.lineInput = null;
     }
 
     public void setStdout(OutputStream stdout) {
         this.stdout = stdout;
+        this.stdoutChannel = null;
+        this.lineOutput = null;
+    }
+
+    public void setStderr(PrintStream stderr) {
+        this.stderr = stderr;
+    }
+
+    // Setter for stdin and stdout backed by files (used for redirections)
+    public void setStdin(FileChannel channel) {
+        this.stdin = Channels.newInputStream(channel);
+        this.stdinChannel = channel;
+        this.lineInput = null;
+    }
+
+    public void setStdout(FileChannel channel) {
+        this.stdout = Channels.newOutputStream(channel);
+        this.stdoutChannel = channel;
+        this.lineOutput = null;
+    }
+
+    // Setter for stdin and stdout connected to line-oriented neighbours (used in pipelines)
+    void setStdin(LineChannel channel) {
+        this.stdin = channel.source();
+        this.stdinChannel = null;
+        this.lineInput = channel;
+    }
+
+    void setStdout(LineChannel channel) {
+        this.stdout = channel.sink();
+        this.stdoutChannel = null;
+        this.lineOutput = channel;
+    }
+
+    // Setter for redirections (used in Parser)
+    public void redirectInput(Path file) {
+        this.inputRedirect = file;
+    }
+
+    public void redirectOutput(Path file, boolean append) {
+        this.outputRedirect = file;
+        this.appendOutput = append;
+    }
+
+    public void redirectError(Path file) {
+        this.errorRedirect = file;
     }
 
     // Getter for stdin and stdout (used in Executor)
@@ -47,6 +120,63 @@ public class Command {
         return this.stdout;
     }
 
+    public PrintStream getStderr() {
+        return this.stderr;
+    }
+
+    public FileChannel getStdinChannel() {
+        return this.stdinChannel;
+    }
+
+    public FileChannel getStdoutChannel() {
+        return this.stdoutChannel;
+    }
+
+    LineChannel getLineInput() {
+        return this.lineInput;
+    }
+
+    LineChannel getLineOutput() {
+        return this.lineOutput;
+    }
+
+    // Setter for the working directory (used in Parser)
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    // Getter for the working directory, null if it is the one of the process
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    // Path of a file named in the arguments: relative names are resolved against the working directory
+    public Path resolve(String fileName) {
+        return directory == null ? Path.of(fileName) : directory.resolve(fileName);
+    }
+
+    // Getter for redirections (used in Executor)
+    public Path getInputRedirect() {
+        return this.inputRedirect;
+    }
+
+    public Path getOutputRedirect() {
+        return this.outputRedirect;
+    }
+
+    public boolean isAppendOutput() {
+        return this.appendOutput;
+    }
+
+    public Path getErrorRedirect() {
+        return this.errorRedirect;
+    }
+
+    // Method to check if the command has any redirection
+    public boolean hasRedirects() {
+        return inputRedirect != null || outputRedirect != null || errorRedirect != null;
+    }
+
     // Getter for command name (used in Executor)
     public String getName() {
         return this.name;
@@ -0,0 +1,174 @@
+package org.cli;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+// CompressedInput opens inputs of builtins and decompresses them transparently.
+// The format is detected by magic bytes, not by the file extension.
+// Decompression runs on its own thread and hands data over through a bounded pipe,
+// so it overlaps with the work of the builtin that reads the data.
+final class CompressedInput {
+
+    // Buffer of the decompressor and capacity of the pipe to the reader
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it is compressed.
+     * Plain files are returned as FileInputStream, so builtins can still use their channel.
+     *
+     * @param file path of the file
+     * @return     stream of the (decompressed) content
+     */
+    static InputStream open(Path file) throws IOException {
+        // FileInputStream reports a missing file as "file (No such file or directory)" like before
+        FileInputStream input = new FileInputStream(file.toFile());
+        if (!Files.isRegularFile(file)) {
+            // pipes and devices can't be rewound after the magic bytes
+            return input;
+        }
+        try {
+            byte[] magic = new byte[ZSTD_MAGIC.length];
+            int length = readMagic(input, magic);
+            input.getChannel().position(0);
+            if (startsWith(magic, length, GZIP_MAGIC)) {
+                return inBackground(new GZIPInputStream(input, BUFFER_SIZE), true);
+            }
+            if (startsWith(magic, length, ZSTD_MAGIC)) {
+                return zstd(input, true);
+            }
+            return input;
+        } catch (IOException | RuntimeException e) {
+            // unreadable file or broken gzip header
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the file starts with the magic bytes of a supported compression format.
+     */
+    static boolean isCompressed(Path file) throws IOException {
+        try (FileInputStream input = new FileInputStream(file.toFile())) {
+            byte[] magic = new byte[ZSTD_MAGIC.length];
+            int length = readMagic(input, magic);
+            return startsWith(magic, length, GZIP_MAGIC) || startsWith(magic, length, ZSTD_MAGIC);
+        }
+    }
+
+    // Reads the first bytes of the file into magic, returns how many there are
+    private static int readMagic(FileInputStream input, byte[] magic) throws IOException {
+        FileChannel channel = input.getChannel();
+        ByteBuffer buffer = ByteBuffer.wrap(magic);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // read until the magic is complete or the file ends
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Decompresses a stream if it starts with the magic bytes of a supported format,
+     * otherwise returns its content as is. The source stream is not closed, it belongs to the caller.
+     *
+     * @param input source stream
+     * @return      stream of the (decompressed) content
+     */
+    static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+        byte[] magic = new byte[ZSTD_MAGIC.length];
+        buffered.mark(magic.length);
+        int length = buffered.readNBytes(magic, 0, magic.length);
+        buffered.reset();
+        if (startsWith(magic, length, GZIP_MAGIC)) {
+            return inBackground(new GZIPInputStream(buffered, BUFFER_SIZE), false);
+        }
+        if (startsWith(magic, length, ZSTD_MAGIC)) {
+            return zstd(buffered, false);
+        }
+        return buffered;
+    }
+
+    // Run the decompression on a separate thread, the result is read from the returned stream.
+    // Closing the returned stream stops the decompression
+    private static InputStream inBackground(InputStream decompressed, boolean closeSource) {
+        BoundedPipe pipe = new BoundedPipe(BUFFER_SIZE);
+        Thread decompressor = new Thread(() -> {
+            try {
+                BufferPool.shared().copy(decompressed, pipe.sink());
+                pipe.closeWriter();
+            } catch (BrokenPipeException e) {
+                // The reader doesn't need the rest of the data
+                pipe.closeWriter();
+            } catch (IOException e) {
+                pipe.closeWriter(e);
+            } finally {
+                closeQuietly(decompressed, closeSource);
+            }
+        }, "cli-decompress");
+        decompressor.setDaemon(true);
+        decompressor.start();
+        return pipe.source();
+    }
+
+    // The JDK has no Zstandard decoder, so zstd frames are decoded by the `zstd` tool
+    private static InputStream zstd(InputStream compressed, boolean closeSource) throws IOException {
+        Process process;
+        try {
+            process = new ProcessBuilder("zstd", "-dcq")
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            closeQuietly(compressed, closeSource);
+            throw new IOException("zstd compressed input needs the zstd tool: " + e.getMessage(), e);
+        }
+        Thread feeder = new Thread(() -> {
+            try (OutputStream processInput = process.getOutputStream()) {
+                BufferPool.shared().copy(compressed, processInput);
+            } catch (IOException e) {
+                // zstd exited, it reports its errors itself
+            } finally {
+                closeQuietly(compressed, closeSource);
+            }
+        }, "cli-zstd-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+        return process.getInputStream();
+    }
+
+    // Close the source of the decompressor if it is owned by CompressedInput
+    private static void closeQuietly(InputStream source, boolean close) {
+        if (!close) {
+            return;
+        }
+        try {
+            source.close();
+        } catch (IOException e) {
+            // nothing to do, the data is already read
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
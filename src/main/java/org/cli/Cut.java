@@ -0,0 +1,209 @@
+package org.cli;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cut implements the `cut` builtin: it prints the selected fields or characters of every line.
+// Lines are byte slices of the input buffer, delimiters are found in the bytes and the selected
+// parts are written to the output as slices of the same buffer, neighbouring selected fields as
+// one slice with their delimiters. No String is created per line or per field.
+final class Cut {
+
+    // Selected positions, sorted and merged ranges: ranges[2i] to ranges[2i + 1], inclusive, from 1
+    private final long[] ranges;
+    // true for fields (-f), false for characters (-c)
+    private final boolean fields;
+    private final byte delimiter;
+    // print only the lines with the delimiter (-s)
+    private final boolean onlyDelimited;
+    private final byte[] delimiterBytes;
+
+    private Cut(long[] ranges, boolean fields, byte delimiter, boolean onlyDelimited) {
+        this.ranges = ranges;
+        this.fields = fields;
+        this.delimiter = delimiter;
+        this.onlyDelimited = onlyDelimited;
+        this.delimiterBytes = new byte[]{delimiter};
+    }
+
+    /**
+     * Cut of the fields in the list separated by the delimiter.
+     *
+     * @param list          list of fields, like "1,3-5,7-"
+     * @param delimiter     field delimiter, a single byte
+     * @param onlyDelimited true to skip the lines without the delimiter, they are printed whole otherwise
+     */
+    static Cut fields(String list, byte delimiter, boolean onlyDelimited) {
+        return new Cut(parseList(list), true, delimiter, onlyDelimited);
+    }
+
+    /**
+     * Cut of the characters in the list (UTF-8 characters, bytes of other encodings).
+     */
+    static Cut characters(String list) {
+        return new Cut(parseList(list), false, (byte) 0, false);
+    }
+
+    /**
+     * Writes the selected parts of every line of the input to the output.
+     */
+    void cut(ByteLines lines, LineOutput output) throws IOException {
+        while (lines.next()) {
+            if (fields) {
+                cutFields(lines.buffer(), lines.start(), lines.start() + lines.length(), output);
+            } else {
+                cutCharacters(lines.buffer(), lines.start(), lines.start() + lines.length(), output);
+            }
+        }
+        output.flush();
+    }
+
+    private void cutFields(byte[] buffer, int start, int end, LineOutput output) throws IOException {
+        int firstDelimiter = indexOf(buffer, start, end);
+        if (firstDelimiter < 0) {
+            if (!onlyDelimited) {
+                output.writePart(buffer, start, end - start);
+                output.endLine();
+            }
+            return;
+        }
+        int range = 0;
+        long field = 1;
+        int fieldStart = start;
+        int fieldEnd = firstDelimiter;
+        // selected fields not written yet: [runStart, runEnd)
+        int runStart = -1;
+        int runEnd = 0;
+        boolean written = false;
+        while (true) {
+            while (range < ranges.length && field > ranges[range + 1]) {
+                range += 2;
+            }
+            if (range == ranges.length) {
+                break; // no more selected fields in this line
+            }
+            if (field >= ranges[range]) {
+                if (runStart < 0) {
+                    runStart = fieldStart;
+                }
+                runEnd = fieldEnd;
+            } else if (runStart >= 0) {
+                written = writeRun(buffer, runStart, runEnd, written, output);
+                runStart = -1;
+            }
+            if (fieldEnd == end) {
+                break;
+            }
+            field++;
+            fieldStart = fieldEnd + 1;
+            fieldEnd = indexOf(buffer, fieldStart, end);
+            if (fieldEnd < 0) {
+                fieldEnd = end;
+            }
+        }
+        if (runStart >= 0) {
+            writeRun(buffer, runStart, runEnd, written, output);
+        }
+        output.endLine();
+    }
+
+    // Writes selected fields, after a delimiter if other fields are written before them
+    private boolean writeRun(byte[] buffer, int start, int end, boolean written, LineOutput output) throws IOException {
+        if (written) {
+            output.writePart(delimiterBytes, 0, 1);
+        }
+        output.writePart(buffer, start, end - start);
+        return true;
+    }
+
+    private void cutCharacters(byte[] buffer, int start, int end, LineOutput output) throws IOException {
+        int range = 0;
+        long character = 0;
+        int runStart = -1;
+        for (int i = start; i < end; i++) {
+            if ((buffer[i] & 0xC0) == 0x80) {
+                continue; // continuation byte of a UTF-8 character
+            }
+            character++;
+            while (range < ranges.length && character > ranges[range + 1]) {
+                range += 2;
+            }
+            boolean selected = range < ranges.length && character >= ranges[range];
+            if (selected && runStart < 0) {
+                runStart = i;
+            } else if (!selected && runStart >= 0) {
+                output.writePart(buffer, runStart, i - runStart);
+                runStart = -1;
+            }
+            if (range == ranges.length) {
+                break;
+            }
+        }
+        if (runStart >= 0) {
+            output.writePart(buffer, runStart, end - runStart);
+        }
+        output.endLine();
+    }
+
+    private int indexOf(byte[] buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Parses a list like "1,3-5,7-,-2" into sorted merged ranges
+    private static long[] parseList(String list) {
+        List<long[]> parsed = new ArrayList<>();
+        for (String item : list.split(",", -1)) {
+            int dash = item.indexOf('-');
+            long from;
+            long to;
+            if (dash < 0) {
+                from = to = parsePosition(item, list);
+            } else {
+                from = dash == 0 ? 1 : parsePosition(item.substring(0, dash), list);
+                to = dash == item.length() - 1 ? Long.MAX_VALUE : parsePosition(item.substring(dash + 1), list);
+                if (dash == 0 && dash == item.length() - 1) {
+                    throw new IllegalArgumentException("invalid range with no endpoint: -");
+                }
+                if (to < from) {
+                    throw new IllegalArgumentException("invalid decreasing range: " + item);
+                }
+            }
+            parsed.add(new long[]{from, to});
+        }
+        parsed.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : parsed) {
+            long[] last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && range[0] <= last[1] + 1 && last[1] != Long.MAX_VALUE) {
+                last[1] = Math.max(last[1], range[1]);
+            } else if (last == null || last[1] != Long.MAX_VALUE) {
+                merged.add(range);
+            }
+        }
+        long[] ranges = new long[merged.size() * 2];
+        for (int i = 0; i < merged.size(); i++) {
+            ranges[2 * i] = merged.get(i)[0];
+            ranges[2 * i + 1] = merged.get(i)[1];
+        }
+        return ranges;
+    }
+
+    private static long parsePosition(String position, String list) {
+        long value;
+        try {
+            value = Long.parseLong(position);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid list: " + list);
+        }
+        if (value < 1) {
+            throw new IllegalArgumentException("fields and positions are numbered from 1");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,150 @@
+package org.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Daemon keeps one warmed-up JVM running and executes requests of DaemonClient
+// received over a Unix domain socket. Every connection is an independent session with
+// its own environment and standard streams, the JIT-compiled code is shared by all of them.
+final class Daemon {
+
+    // Exit code of requests the daemon cannot serve
+    private static final int USAGE_ERROR = 2;
+
+    private Daemon() {
+    }
+
+    /**
+     * Listens on the socket and serves connections until the process is stopped.
+     * A stale socket file left by a previous daemon is replaced.
+     *
+     * @param socket path of the Unix domain socket
+     */
+    static void serve(Path socket) throws IOException {
+        Files.deleteIfExists(socket);
+        ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cli-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.submit(() -> handle(connection));
+            }
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    // Runs one client request: reads the header frames, executes the session and sends the exit code
+    static void handle(SocketChannel connection) {
+        try (connection) {
+            DataInputStream input = new DataInputStream(DaemonProtocol.input(connection));
+            OutputStream output = new BufferedOutputStream(DaemonProtocol.output(connection),
+                    DaemonProtocol.MAX_FRAME_SIZE + 5);
+            int exitCode = serveRequest(input, output);
+            DaemonProtocol.writeFrame(output, DaemonProtocol.EXIT, DaemonProtocol.exitPayload(exitCode));
+        } catch (IOException e) {
+            // The client has gone, nobody to report to
+        }
+    }
+
+    private static int serveRequest(DataInputStream input, OutputStream output) throws IOException {
+        PrintStream stderr = new PrintStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDERR),
+                true);
+        DaemonProtocol.Frame directory = DaemonProtocol.readFrame(input);
+        DaemonProtocol.Frame arguments = DaemonProtocol.readFrame(input);
+        if (directory == null || directory.type() != DaemonProtocol.DIRECTORY
+                || arguments == null || arguments.type() != DaemonProtocol.ARGUMENTS) {
+            stderr.println("cli: malformed request");
+            return USAGE_ERROR;
+        }
+        // The commands run in the working directory of the client, not in the one of the daemon
+        Path clientDirectory = parseDirectory(directory.payload());
+        if (clientDirectory == null) {
+            stderr.println("cli: malformed request");
+            return USAGE_ERROR;
+        }
+        List<String> args = parseArguments(arguments.payload());
+        // -i is sent by the client for a terminal: the lines are recorded in the history like in CLI
+        boolean interactive = args.equals(List.of(DaemonClient.INTERACTIVE));
+        if (interactive) {
+            args = List.of();
+        }
+        if (!args.isEmpty() && (args.size() != 2 || !args.getFirst().equals("-c"))) {
+            stderr.println("Usage: cli [-c LINE]");
+            return USAGE_ERROR;
+        }
+
+        // stdin frames are moved to a pipe by a separate thread, so the session reads
+        // its input while its output is being sent
+        BoundedPipe stdin = new BoundedPipe();
+        Thread stdinReader = new Thread(() -> readStdin(input, stdin), "cli-session-stdin");
+        stdinReader.setDaemon(true);
+        stdinReader.start();
+
+        OutputStream stdout = new BufferedOutputStream(
+                new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDOUT), DaemonProtocol.MAX_FRAME_SIZE);
+        Session session = new Session(stdin.source(), stdout, stderr);
+        session.setDirectory(clientDirectory);
+        if (interactive) {
+            session.setHistory(History.get());
+        }
+        try {
+            return args.isEmpty() ? session.runLines() : session.run(args.get(1));
+        } finally {
+            stdout.flush();
+            stdin.closeReader();
+        }
+    }
+
+    // Copies stdin frames of the client to the pipe until the end of stdin
+    private static void readStdin(DataInputStream input, BoundedPipe stdin) {
+        try {
+            DaemonProtocol.Frame frame;
+            while ((frame = DaemonProtocol.readFrame(input)) != null && frame.type() == DaemonProtocol.STDIN) {
+                stdin.sink().write(frame.payload());
+            }
+            stdin.closeWriter();
+        } catch (IOException e) {
+            // The session doesn't read stdin anymore or the client has gone
+            stdin.closeWriter(e);
+        }
+    }
+
+    // Absolute path of the working directory of the client, null if the payload is not one
+    private static Path parseDirectory(byte[] payload) {
+        try {
+            Path directory = Path.of(new String(payload, StandardCharsets.UTF_8));
+            return directory.isAbsolute() ? directory : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static List<String> parseArguments(byte[] payload) {
+        if (payload.length == 0) {
+            return List.of();
+        }
+        String joined = new String(payload, StandardCharsets.UTF_8);
+        return Arrays.asList(joined.split(String.valueOf(DaemonProtocol.ARGUMENT_SEPARATOR), -1));
+    }
+}
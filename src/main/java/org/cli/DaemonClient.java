@@ -0,0 +1,97 @@
+package org.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// DaemonClient is the thin client of the daemon: it forwards the arguments and stdin,
+// prints what the daemon sends to stdout and stderr and exits with the received exit code.
+// It loads only a few JDK classes, so it starts much faster than the interpreter itself.
+public class DaemonClient {
+
+    // Argument of a request typed in a terminal, the daemon records its lines in the history
+    static final String INTERACTIVE = "-i";
+
+    /**
+     * Runs a request on the daemon.
+     *
+     * @param args path of the daemon socket followed by the arguments of the CLI ([-c LINE])
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: DaemonClient SOCKET [-c LINE]");
+            System.exit(2);
+        }
+        try {
+            String[] request = Arrays.copyOfRange(args, 1, args.length);
+            // Lines typed by the user are recorded in the history by the daemon, piped scripts are not
+            if (request.length == 0 && (System.console() != null || Boolean.getBoolean("cli.interactive"))) {
+                request = new String[]{INTERACTIVE};
+            }
+            System.exit(run(Path.of(args[0]), request, System.in));
+        } catch (IOException e) {
+            System.err.println("cli: " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Sends the request of the working directory and copies the response frames, returns the exit code of the request
+    static int run(Path socket, String[] args, InputStream stdin) throws IOException {
+        return run(socket, Path.of(System.getProperty("user.dir")), args, stdin);
+    }
+
+    // Sends the request to run in the directory and copies the response frames, returns the exit code of the request
+    static int run(Path socket, Path directory, String[] args, InputStream stdin) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            OutputStream output = new BufferedOutputStream(DaemonProtocol.output(channel),
+                    DaemonProtocol.MAX_FRAME_SIZE + 5);
+            DaemonProtocol.writeFrame(output, DaemonProtocol.DIRECTORY,
+                    directory.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            DaemonProtocol.writeFrame(output, DaemonProtocol.ARGUMENTS,
+                    String.join(String.valueOf(DaemonProtocol.ARGUMENT_SEPARATOR), args).getBytes(StandardCharsets.UTF_8));
+
+            Thread stdinWriter = new Thread(() -> writeStdin(stdin, output), "cli-stdin");
+            stdinWriter.setDaemon(true);
+            stdinWriter.start();
+
+            DataInputStream input = new DataInputStream(DaemonProtocol.input(channel));
+            DaemonProtocol.Frame frame;
+            while ((frame = DaemonProtocol.readFrame(input)) != null) {
+                switch (frame.type()) {
+                    case DaemonProtocol.STDOUT -> System.out.write(frame.payload(), 0, frame.payload().length);
+                    case DaemonProtocol.STDERR -> System.err.write(frame.payload(), 0, frame.payload().length);
+                    case DaemonProtocol.EXIT -> {
+                        System.out.flush();
+                        System.err.flush();
+                        return DaemonProtocol.exitCode(frame);
+                    }
+                    default -> throw new IOException("Unexpected frame " + (char) frame.type());
+                }
+            }
+            throw new IOException("Connection closed by the daemon");
+        }
+    }
+
+    // Sends stdin to the daemon, stops when the daemon closes the connection
+    private static void writeStdin(InputStream stdin, OutputStream output) {
+        byte[] buffer = new byte[DaemonProtocol.MAX_FRAME_SIZE];
+        try {
+            int read;
+            while ((read = stdin.read(buffer)) != -1) {
+                DaemonProtocol.writeFrame(output, DaemonProtocol.STDIN, buffer, 0, read);
+            }
+            DaemonProtocol.writeFrame(output, DaemonProtocol.STDIN_END, new byte[0]);
+        } catch (IOException e) {
+            // The request has finished, the rest of stdin is not needed
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.cli;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// DaemonProtocol is the wire format between the daemon and its client.
+// Every message is a frame: one byte of type, four bytes of payload length, the payload.
+// The client sends the working directory and the arguments, then stdin data; the daemon
+// answers with stdout and stderr data and finally the exit code.
+final class DaemonProtocol {
+
+    // client -> daemon
+    static final byte DIRECTORY = 'd';
+    static final byte ARGUMENTS = 'a';
+    static final byte STDIN = 'i';
+    static final byte STDIN_END = 'I';
+    // daemon -> client
+    static final byte STDOUT = 'o';
+    static final byte STDERR = 'e';
+    static final byte EXIT = 'x';
+
+    // Largest payload of a data frame, longer writes are split
+    static final int MAX_FRAME_SIZE = 64 * 1024;
+    // Separator of the arguments in the ARGUMENTS frame
+    static final char ARGUMENT_SEPARATOR = '\0';
+
+    private DaemonProtocol() {
+    }
+
+    // A received frame
+    record Frame(byte type, byte[] payload) {
+    }
+
+    /**
+     * Writes one frame. Frames are written under the lock of the output,
+     * so several threads can share it without interleaving their frames.
+     */
+    static void writeFrame(OutputStream output, byte type, byte[] payload, int offset, int length)
+            throws IOException {
+        byte[] header = ByteBuffer.allocate(5).put(type).putInt(length).array();
+        synchronized (output) {
+            output.write(header);
+            output.write(payload, offset, length);
+            output.flush();
+        }
+    }
+
+    static void writeFrame(OutputStream output, byte type, byte[] payload) throws IOException {
+        writeFrame(output, type, payload, 0, payload.length);
+    }
+
+    /**
+     * Reads one frame.
+     *
+     * @return the frame or null at the end of the stream
+     */
+    static Frame readFrame(DataInputStream input) throws IOException {
+        int type = input.read();
+        if (type == -1) {
+            return null;
+        }
+        int length = input.readInt();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Malformed frame of " + length + " bytes");
+        }
+        byte[] payload = new byte[length];
+        try {
+            input.readFully(payload);
+        } catch (EOFException e) {
+            throw new IOException("Truncated frame");
+        }
+        return new Frame((byte) type, payload);
+    }
+
+    static byte[] exitPayload(int exitCode) {
+        return ByteBuffer.allocate(4).putInt(exitCode).array();
+    }
+
+    static int exitCode(Frame frame) {
+        return ByteBuffer.wrap(frame.payload()).getInt();
+    }
+
+    // Streams over a connected socket. Unlike the Channels adapters, they don't lock the channel
+    // for the whole blocking read, so one thread can read while another one writes
+    static InputStream input(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return length == 0 ? 0 : channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+        };
+    }
+
+    static OutputStream output(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    // Stream whose data is sent as frames of one type (stdout or stderr of a session)
+    static final class FrameOutputStream extends OutputStream {
+        private final OutputStream output;
+        private final byte type;
+
+        FrameOutputStream(OutputStream output, byte type) {
+            this.output = output;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int chunk = Math.min(length, MAX_FRAME_SIZE);
+                writeFrame(output, type, bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.cli;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,6 +9,8 @@ public class Environment {
 
     // Map to store environment variables
     private final Map<String, String> vars;
+    // Working directory of the commands, null for the working directory of the process
+    private Path directory;
 
     // Constructor initializes the environment and sets "?" to "0"
     public Environment() {
@@ -29,4 +32,14 @@ public class Environment {
     public boolean containsVar(String key) {
         return vars.containsKey(key);
     }
+
+    // Get the working directory of the commands, null if it is the one of the process
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Set the working directory of the commands (used by the daemon for the directory of the client)
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package org.cli;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -22,7 +28,8 @@ public class Executor {
      *                  Non-zero for errors
      */
     public static int execute(Command command) {
-        if (BUILTIN_FUNCTIONS.containsKey(command.getName())) {
+        if (command instanceof FusedCommand || BuiltinRegistry.isCore(command.getName())
+                || BuiltinRegistry.find(command.getName()) != null) {
             return executeBuiltin(command);
         }
         return executeExternal(command);
@@ -33,39 +40,161 @@ public class Executor {
     private static int executeExternal(Command command) {
         ProcessBuilder pb = new ProcessBuilder(command.getName());
         pb.command().addAll(command.getArgs());
+        if (command.getDirectory() != null) {
+            pb.directory(command.getDirectory().toFile());
+        }
         pb.redirectErrorStream(true);
+        // Redirections to files are done by the OS, the data doesn't pass through the JVM
+        if (command.getInputRedirect() != null) {
+            pb.redirectInput(command.getInputRedirect().toFile());
+        }
+        if (command.getOutputRedirect() != null) {
+            File file = command.getOutputRedirect().toFile();
+            pb.redirectOutput(command.isAppendOutput() ?
+                    ProcessBuilder.Redirect.appendTo(file) :
+                    ProcessBuilder.Redirect.to(file));
+            // errors must not go to the file together with the output, they go to the stderr of the
+            // command: the console is inherited, other streams (e.g. of a daemon session) are copied
+            pb.redirectErrorStream(false);
+            if (command.getStderr() == System.err) {
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            }
+        }
+        if (command.getErrorRedirect() != null) {
+            pb.redirectErrorStream(false);
+            pb.redirectError(command.getErrorRedirect().toFile());
+        }
 
+        Process process;
         try {
-            Process process = pb.start();
+            process = pb.start();
+        } catch (IOException e) {
+            command.getStderr().println(command.getName() + ": " + e.getMessage());
+            return 1;
+        }
 
-            // Redirect stdin to the process (if not System.in)
-            if (command.getStdin() != System.in) {
-                try (OutputStream processInput = process.getOutputStream()) {
-                    command.getStdin().transferTo(processInput);
-                }
-            }
+        Thread errors = null;
+        if (!pb.redirectErrorStream() && pb.redirectError() == ProcessBuilder.Redirect.PIPE) {
+            errors = new Thread(() -> copyErrors(command, process), command.getName() + "-stderr");
+            errors.setDaemon(true);
+            errors.start();
+        }
 
-            // Redirect process stdout and command.getStdout()
-            try (InputStream processOutput = process.getInputStream()) {
-                processOutput.transferTo(command.getStdout());
-            }
+        // Redirect stdin to the process (if not System.in or a file).
+        // It is fed from a separate thread, so the process output is read at the same time
+        if (command.getStdin() != System.in && command.getInputRedirect() == null) {
+            Thread feeder = new Thread(() -> feedProcess(command, process), command.getName() + "-stdin");
+            feeder.setDaemon(true);
+            feeder.start();
+        }
+
+        // Redirect process stdout and command.getStdout()
+        try (InputStream processOutput = process.getInputStream()) {
+            BufferPool.shared().copy(processOutput, command.getStdout());
             // Wait process
-            return process.waitFor();
-        } catch (IOException | InterruptedException e) {
-            if (!e.getMessage().contains("Broken pipe")) {
-                System.err.println(command.getName() + ": " + e.getMessage());
-                return 1;
+            int exitCode = process.waitFor();
+            if (errors != null) {
+                errors.join();
             }
+            return exitCode;
+        } catch (BrokenPipeException e) {
+            // Downstream stage finished early, the rest of the output is not needed
+            process.destroy();
             return 0;
+        } catch (IOException e) {
+            command.getStderr().println(command.getName() + ": " + e.getMessage());
+            process.destroy();
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            return 1;
+        }
+    }
+
+
+    // Copy the errors of the process to the stderr of the command
+    private static void copyErrors(Command command, Process process) {
+        try (InputStream processErrors = process.getErrorStream()) {
+            BufferPool.shared().copy(processErrors, command.getStderr());
+        } catch (IOException e) {
+            // the process was destroyed
+        } finally {
+            command.getStderr().flush();
+        }
+    }
+
+    // Copy command stdin to the process stdin until the end of the input or until the process stops reading
+    private static void feedProcess(Command command, Process process) {
+        InputStream input = command.getStdin();
+        byte[] buffer = BufferPool.shared().borrow(BufferPool.SMALL);
+        try (OutputStream processInput = process.getOutputStream()) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                try {
+                    processInput.write(buffer, 0, read);
+                } catch (IOException e) {
+                    // The process doesn't read its input anymore, so the upstream stage should stop too
+                    input.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // The input was closed because the command has finished, nothing left to feed
+        } finally {
+            BufferPool.shared().release(buffer);
         }
     }
 
 
     // Method to execute the builtin command
     private static int executeBuiltin(Command command) {
-        return BUILTIN_FUNCTIONS.containsKey(command.getName()) ?
-                BUILTIN_FUNCTIONS.get(command.getName()).apply(command) :
-                unknownBuiltinCommand(command);
+        // Files opened for redirections, they are closed when the command finishes
+        List<Closeable> redirections = new ArrayList<>();
+        try {
+            openRedirections(command, redirections);
+            // Results of deterministic builtins over unchanged files can be replayed (opt-in)
+            ResultCache cache = ResultCache.get();
+            return cache == null ? dispatchBuiltin(command) : cache.execute(command, Executor::dispatchBuiltin);
+        } catch (IOException e) {
+            command.getStderr().println(command.getName() + ": " + e.getMessage());
+            return 1;
+        } finally {
+            for (Closeable redirection : redirections) {
+                try {
+                    redirection.close();
+                } catch (IOException e) {
+                    command.getStderr().println(command.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    // Replace streams of the builtin with FileChannel-backed ones for every redirection.
+    // A redirection takes precedence over a pipe, as in other shells
+    private static void openRedirections(Command command, List<Closeable> redirections) throws IOException {
+        if (command.getInputRedirect() != null) {
+            FileChannel channel = FileChannel.open(command.getInputRedirect(), StandardOpenOption.READ);
+            redirections.add(channel);
+            command.setStdin(channel);
+        }
+        if (command.getOutputRedirect() != null) {
+            FileChannel channel = openForWriting(command.getOutputRedirect(), command.isAppendOutput());
+            redirections.add(channel);
+            command.setStdout(channel);
+        }
+        if (command.getErrorRedirect() != null) {
+            PrintStream stderr = new PrintStream(Channels.newOutputStream(openForWriting(command.getErrorRedirect(), false)), true);
+            redirections.add(stderr);
+            command.setStderr(stderr);
+        }
+    }
+
+
+    private static FileChannel openForWriting(Path file, boolean append) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
     }
 
 
@@ -75,18 +204,52 @@ public class Executor {
         InputStream input = null;
         int exitCode = 0;
         try {
-            // Read data from input stream and write to output stream
             input = getInputStream(command);
-            input.transferTo(output);
+            FileChannel inputChannel = getInputChannel(command, input);
+            if (inputChannel != null && command.getStdoutChannel() != null) {
+                // File to file: transfer between channels, the data doesn't pass through the JVM heap
+                transfer(inputChannel, command.getStdoutChannel());
+            } else {
+                // Read data from input stream and write to output stream
+                BufferPool.shared().copy(input, output);
+            }
         } catch (IOException e) {
-            System.err.println("cat: " + e.getMessage());
-            exitCode = 1;
+            exitCode = reportError(command, e);
         } finally {
             if (input != null && input != System.in) {
                 try {
                     input.close();
                 } catch (IOException e) {
-                    System.err.println("cat: " + e.getMessage());
+                    command.getStderr().println("cat: " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `zcat` command: cat that always decompresses, stdin included
+    private static int executeZcat(Command command) {
+        OutputStream output = command.getStdout();
+        InputStream input = null;
+        boolean fromStdin = command.getArgs().isEmpty();
+        int exitCode = 0;
+        try {
+            input = fromStdin ?
+                    CompressedInput.decompress(command.getStdin()) :
+                    CompressedInput.open(command.resolve(command.getArgs().getFirst()));
+            // Read data from input stream and write to output stream
+            BufferPool.shared().copy(input, output);
+        } catch (IOException e) {
+            exitCode = reportError(command, e);
+        } finally {
+            // the decompressing wrapper of System.in must not close it
+            if (input != null && !(fromStdin && command.getStdin() == System.in)) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    command.getStderr().println("zcat: " + e.getMessage());
                     exitCode = 1;
                 }
             }
@@ -107,54 +270,89 @@ public class Executor {
             // Flush the output stream to ensure data is written
             output.flush();
         } catch (IOException e) {
-            System.err.println("echo: " + e.getMessage());
-            exitCode = 1;
+            exitCode = reportError(command, e);
         }
         return exitCode;
     }
 
 
-    // Set input for wc and cat: stdin or file
+    // Set input for cat: stdin or file, compressed files are decompressed transparently
     private static InputStream getInputStream(Command command) throws IOException {
         if (command.getArgs().isEmpty()) {
             return command.getStdin();
         }
         String file = command.getArgs().getFirst();
-        return new FileInputStream(file);
+        return CompressedInput.open(command.resolve(file));
+    }
+
+
+    // Return the file channel behind the input of cat, or null if the input is not a file
+    private static FileChannel getInputChannel(Command command, InputStream input) {
+        if (input instanceof FileInputStream fileInput) {
+            return fileInput.getChannel();
+        }
+        return input == command.getStdin() ? command.getStdinChannel() : null;
+    }
+
+
+    // Copy the rest of the source channel to the target channel
+    private static void transfer(FileChannel source, FileChannel target) throws IOException {
+        long position = source.position();
+        long size = source.size();
+        while (position < size) {
+            long transferred = source.transferTo(position, size - position, target);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+        source.position(position);
     }
 
 
     // Method to execute the `wc` command
     private static int executeWc(Command command) {
         OutputStream output = command.getStdout();
-        String fileName = command.getArgs().isEmpty() ? "" : command.getArgs().getFirst();
         InputStream input = null;
         int exitCode = 0;
-        long lineCnt = 0, wordCnt = 0, byteCnt = 0;
+
+        WcArgs wcArgs = new WcArgs();
+        JCommander wcCommander = JCommander.newBuilder()
+                .addObject(wcArgs)
+                .build();
         try {
-            input = getInputStream(command);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lineCnt++;
-                wordCnt += line.isBlank() ? 0 : line.trim().split("\\s+").length;
-                byteCnt += line.getBytes().length + 1;
+            // parse wc arguments using JCommander
+            wcCommander.parse(command.getArgs().toArray(new String[0]));
+            String fileName = wcArgs.getFileNames().isEmpty() ? "" : wcArgs.getFileNames().getFirst();
+
+            // lines, words and bytes
+            long[] counts;
+            if (wcArgs.isIncremental()) {
+                if (fileName.isEmpty()) {
+                    throw new ParameterException("--incremental needs a file");
+                }
+                // Only the bytes appended since the previous run are read
+                counts = IncrementalCounts.get().count("wc", command.resolve(fileName), 3,
+                        (region, regionCounts) -> countLinesWordsBytes(LineInput.windowed(command, region), regionCounts));
+            } else {
+                input = fileName.isEmpty() ? command.getStdin() : CompressedInput.open(command.resolve(fileName));
+                counts = new long[3];
+                countLinesWordsBytes(LineInput.windowed(command, input), counts);
             }
             // Join all stat in a single line with spaces
-            String result = String.format("%7d %7d %7d %s%n", lineCnt, wordCnt, byteCnt, fileName);
+            String result = String.format("%7d %7d %7d %s%n", counts[0], counts[1], counts[2], fileName);
             // Write the result to the output
             output.write(result.getBytes());
             // Flush the output stream to ensure data is written
             output.flush();
-        } catch (IOException e) {
-            System.err.println("wc: " + e.getMessage());
-            exitCode = 1;
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
         } finally {
             if (input != null && input != System.in) {
                 try {
                     input.close();
                 } catch (IOException e) {
-                    System.err.println("wc: " + e.getMessage());
+                    command.getStderr().println("wc: " + e.getMessage());
                     exitCode = 1;
                 }
             }
@@ -163,13 +361,152 @@ public class Executor {
     }
 
 
+    /**
+     * Adds the numbers of lines, words and bytes of the input to counts[0], counts[1] and counts[2]
+     * like wc.
+     */
+    static void countLinesWordsBytes(LineInput lines, long[] counts) throws IOException {
+        long lineCnt = 0, wordCnt = 0, byteCnt = 0;
+        // Lines longer than the window of the input come in parts, they are counted part by part
+        LongLineWords longLine = null;
+        while (lines.next()) {
+            byteCnt += lines.byteLength();
+            if (lines.isPartial() || lines.isContinued()) {
+                if (longLine == null) {
+                    longLine = new LongLineWords();
+                }
+                if (!lines.isContinued()) {
+                    longLine.start();
+                }
+                longLine.add(lines.buffer(), lines.start(), lines.length());
+                if (lines.isPartial()) {
+                    continue;
+                }
+                wordCnt += longLine.words();
+            } else {
+                wordCnt += countWords(lines);
+            }
+            lineCnt++;
+            byteCnt++;
+        }
+        counts[0] += lineCnt;
+        counts[1] += wordCnt;
+        counts[2] += byteCnt;
+    }
+
+
+    // Number of words of the current line, the same as line.trim().split("\\s+").length for a non-blank line.
+    // ASCII lines are counted on their bytes without creating Strings
+    private static int countWords(LineInput lines) {
+        if (!lines.hasAsciiBytes()) {
+            String line = lines.string();
+            return line.isBlank() ? 0 : line.trim().split("\\s+").length;
+        }
+        byte[] buffer = lines.buffer();
+        int start = lines.start();
+        int end = start + lines.length();
+        boolean blank = true;
+        for (int i = start; i < end && blank; i++) {
+            blank = Character.isWhitespace(buffer[i]);
+        }
+        if (blank) {
+            return 0;
+        }
+        // String.trim() strips all the control characters and spaces at both ends
+        int trimmedStart = start;
+        int trimmedEnd = end;
+        while (trimmedStart < trimmedEnd && buffer[trimmedStart] <= ' ') {
+            trimmedStart++;
+        }
+        while (trimmedEnd > trimmedStart && buffer[trimmedEnd - 1] <= ' ') {
+            trimmedEnd--;
+        }
+        if (trimmedStart == trimmedEnd) {
+            return 1; // "".split() gives one empty word
+        }
+        // Words are separated by runs of \s characters, the trimmed line starts and ends with a word
+        int words = 1;
+        boolean inSeparator = false;
+        for (int i = trimmedStart; i < trimmedEnd; i++) {
+            boolean separator = isRegexSpace(buffer[i]);
+            if (separator && !inSeparator) {
+                words++;
+            }
+            inSeparator = separator;
+        }
+        return words;
+    }
+
+    // Counts the words of a line given in parts like countWords does for a whole line:
+    // the runs of non-\s characters between the first and the last character above ' ' (what
+    // String.trim() keeps), a non-blank line without such characters has one empty word.
+    // Bytes of non-ASCII characters are word characters; a line of Unicode spaces only, which
+    // is blank for String.isBlank(), is counted as words here
+    private static final class LongLineWords {
+        private long words;
+        // runs after the last character above ' ', they are words if such a character follows
+        private long pending;
+        private boolean seenContent;
+        private boolean nonBlank;
+        private boolean inRun;
+        // the current run is counted (in words or pending)
+        private boolean runCounted;
+
+        void start() {
+            words = pending = 0;
+            seenContent = nonBlank = inRun = runCounted = false;
+        }
+
+        void add(byte[] buffer, int start, int length) {
+            for (int i = start; i < start + length; i++) {
+                byte b = buffer[i];
+                if (isRegexSpace(b)) {
+                    inRun = false;
+                    nonBlank |= !Character.isWhitespace(b);
+                    continue;
+                }
+                nonBlank |= !Character.isWhitespace(b);
+                if (!inRun) {
+                    inRun = true;
+                    runCounted = seenContent;
+                    if (seenContent) {
+                        pending++;
+                    }
+                }
+                if ((b & 0xFF) > ' ') {
+                    seenContent = true;
+                    if (!runCounted) {
+                        pending++;
+                        runCounted = true;
+                    }
+                    words += pending;
+                    pending = 0;
+                }
+            }
+        }
+
+        long words() {
+            if (!seenContent) {
+                return nonBlank ? 1 : 0;
+            }
+            return words;
+        }
+    }
+
+    // Character of the \s regex class: [ \t\n\x0B\f\r]
+    private static boolean isRegexSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+
     // Method to execute the `pwd` command
     private static int executePwd(Command command) {
         OutputStream output = command.getStdout();
         int exitCode = 0;
         try {
-            // Get the current working directory
-            String currentDirectory = System.getProperty("user.dir") + "\n";
+            // Get the current working directory, the one of the client in a daemon session
+            String currentDirectory = (command.getDirectory() == null ?
+                    System.getProperty("user.dir") : command.getDirectory().toString()) + "\n";
             // Write the directory path to the output stream
             output.write(currentDirectory.getBytes());
             // Flush the output stream to ensure data is written
@@ -194,29 +531,57 @@ public class Executor {
             // parse grep arguments using JCommander
             grepCommander.parse(command.getArgs().toArray(new String[0]));
 
+            if (grepArgs.getMaxLineBytes() < 0) {
+                throw new ParameterException("invalid number of bytes: " + grepArgs.getMaxLineBytes());
+            }
+            if (grepArgs.isIncremental()) {
+                if (!grepArgs.isCount() || grepArgs.getFileNames().isEmpty()) {
+                    throw new ParameterException("--incremental needs -c and a file");
+                }
+                // Only the bytes appended since the previous run are searched
+                Pattern pattern = grepArgs.getPattern();
+                long[] counts = IncrementalCounts.get().count("grep -c\0" + pattern.flags() + "\0" + pattern.pattern(),
+                        command.resolve(grepArgs.getFileNames().getFirst()), 1,
+                        (region, regionCounts) -> regionCounts[0] += countMatches(command, LineInput.windowed(command, region), pattern));
+                output.write((counts[0] + "\n").getBytes());
+                output.flush();
+                return exitCode;
+            }
+
             // specify inputStream
             if (grepArgs.getFileNames().isEmpty()) {
                 input = command.getStdin();
             } else {
                 String fileName = grepArgs.getFileNames().getFirst();
-                input = new FileInputStream(fileName);
+                input = CompressedInput.open(command.resolve(fileName));
             }
 
-            // Call function for detailed grep execution
-            StringBuilder result = grepExecutionDetails(input, grepArgs);
+            if (grepArgs.isCount()) {
+                long matches = countMatches(command, LineInput.windowed(command, input), grepArgs.getPattern());
+                output.write((matches + "\n").getBytes());
+                output.flush();
+                return exitCode;
+            }
 
-            output.write(result.toString().getBytes());
-            // Flush the output stream to ensure data is written
-            output.flush();
+            // Call function for detailed grep execution, matched lines are written as soon as they are found
+            if (ParallelGrep.isEnabled(command, input)) {
+                // the stdin is searched by several workers, the lines are printed here in order
+                try (ParallelGrep parallel = ParallelGrep.start(input, grepArgs.getPattern(), ParallelGrep.threads(),
+                        ParallelGrep.BLOCK_SIZE, ByteLineReader.DEFAULT_WINDOW_SIZE)) {
+                    grepExecutionDetails(parallel.lines(), grepArgs, parallel.matcher(), LineOutput.of(command, output));
+                }
+            } else {
+                grepExecutionDetails(LineInput.windowed(command, input), grepArgs,
+                        LineMatcher.compile(grepArgs.getPattern()), LineOutput.of(command, output));
+            }
         } catch (IOException | ParameterException e) { // add exception from JCommander parser
-            System.err.println("grep: " + e.getMessage());
-            exitCode = 1;
+            exitCode = reportError(command, e);
         } finally {
             if (input != null && input != System.in) {
                 try {
                     input.close();
                 } catch (IOException e) {
-                    System.err.println("grep: " + e.getMessage());
+                    command.getStderr().println("grep: " + e.getMessage());
                     exitCode = 1;
                 }
             }
@@ -224,91 +589,821 @@ public class Executor {
         return exitCode;
     }
 
-    private static StringBuilder grepExecutionDetails(InputStream input, GrepArgs grepArgs) throws IOException {
-        // return pattern for grep consider arguments
-        Pattern pattern = grepArgs.getPattern();
+    // Number of the lines of the input matching the pattern
+    private static long countMatches(Command command, LineInput lines, Pattern pattern) throws IOException {
+        LineMatcher matcher = LineMatcher.compile(pattern);
+        // a long line is searched part by part, nothing of it is printed or kept
+        LongLineMatcher longLine = null;
+        long matches = 0;
+        try {
+            while (lines.next()) {
+                if (lines.isPartial() || lines.isContinued()) {
+                    if (longLine == null) {
+                        longLine = new LongLineMatcher(matcher, 0, LineOutput.of(command, OutputStream.nullOutputStream()));
+                    }
+                    if (!lines.isContinued()) {
+                        longLine.start(false);
+                    }
+                    longLine.add(lines);
+                    if (!lines.isPartial() && longLine.finish()) {
+                        matches++;
+                    }
+                } else if (matcher.find(lines)) {
+                    matches++;
+                }
+            }
+        } finally {
+            if (longLine != null) {
+                longLine.close();
+            }
+        }
+        return matches;
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-        String line;
+    private static void grepExecutionDetails(LineInput lines, GrepArgs grepArgs, LineMatcher matcher, LineOutput result)
+            throws IOException {
+        long maxLineBytes = grepArgs.getMaxLineBytes();
+        // lines longer than the window of the input come in parts, they are searched part by part
+        LongLineMatcher longLine = null;
 
         // counter of remaining additional lines after match
         int additionalLineCnt = 0;
 
-        StringBuilder result = new StringBuilder();
-        while ((line = reader.readLine()) != null) {
-            Matcher matcher = pattern.matcher(line);
-            if (matcher.find()) { // check if was match in current line
-                result.append(line).append("\n");
-                // update additionalLineCnt
-                additionalLineCnt = grepArgs.getAdditionalLines();
-            } else if (additionalLineCnt > 0) { // if there was no match but need additional line
-                result.append(line).append("\n");
-                additionalLineCnt--;
-
-                // after printing last additional line add break.
-                // Will reach only if no cross with other match
-                if (additionalLineCnt == 0) {
-                    result.append("------\n");
+        try {
+            while (lines.next()) {
+                boolean matched;
+                if (lines.isPartial() || lines.isContinued()) {
+                    if (longLine == null) {
+                        longLine = new LongLineMatcher(matcher, maxLineBytes, result);
+                    }
+                    if (!lines.isContinued()) {
+                        // a context line is printed as it comes, a matched line once the match is found
+                        longLine.start(additionalLineCnt > 0);
+                    }
+                    longLine.add(lines);
+                    if (lines.isPartial()) {
+                        continue;
+                    }
+                    matched = longLine.finish();
+                } else {
+                    matched = matcher.find(lines); // check if was match in current line
+                    if (matched || additionalLineCnt > 0) {
+                        result.write(lines, maxLineBytes);
+                    }
+                }
+
+                if (matched) {
+                    // update additionalLineCnt
+                    additionalLineCnt = grepArgs.getAdditionalLines();
+                } else if (additionalLineCnt > 0) { // if there was no match but need additional line
+                    additionalLineCnt--;
+
+                    // after printing last additional line add break.
+                    // Will reach only if no cross with other match
+                    if (additionalLineCnt == 0) {
+                        result.write("------");
+                    }
+                }
+            }
+        } finally {
+            if (longLine != null) {
+                longLine.close();
+            }
+        }
+        // Flush the output stream to ensure data is written
+        result.flush();
+    }
+
+
+    // Method to execute the `tail` command
+    private static int executeTail(Command command) {
+        OutputStream output = command.getStdout();
+        int exitCode = 0;
+
+        TailArgs tailArgs = new TailArgs();
+        JCommander tailCommander = JCommander.newBuilder()
+                .addObject(tailArgs)
+                .build();
+        try {
+            // parse tail arguments using JCommander
+            tailCommander.parse(command.getArgs().toArray(new String[0]));
+            if (tailArgs.getLineCount() < 0) {
+                throw new ParameterException("invalid number of lines: " + tailArgs.getLineCount());
+            }
+
+            if (tailArgs.getFileNames().isEmpty()) {
+                // stdin can't be read backwards and can't be followed, so keep only the last lines
+                Tail.lastLines(command.getStdin(), tailArgs.getLineCount(), output);
+            } else {
+                Path file = command.resolve(tailArgs.getFileNames().getFirst());
+                try (FileChannel channel = FileChannel.open(file)) {
+                    long position = Tail.lastLines(channel, tailArgs.getLineCount(), output);
+                    // Flush the output stream to ensure data is written before waiting for new data
+                    output.flush();
+                    if (tailArgs.isFollow()) {
+                        Tail.follow(file, channel, position, output, command.getStderr());
+                    }
+                }
+            }
+            output.flush();
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        } catch (InterruptedException e) {
+            // follow mode is stopped by interrupting the thread
+            Thread.currentThread().interrupt();
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `sort` command
+    private static int executeSort(Command command) {
+        OutputStream output = command.getStdout();
+        int exitCode = 0;
+        InputStream input = null;
+
+        SortArgs sortArgs = new SortArgs();
+        JCommander sortCommander = JCommander.newBuilder()
+                .addObject(sortArgs)
+                .build();
+        try {
+            // parse sort arguments using JCommander
+            sortCommander.parse(command.getArgs().toArray(new String[0]));
+            Path tempDirectory = sortArgs.getTempDirectory() == null ?
+                    null : command.resolve(sortArgs.getTempDirectory());
+            ExternalSort sort = new ExternalSort(sortArgs.getKey(), sortArgs.getComparator(), sortArgs.isUnique(),
+                    sortArgs.getMemoryLimit(), tempDirectory);
+
+            // specify inputStream: stdin or all the files one after another
+            if (sortArgs.getFileNames().isEmpty()) {
+                input = command.getStdin();
+            } else {
+                List<InputStream> files = new ArrayList<>();
+                for (String fileName : sortArgs.getFileNames()) {
+                    files.add(CompressedInput.open(command.resolve(fileName)));
+                }
+                input = new SequenceInputStream(Collections.enumeration(files));
+            }
+
+            sort.sort(LineInput.of(command, input), output);
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        } finally {
+            if (input != null && input != System.in) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    command.getStderr().println("sort: " + e.getMessage());
+                    exitCode = 1;
                 }
             }
         }
-        return result;
+        return exitCode;
+    }
+
+
+    // Method to execute the `count` command
+    private static int executeCount(Command command) {
+        OutputStream output = new BufferedOutputStream(command.getStdout());
+        int exitCode = 0;
+        InputStream input = null;
+
+        CountArgs countArgs = new CountArgs();
+        JCommander countCommander = JCommander.newBuilder()
+                .addObject(countArgs)
+                .build();
+        try {
+            // parse count arguments using JCommander
+            countCommander.parse(command.getArgs().toArray(new String[0]));
+            if (countArgs.getLimit() < 0) {
+                throw new ParameterException("invalid number of lines: " + countArgs.getLimit());
+            }
+
+            // specify inputStream
+            if (countArgs.getFileNames().isEmpty()) {
+                input = command.getStdin();
+            } else {
+                input = CompressedInput.open(command.resolve(countArgs.getFileNames().getFirst()));
+            }
+
+            // Approximate mode keeps only the lines that can get into the result
+            LineCounter counter = countArgs.isApproximate() ?
+                    new SketchLineCounter(countArgs.getApproximateLimit()) :
+                    new HashLineCounter();
+            ByteLines reader = LineInput.bytes(command, input);
+            while (reader.next()) {
+                counter.add(reader.buffer(), reader.start(), reader.length());
+            }
+
+            if (countArgs.isDistinctOnly()) {
+                output.write((counter.distinct() + "\n").getBytes());
+            } else {
+                counter.writeTop(output, countArgs.isApproximate() ? countArgs.getApproximateLimit() : countArgs.getLimit());
+            }
+            // Flush the output stream to ensure data is written
+            output.flush();
+        } catch (IOException | ParameterException | IllegalStateException e) {
+            exitCode = reportError(command, e);
+        } finally {
+            if (input != null && input != System.in) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    command.getStderr().println("count: " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `history` command
+    private static int executeHistory(Command command) {
+        OutputStream output = command.getStdout();
+        int exitCode = 0;
+
+        HistoryArgs historyArgs = new HistoryArgs();
+        JCommander historyCommander = JCommander.newBuilder()
+                .addObject(historyArgs)
+                .build();
+        try {
+            // parse history arguments using JCommander
+            historyCommander.parse(command.getArgs().toArray(new String[0]));
+            if (historyArgs.getLimit() < 0) {
+                throw new ParameterException("invalid number of entries: " + historyArgs.getLimit());
+            }
+            History history = History.get();
+            if (history == null) {
+                throw new IOException("history is disabled");
+            }
+
+            Writer result = new BufferedWriter(new OutputStreamWriter(output));
+            // Numbers of the entries to print: the matches found by the index or the last ones
+            List<Integer> indexes = new ArrayList<>();
+            if (historyArgs.getText() != null) {
+                history.forEachMatch(historyArgs.getText(), historyArgs.isPrefix(), indexes::add);
+            } else {
+                int size = history.size();
+                int from = historyArgs.getLimit() > 0 ? Math.max(0, size - historyArgs.getLimit()) : 0;
+                for (int i = from; i < size; i++) {
+                    indexes.add(i);
+                }
+            }
+            if (historyArgs.getText() != null && historyArgs.getLimit() > 0 && indexes.size() > historyArgs.getLimit()) {
+                indexes = indexes.subList(indexes.size() - historyArgs.getLimit(), indexes.size());
+            }
+            for (int index : indexes) {
+                result.append(String.format("%5d  %s%n", index + 1, history.entry(index)));
+            }
+            // Flush the output stream to ensure data is written
+            result.flush();
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `cut` command
+    private static int executeCut(Command command) {
+        int exitCode = 0;
+        InputStream input = null;
+
+        CutArgs cutArgs = new CutArgs();
+        JCommander cutCommander = JCommander.newBuilder()
+                .addObject(cutArgs)
+                .build();
+        try {
+            // parse cut arguments using JCommander
+            cutCommander.parse(command.getArgs().toArray(new String[0]));
+            if ((cutArgs.getFields() == null) == (cutArgs.getCharacters() == null)) {
+                throw new ParameterException("specify either a list of fields (-f) or of characters (-c)");
+            }
+            byte[] delimiter = cutArgs.getDelimiter().getBytes();
+            if (delimiter.length != 1) {
+                throw new ParameterException("the delimiter must be a single byte character");
+            }
+            Cut cut = cutArgs.getFields() != null ?
+                    Cut.fields(cutArgs.getFields(), delimiter[0], cutArgs.isOnlyDelimited()) :
+                    Cut.characters(cutArgs.getCharacters());
+
+            // specify inputStream
+            if (cutArgs.getFileNames().isEmpty()) {
+                input = command.getStdin();
+            } else {
+                input = CompressedInput.open(command.resolve(cutArgs.getFileNames().getFirst()));
+            }
+
+            // Fields are written as slices of the lines, the output gets no Strings
+            cut.cut(LineInput.bytes(command, input), LineOutput.of(command, command.getStdout()));
+        } catch (IOException | ParameterException | IllegalArgumentException e) {
+            exitCode = reportError(command, e);
+        } finally {
+            if (input != null && input != System.in) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    command.getStderr().println("cut: " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `tee` command
+    private static int executeTee(Command command) {
+        int exitCode = 0;
+        InputStream input = command.getStdin();
+
+        TeeArgs teeArgs = new TeeArgs();
+        JCommander teeCommander = JCommander.newBuilder()
+                .addObject(teeArgs)
+                .build();
+        try {
+            // parse tee arguments using JCommander
+            teeCommander.parse(command.getArgs().toArray(new String[0]));
+
+            Tee tee = new Tee();
+            // A file that can't be opened is reported, the input still goes to the other files
+            for (String fileName : teeArgs.getFileNames()) {
+                try {
+                    tee.addFile(command.resolve(fileName), teeArgs.isAppend());
+                } catch (IOException e) {
+                    command.getStderr().println("tee: " + fileName + ": " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+            tee.addStdout(command.getStdout(), command.getStdoutChannel());
+            exitCode |= tee.copy(input, command.getStderr());
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        } catch (InterruptedException e) {
+            // the pipeline is stopped
+            Thread.currentThread().interrupt();
+        } finally {
+            if (input != System.in) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    command.getStderr().println("tee: " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+        }
+        return exitCode;
+    }
+
+
+    // Method to execute the `buffers` command: occupancy of the shared buffer pool
+    private static int executeBuffers(Command command) {
+        int exitCode = 0;
+        try {
+            if (!command.getArgs().isEmpty()) {
+                throw new ParameterException("too many arguments");
+            }
+            BufferPool.Stats stats = BufferPool.shared().stats();
+            String report = "lent: " + stats.lentBuffers() + " buffers, " + stats.lentBytes() + " bytes\n"
+                    + "peak lent: " + stats.peakLentBytes() + " bytes\n"
+                    + "idle: " + stats.idleBuffers() + " buffers, " + stats.idleBytes() + " bytes\n"
+                    + "allocated: " + stats.allocated() + "\n"
+                    + "reused: " + stats.reused() + "\n";
+            command.getStdout().write(report.getBytes());
+            // Flush the output stream to ensure data is written
+            command.getStdout().flush();
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        }
+        return exitCode;
+    }
+
+    // Method to execute the `sha256sum`, `md5sum` and `crc32` commands
+    private static int executeChecksum(Command command) {
+        int exitCode;
+        String name = command.getName();
+
+        ChecksumArgs checksumArgs = new ChecksumArgs();
+        JCommander checksumCommander = JCommander.newBuilder()
+                .addObject(checksumArgs)
+                .build();
+        try {
+            // parse checksum arguments using JCommander
+            checksumCommander.parse(command.getArgs().toArray(new String[0]));
+            if (checksumArgs.isFast() && !name.equals("crc32")) {
+                throw new ParameterException("--fast is only supported by crc32");
+            }
+            FileChecksums checksums = FileChecksums.of(name, checksumArgs.isFast(), command.getDirectory());
+
+            // without files the input is hashed (or holds the list to verify)
+            List<String> fileNames = checksumArgs.getFileNames().isEmpty() ?
+                    List.of("-") : checksumArgs.getFileNames();
+            exitCode = checksumArgs.isCheck() ?
+                    checksums.check(fileNames, command.getStdin(), command.getStdout(), command.getStderr()) :
+                    checksums.sum(fileNames, command.getStdin(), command.getStdout(), command.getStderr());
+        } catch (IOException | ParameterException e) {
+            exitCode = reportError(command, e);
+        }
+        return exitCode;
+    }
+
+
+    // Report an error of a builtin and return its exit code.
+    // A broken pipe means that the downstream stage finished early, which is not an error
+    private static int reportError(Command command, Exception e) {
+        if (e instanceof BrokenPipeException) {
+            return 0;
+        }
+        command.getStderr().println(command.getName() + ": " + e.getMessage());
+        return 1;
     }
 
 
     // Process unknown builtin command
     private static int unknownBuiltinCommand(Command command) {
-        System.err.println(command.getName() + ": unknown command");
+        command.getStderr().println(command.getName() + ": unknown command");
         return 1;
     }
 
-    // Map of methods for builtin commands
-    private static final Map<String, Function<Command, Integer>> BUILTIN_FUNCTIONS = Map.of(
-            "cat", Executor::executeCat,
-            "echo", Executor::executeEcho,
-            "wc", Executor::executeWc,
-            "pwd", Executor::executePwd,
-            "grep", Executor::executeGrep
-    );
+    // Calls the method of the builtin command.
+    // A plain switch instead of a map of method references: nothing is linked at class
+    // initialization, so the startup pays only for the builtins that are actually run
+    private static int dispatchBuiltin(Command command) {
+        if (command instanceof FusedCommand fused) {
+            return fused.execute();
+        }
+        return switch (command.getName()) {
+            case "cat" -> executeCat(command);
+            case "echo" -> executeEcho(command);
+            case "wc" -> executeWc(command);
+            case "pwd" -> executePwd(command);
+            case "grep" -> executeGrep(command);
+            case "tail" -> executeTail(command);
+            case "sort" -> executeSort(command);
+            case "count" -> executeCount(command);
+            case "zcat" -> executeZcat(command);
+            case "history" -> executeHistory(command);
+            case "buffers" -> executeBuffers(command);
+            case "tee" -> executeTee(command);
+            case "cut" -> executeCut(command);
+            case "sha256sum", "md5sum", "crc32" -> executeChecksum(command);
+            default -> executePlugin(command);
+        };
+    }
+
+    // Execute a builtin provided by another jar
+    private static int executePlugin(Command command) {
+        Builtin builtin = BuiltinRegistry.find(command.getName());
+        if (builtin == null) {
+            return unknownBuiltinCommand(command);
+        }
+        // A builtin that writes its output at once gets a buffer instead of many small writes
+        boolean buffered = !builtin.traits().contains(Builtin.Trait.STREAMING);
+        OutputStream stdout = command.getStdout();
+        if (buffered) {
+            command.setStdout(new BufferedOutputStream(stdout, 64 * 1024));
+        }
+        try {
+            int exitCode = builtin.execute(command);
+            command.getStdout().flush();
+            return exitCode;
+        } catch (IOException e) {
+            return reportError(command, e);
+        } catch (RuntimeException e) {
+            command.getStderr().println(command.getName() + ": " + e);
+            return 1;
+        }
+    }
 }
 
-// class specifically for parsing arguments for grep using JCommander
-class GrepArgs {
-    @Parameter(names = "-w", description = "Search only whole word")
-    private boolean wholeWord;
+// class specifically for parsing arguments for tail using JCommander
+class TailArgs {
+    @Parameter(names = "-n", arity = 1, description = "Print the last 'n' lines")
+    private int lineCount = 10;
 
-    @Parameter(names = "-i", description = "Case-insensitive search")
-    private boolean caseInsensitive;
+    @Parameter(names = "-f", description = "Output appended data as the file grows")
+    private boolean follow;
 
-    @Parameter(names = "-A", arity = 1, description = "Print 'A' lines after match")
-    private int additionalLines = 0;
+    @Parameter(description = "File to print")
+    private List<String> fileNames = new ArrayList<>();
 
-    // always assume that pattern goes before files
-    @Parameter(description = "Pattern and files to search")
-    private List<String> positionalParams;
+    // return list of fileNames for tail. Currently, will process only first of them
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isFollow() {
+        return follow;
+    }
+}
+
+// class specifically for parsing arguments for sort using JCommander
+class SortArgs {
+    // Leading number of a key for numeric comparison
+    private static final Pattern NUMBER = Pattern.compile("^\\s*(-?\\d+(\\.\\d*)?|-?\\.\\d+)");
+
+    @Parameter(names = "-n", description = "Compare according to numerical value")
+    private boolean numeric;
+
+    @Parameter(names = "-r", description = "Reverse the result of comparisons")
+    private boolean reverse;
+
+    @Parameter(names = "-u", description = "Output only the first of equal lines")
+    private boolean unique;
+
+    @Parameter(names = "-k", arity = 1, description = "Sort by the key 'N[,M]': fields from N to M")
+    private String key;
+
+    @Parameter(names = "-t", arity = 1, description = "Use 't' as a field separator instead of blanks")
+    private String separator;
+
+    @Parameter(names = "-S", arity = 1, description = "Memory limit, e.g. 64M (K, M, G suffixes, K by default)")
+    private String memoryLimit;
+
+    @Parameter(names = "-T", arity = 1, description = "Directory for temporary files")
+    private String tempDirectory;
+
+    @Parameter(description = "Files to sort")
+    private List<String> fileNames = new ArrayList<>();
 
-    // return list of fileNames for grep. Currently, will process only first of them
     public List<String> getFileNames() {
-        return positionalParams.subList(1, positionalParams.size());
+        return fileNames;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    // return memory budget of sort in bytes
+    public long getMemoryLimit() {
+        if (memoryLimit == null) {
+            return ExternalSort.DEFAULT_MEMORY_LIMIT;
+        }
+        Matcher matcher = Pattern.compile("(\\d+)([bKMG]?)", Pattern.CASE_INSENSITIVE).matcher(memoryLimit);
+        if (!matcher.matches()) {
+            throw new ParameterException("invalid memory limit: " + memoryLimit);
+        }
+        long size = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2).toUpperCase()) {
+            case "B" -> size;
+            case "M" -> size << 20;
+            case "G" -> size << 30;
+            default -> size << 10;
+        };
+    }
+
+    // return directory of the spilled runs, null for the default temporary directory
+    public String getTempDirectory() {
+        return tempDirectory;
     }
 
-    public int getAdditionalLines() {
-        return additionalLines;
+    // return the function computing the sort key of a line consider arguments
+    public Function<String, ExternalSort.Line> getKey() {
+        if (separator != null && separator.length() != 1) {
+            throw new ParameterException("the separator must be a single character: " + separator);
+        }
+        int[] fields = parseKey();
+        return line -> {
+            String key = extractKey(line, fields);
+            return new ExternalSort.Line(line, key, numeric ? parseNumber(key) : 0);
+        };
+    }
+
+    // return Comparator of lines by the keys of getKey consider arguments.
+    // Lines with equal keys are compared as a whole, except in unique mode where they are duplicates
+    public Comparator<ExternalSort.Line> getComparator() {
+        Comparator<ExternalSort.Line> order = numeric ?
+                Comparator.comparingDouble(ExternalSort.Line::number) :
+                Comparator.comparing(ExternalSort.Line::key);
+        if (!unique) {
+            order = order.thenComparing(ExternalSort.Line::text);
+        }
+        return reverse ? order.reversed() : order;
     }
 
-    // return Pattern for grep match
-    public Pattern getPattern() {
-        String patternString;
-        // update it for wholeWord
-        if (wholeWord) {
-            patternString = "\\b" + positionalParams.getFirst() + "\\b";
-        } else {
-            patternString = positionalParams.getFirst();
+    // return first and last field of the key (1-based, inclusive), or null to use the whole line
+    private int[] parseKey() {
+        if (key == null) {
+            return null;
         }
-        // update for case sensation
-        if (caseInsensitive) {
-            return Pattern.compile(patternString, Pattern.CASE_INSENSITIVE);
+        Matcher matcher = Pattern.compile("(\\d+)(,(\\d+))?").matcher(key);
+        if (!matcher.matches() || Integer.parseInt(matcher.group(1)) == 0) {
+            throw new ParameterException("invalid key: " + key);
         }
-        return Pattern.compile(patternString);
+        int first = Integer.parseInt(matcher.group(1));
+        int last = matcher.group(3) == null ? Integer.MAX_VALUE : Integer.parseInt(matcher.group(3));
+        return new int[]{first, last};
+    }
+
+    // return the part of the line from the start of the first key field to the end of the last one
+    private String extractKey(String line, int[] fields) {
+        if (fields == null) {
+            return line;
+        }
+        int field = 1;
+        int position = 0;
+        int start = -1;
+        while (true) {
+            // find the end of the current field
+            int end;
+            if (separator != null) {
+                end = line.indexOf(separator.charAt(0), position);
+                end = end == -1 ? line.length() : end;
+            } else {
+                while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                    position++;
+                }
+                end = position;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+            }
+            if (field == fields[0]) {
+                start = position;
+            }
+            if (field == fields[1] || end == line.length()) {
+                return start == -1 ? "" : line.substring(start, end);
+            }
+            field++;
+            position = separator != null ? end + 1 : end;
+        }
+    }
+
+    private static double parseNumber(String key) {
+        Matcher matcher = NUMBER.matcher(key);
+        return matcher.lookingAt() ? Double.parseDouble(matcher.group(1)) : 0;
+    }
+}
+
+// class specifically for parsing arguments for count using JCommander
+class CountArgs {
+    // Number of heavy hitters kept in approximate mode when -k is not given
+    private static final int DEFAULT_APPROXIMATE_LIMIT = 10;
+
+    @Parameter(names = "-k", arity = 1, description = "Print only the 'k' most frequent lines")
+    private int limit = 0;
+
+    @Parameter(names = "-d", description = "Print only the number of distinct lines")
+    private boolean distinctOnly;
+
+    @Parameter(names = "--approx", description = "Estimate counts in fixed memory")
+    private boolean approximate;
+
+    @Parameter(description = "File to count lines of")
+    private List<String> fileNames = new ArrayList<>();
+
+    // return list of fileNames for count. Currently, will process only first of them
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // return number of lines printed in approximate mode, where all distinct lines can't be kept
+    public int getApproximateLimit() {
+        return limit > 0 ? limit : DEFAULT_APPROXIMATE_LIMIT;
+    }
+
+    public boolean isDistinctOnly() {
+        return distinctOnly;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+}
+
+
+// class specifically for parsing arguments for history using JCommander
+class HistoryArgs {
+    @Parameter(names = "-n", arity = 1, description = "Print only the last 'n' entries")
+    private int limit = 0;
+
+    @Parameter(names = "-p", description = "Search entries starting with the text instead of containing it")
+    private boolean prefix;
+
+    @Parameter(description = "Text to search")
+    private List<String> words = new ArrayList<>();
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    // return the searched text, the words joined with spaces, or null to print all the entries
+    public String getText() {
+        return words.isEmpty() ? null : String.join(" ", words);
+    }
+}
+
+
+// class specifically for parsing arguments for tee using JCommander
+class TeeArgs {
+    @Parameter(names = "-a", description = "Append to the files instead of overwriting them")
+    private boolean append;
+
+    @Parameter(description = "Files to write")
+    private List<String> fileNames = new ArrayList<>();
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public boolean isAppend() {
+        return append;
+    }
+}
+
+
+// class specifically for parsing arguments for cut using JCommander
+class CutArgs {
+    @Parameter(names = "-f", arity = 1, description = "List of the fields to print")
+    private String fields;
+
+    @Parameter(names = "-c", arity = 1, description = "List of the characters to print")
+    private String characters;
+
+    @Parameter(names = "-d", arity = 1, description = "Field delimiter (TAB by default)")
+    private String delimiter = "\t";
+
+    @Parameter(names = "-s", description = "Skip the lines without the delimiter")
+    private boolean onlyDelimited;
+
+    @Parameter(description = "File to cut")
+    private List<String> fileNames = new ArrayList<>();
+
+    // return list of fileNames for cut. Currently, will process only first of them
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public String getFields() {
+        return fields;
+    }
+
+    public String getCharacters() {
+        return characters;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public boolean isOnlyDelimited() {
+        return onlyDelimited;
+    }
+}
+
+
+// class specifically for parsing arguments for sha256sum, md5sum and crc32 using JCommander
+class ChecksumArgs {
+    @Parameter(names = "-c", description = "Verify the checksums listed in the files")
+    private boolean check;
+
+    @Parameter(names = "--fast", description = "CRC-32C instead of CRC-32 (crc32 only)")
+    private boolean fast;
+
+    @Parameter(description = "Files to hash, or checksum lists with -c")
+    private List<String> fileNames = new ArrayList<>();
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public boolean isCheck() {
+        return check;
+    }
+
+    public boolean isFast() {
+        return fast;
+    }
+}
+
+
+// class specifically for parsing arguments for wc using JCommander
+class WcArgs {
+    @Parameter(names = "--incremental", description = "Count only the lines appended since the previous run")
+    private boolean incremental;
+
+    @Parameter(description = "File to count")
+    private List<String> fileNames = new ArrayList<>();
+
+    // return list of fileNames for wc. Currently, will process only first of them
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
     }
 }
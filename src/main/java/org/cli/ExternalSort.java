@@ -0,0 +1,232 @@
+package org.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+// ExternalSort sorts input of any size with a limited amount of memory.
+// Lines are collected until the memory budget is used up, then the chunk is sorted in parallel
+// and spilled to a temporary file as a sorted run. At the end the runs are merged k-way.
+// The sort key of a line is computed once when the line is read, comparisons only compare keys.
+final class ExternalSort {
+
+    // Memory budget used when -S is not given
+    static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+    // Maximum number of runs merged at once, more runs are merged in several passes
+    private static final int MAX_MERGE_FAN_IN = 64;
+    // Buffer size of every run reader and writer
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    // Approximate heap cost of a line besides its characters: object headers and the reference
+    private static final int LINE_OVERHEAD = 64;
+
+    private final Function<String, Line> key;
+    private final Comparator<Line> order;
+    private final boolean unique;
+    private final long memoryLimit;
+    private final Path tempDirectory;
+
+    /**
+     * A line with its sort key: the key fields, and their leading number for numeric order.
+     */
+    record Line(String text, String key, double number) {
+    }
+
+    /**
+     * @param key           computes the sort key of a line
+     * @param order         order of the lines by their keys
+     * @param unique        output only the first line of every group of lines equal by order
+     * @param memoryLimit   approximate number of bytes of lines kept in memory at once
+     * @param tempDirectory directory of the spilled runs, null for the default temporary directory
+     */
+    ExternalSort(Function<String, Line> key, Comparator<Line> order, boolean unique, long memoryLimit,
+                 Path tempDirectory) {
+        this.key = key;
+        this.order = order;
+        this.unique = unique;
+        this.memoryLimit = memoryLimit;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sorts lines of the input and writes them to the output.
+     * Input that fits into the memory budget is sorted without touching the disk.
+     *
+     * @param input  source of lines
+     * @param output destination of sorted lines
+     */
+    void sort(InputStream input, OutputStream output) throws IOException {
+        sort(LineInput.of(input), output);
+    }
+
+    /**
+     * Sorts the lines and writes them to the output.
+     *
+     * @param lines  source of lines, a stream or a line channel
+     * @param output destination of sorted lines
+     */
+    void sort(LineInput lines, OutputStream output) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            List<Line> chunk = new ArrayList<>();
+            long chunkSize = 0;
+            while (lines.next()) {
+                Line line = key.apply(lines.string());
+                chunk.add(line);
+                chunkSize += LINE_OVERHEAD + 2L * line.text().length();
+                if (line.key() != line.text()) {
+                    chunkSize += LINE_OVERHEAD + 2L * line.key().length();
+                }
+                if (chunkSize >= memoryLimit) {
+                    runs.add(spill(chunk));
+                    chunk.clear();
+                    chunkSize = 0;
+                }
+            }
+
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output), RUN_BUFFER_SIZE);
+            if (runs.isEmpty()) {
+                // Everything fits into memory
+                writeSorted(sortChunk(chunk), writer);
+            } else {
+                if (!chunk.isEmpty()) {
+                    runs.add(spill(chunk));
+                    chunk.clear();
+                }
+                // Reduce the number of runs until all of them can be merged at once, the merged run
+                // takes the place of its runs so ties are still decided by the input order
+                while (runs.size() > MAX_MERGE_FAN_IN) {
+                    List<Path> batch = new ArrayList<>(runs.subList(0, MAX_MERGE_FAN_IN));
+                    runs.subList(0, MAX_MERGE_FAN_IN).clear();
+                    runs.add(0, mergeToRun(batch));
+                }
+                merge(runs, writer);
+            }
+            // Flush the output stream to ensure data is written
+            writer.flush();
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    // Sort the chunk using all cores, the sort is stable so equal lines keep the input order
+    private Line[] sortChunk(List<Line> chunk) {
+        Line[] lines = chunk.toArray(new Line[0]);
+        Arrays.parallelSort(lines, order);
+        return lines;
+    }
+
+    // Sort the chunk and write it to a new temporary file
+    private Path spill(List<Line> chunk) throws IOException {
+        Path run = createRun();
+        try (Writer writer = openRunWriter(run)) {
+            writeSorted(sortChunk(chunk), writer);
+        } catch (IOException | RuntimeException e) {
+            // the run is not in the list deleted by sort yet
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    // Merge the runs into a new temporary file and delete them
+    private Path mergeToRun(List<Path> runs) throws IOException {
+        Path run = createRun();
+        try (Writer writer = openRunWriter(run)) {
+            merge(runs, writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        } finally {
+            for (Path merged : runs) {
+                Files.deleteIfExists(merged);
+            }
+        }
+        return run;
+    }
+
+    // k-way merge of sorted runs: the smallest head line among all runs goes to the output
+    private void merge(List<Path> runs, Writer writer) throws IOException {
+        PriorityQueue<RunHead> heads = new PriorityQueue<>(
+                Comparator.comparing((RunHead head) -> head.line, order).thenComparingInt(head -> head.index));
+        List<BufferedReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                BufferedReader reader = openRunReader(runs.get(i));
+                readers.add(reader);
+                String line = reader.readLine();
+                if (line != null) {
+                    heads.add(new RunHead(key.apply(line), i, reader));
+                }
+            }
+
+            Line previous = null;
+            while (!heads.isEmpty()) {
+                RunHead head = heads.poll();
+                previous = writeLine(head.line, previous, writer);
+                String next = head.reader.readLine();
+                if (next != null) {
+                    heads.add(new RunHead(key.apply(next), head.index, head.reader));
+                }
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private void writeSorted(Line[] lines, Writer writer) throws IOException {
+        Line previous = null;
+        for (Line line : lines) {
+            previous = writeLine(line, previous, writer);
+        }
+    }
+
+    // Write the line unless it is a duplicate in unique mode, return the last written line
+    private Line writeLine(Line line, Line previous, Writer writer) throws IOException {
+        if (unique && previous != null && order.compare(previous, line) == 0) {
+            return previous;
+        }
+        writer.write(line.text());
+        writer.write('\n');
+        return line;
+    }
+
+    private Path createRun() throws IOException {
+        return tempDirectory == null ?
+                Files.createTempFile("cli-sort", ".run") :
+                Files.createTempFile(tempDirectory, "cli-sort", ".run");
+    }
+
+    private static Writer openRunWriter(Path run) throws IOException {
+        FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), RUN_BUFFER_SIZE);
+    }
+
+    private static BufferedReader openRunReader(Path run) throws IOException {
+        FileChannel channel = FileChannel.open(run, StandardOpenOption.READ);
+        return new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), RUN_BUFFER_SIZE);
+    }
+
+    // Current line of a run during the merge
+    private record RunHead(Line line, int index, BufferedReader reader) {
+    }
+}
@@ -0,0 +1,362 @@
+package org.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+// FileChecksums implements the `sha256sum`, `md5sum` and `crc32` builtins: they print a checksum of
+// every file, or verify the checksums of a list printed by them before (-c).
+// Regular files are memory-mapped in windows and hashed straight from the page cache, without
+// reading them into buffers. Files are hashed in parallel, one file per worker, and the results
+// are printed in the order of the arguments as soon as the file and the files before it are done.
+final class FileChecksums {
+
+    // Regular files are mapped in windows of this size, a mapping can't be bigger than 2 GB
+    static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private final String name;
+    private final String algorithm;
+    private final long window;
+    // Directory relative file names are resolved against, null for the working directory of the process
+    private final Path directory;
+
+    // The checksum of one file being computed
+    private interface Hash {
+        void update(ByteBuffer bytes);
+
+        void update(byte[] bytes, int offset, int length);
+
+        String hex();
+    }
+
+    FileChecksums(String name, String algorithm, long window) {
+        this(name, algorithm, window, null);
+    }
+
+    FileChecksums(String name, String algorithm, long window, Path directory) {
+        this.name = name;
+        this.algorithm = algorithm;
+        this.window = window;
+        this.directory = directory;
+    }
+
+    /**
+     * FileChecksums of the builtin: SHA-256 for sha256sum, MD5 for md5sum, CRC-32 for crc32
+     * and its hardware accelerated CRC-32C variant with fast. Relative file names are resolved
+     * against the directory, null for the working directory of the process.
+     */
+    static FileChecksums of(String name, boolean fast, Path directory) {
+        String algorithm = switch (name) {
+            case "sha256sum" -> "SHA-256";
+            case "md5sum" -> "MD5";
+            case "crc32" -> fast ? "CRC32C" : "CRC32";
+            default -> throw new IllegalArgumentException("unknown checksum: " + name);
+        };
+        return new FileChecksums(name, algorithm, MAP_WINDOW, directory);
+    }
+
+    /**
+     * Prints the checksums of the files in the order of the names, "-" is the input.
+     *
+     * @return exit status: 0 if every file was read, 1 otherwise
+     */
+    int sum(List<String> names, InputStream input, OutputStream output, PrintStream errors) throws IOException {
+        int exitCode = 0;
+        ExecutorService workers = workers(names.size());
+        try {
+            List<Future<String>> results = hashAll(names, input, workers);
+            for (int i = 0; i < names.size(); i++) {
+                String checksum = result(names.get(i), results.get(i), errors);
+                if (checksum == null) {
+                    exitCode = 1;
+                } else {
+                    output.write((checksum + "  " + names.get(i) + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            output.flush();
+        } finally {
+            shutdown(workers);
+        }
+        return exitCode;
+    }
+
+    /**
+     * Verifies the files of the checksum lists ("-" is the input): prints "FILE: OK" for the
+     * files with the listed checksum and "FILE: FAILED" for the others.
+     *
+     * @return exit status: 0 if every listed file has its checksum, 1 otherwise
+     */
+    int check(List<String> lists, InputStream input, OutputStream output, PrintStream errors) throws IOException {
+        int exitCode = 0;
+        for (String list : lists) {
+            List<String> expected = new ArrayList<>();
+            List<String> files = new ArrayList<>();
+            int malformed = 0;
+            try {
+                InputStream listInput = list.equals("-") ? input : Files.newInputStream(resolve(list));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(listInput, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int length = hexLength();
+                    // "CHECKSUM  FILE", or "CHECKSUM *FILE" for a file hashed in binary mode
+                    if (line.length() > length + 2 && line.charAt(length) == ' '
+                            && (line.charAt(length + 1) == ' ' || line.charAt(length + 1) == '*')
+                            && isHex(line, length)) {
+                        expected.add(line.substring(0, length));
+                        files.add(line.substring(length + 2));
+                    } else {
+                        malformed++;
+                    }
+                }
+                if (listInput != input) {
+                    listInput.close();
+                }
+            } catch (IOException e) {
+                errors.println(name + ": " + message(list, e));
+                exitCode = 1;
+                continue;
+            }
+            if (files.isEmpty()) {
+                errors.println(name + ": " + list + ": no properly formatted checksum lines found");
+                exitCode = 1;
+                continue;
+            }
+
+            int unreadable = 0;
+            int mismatched = 0;
+            ExecutorService workers = workers(files.size());
+            try {
+                List<Future<String>> results = hashAll(files, input, workers);
+                for (int i = 0; i < files.size(); i++) {
+                    String checksum = result(files.get(i), results.get(i), errors);
+                    String status;
+                    if (checksum == null) {
+                        status = "FAILED open or read";
+                        unreadable++;
+                    } else if (checksum.equalsIgnoreCase(expected.get(i))) {
+                        status = "OK";
+                    } else {
+                        status = "FAILED";
+                        mismatched++;
+                    }
+                    output.write((files.get(i) + ": " + status + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                output.flush();
+            } finally {
+                shutdown(workers);
+            }
+            if (malformed > 0) {
+                errors.println(name + ": WARNING: " + plural(malformed, "line is", "lines are") + " improperly formatted");
+            }
+            if (unreadable > 0) {
+                errors.println(name + ": WARNING: " + plural(unreadable, "listed file", "listed files") + " could not be read");
+            }
+            if (mismatched > 0) {
+                errors.println(name + ": WARNING: " + plural(mismatched, "computed checksum", "computed checksums") + " did NOT match");
+            }
+            if (unreadable > 0 || mismatched > 0) {
+                exitCode = 1;
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Returns the checksum of a file, a regular file is hashed through memory mappings.
+     */
+    String hash(Path file) throws IOException {
+        if (Files.isDirectory(file)) {
+            throw new IOException(file + ": Is a directory");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!Files.isRegularFile(file)) {
+                // a pipe or a device can't be mapped, and its size is unknown
+                return hash(Channels.newInputStream(channel));
+            }
+            Hash hash = newHash();
+            long size = channel.size();
+            for (long position = 0; position < size; position += window) {
+                hash.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position)));
+            }
+            return hash.hex();
+        }
+    }
+
+    /**
+     * Returns the checksum of the rest of the input.
+     */
+    String hash(InputStream input) throws IOException {
+        Hash hash = newHash();
+        byte[] buffer = BufferPool.shared().borrow(BufferPool.LARGE);
+        try {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                hash.update(buffer, 0, read);
+            }
+        } finally {
+            BufferPool.shared().release(buffer);
+        }
+        return hash.hex();
+    }
+
+    private Path resolve(String file) {
+        return directory == null ? Path.of(file) : directory.resolve(file);
+    }
+
+    // Starts hashing every file, the input is hashed once for the first "-"
+    private List<Future<String>> hashAll(List<String> names, InputStream input, ExecutorService workers) {
+        List<Future<String>> results = new ArrayList<>();
+        boolean inputRead = false;
+        for (String file : names) {
+            Callable<String> task;
+            if (file.equals("-")) {
+                boolean empty = inputRead;
+                task = () -> empty ? hash(InputStream.nullInputStream()) : hash(input);
+                inputRead = true;
+            } else {
+                task = () -> hash(resolve(file));
+            }
+            if (workers == null) {
+                FutureTask<String> result = new FutureTask<>(task);
+                result.run();
+                results.add(result);
+            } else {
+                results.add(workers.submit(task));
+            }
+        }
+        return results;
+    }
+
+    // The checksum of a file, or null after reporting why it couldn't be read
+    private String result(String file, Future<String> result, PrintStream errors) throws IOException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                errors.println(name + ": " + message(file, cause));
+                return null;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    // One worker per core for several files, none for a single one: it is hashed by the caller
+    private static ExecutorService workers(int files) {
+        int threads = Math.min(files, Runtime.getRuntime().availableProcessors());
+        if (threads < 2) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cli-checksum");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void shutdown(ExecutorService workers) {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private Hash newHash() {
+        if (algorithm.startsWith("CRC")) {
+            Checksum crc = algorithm.equals("CRC32C") ? new CRC32C() : new CRC32();
+            return new Hash() {
+                @Override
+                public void update(ByteBuffer bytes) {
+                    crc.update(bytes);
+                }
+
+                @Override
+                public void update(byte[] bytes, int offset, int length) {
+                    crc.update(bytes, offset, length);
+                }
+
+                @Override
+                public String hex() {
+                    return String.format("%08x", crc.getValue());
+                }
+            };
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return new Hash() {
+            @Override
+            public void update(ByteBuffer bytes) {
+                digest.update(bytes);
+            }
+
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                digest.update(bytes, offset, length);
+            }
+
+            @Override
+            public String hex() {
+                return HexFormat.of().formatHex(digest.digest());
+            }
+        };
+    }
+
+    // Number of hex digits of a checksum
+    private int hexLength() {
+        return switch (algorithm) {
+            case "SHA-256" -> 64;
+            case "MD5" -> 32;
+            default -> 8;
+        };
+    }
+
+    private static boolean isHex(String line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String message(String file, IOException e) {
+        if (e instanceof NoSuchFileException) {
+            return file + ": No such file or directory";
+        }
+        return e.getMessage();
+    }
+
+    private static String plural(int count, String one, String many) {
+        return count + " " + (count == 1 ? one : many);
+    }
+}
@@ -0,0 +1,417 @@
+package org.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import com.beust.jcommander.JCommander;
+
+// FusedCommand runs a chain of builtins (cat, grep, wc) connected by pipes as a single pass over the input.
+// Lines go from one stage to the next as strings: they are not encoded, pushed through a pipe
+// and scanned for newlines and decoded again by every stage. Each stage does exactly what its
+// builtin does, so the output, the error messages and the exit code are those of the pipeline.
+// A line longer than the window of the input is never held as a string: its parts are spilled to
+// a temporary file, and the stages search, count and print the line from the file part by part.
+final class FusedCommand extends Command {
+
+    // Separator printed by grep -A after the context of a match
+    private static final String CONTEXT_SEPARATOR = "------";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // A stage of the chain and its parsed arguments (grep only)
+    private record Stage(Command command, GrepArgs grepArgs, Pattern pattern) {
+    }
+
+    private final List<Stage> stages;
+
+    private FusedCommand(List<Stage> stages) {
+        super(List.of(stages.stream().map(stage -> stage.command().getName()).collect(Collectors.joining("|"))));
+        this.stages = stages;
+        Command first = stages.getFirst().command();
+        Command last = stages.getLast().command();
+        setDirectory(first.getDirectory());
+        if (first.getInputRedirect() != null) {
+            redirectInput(first.getInputRedirect());
+        }
+        if (last.getOutputRedirect() != null) {
+            redirectOutput(last.getOutputRedirect(), last.isAppendOutput());
+        }
+    }
+
+    /**
+     * Replaces the chains of builtins that can run in a single pass with fused commands.
+     * A chain starts with cat or grep, continues with grep stages reading their stdin and may
+     * end with wc reading its stdin. Only the first stage may redirect input and only the last
+     * one may redirect output. Fusion is disabled with the system property cli.fusion=false.
+     *
+     * @param commands parsed pipeline
+     * @return         the pipeline with the fused chains
+     */
+    static List<Command> fuse(List<Command> commands) {
+        if (commands.size() < 2 || !Boolean.parseBoolean(System.getProperty("cli.fusion", "true"))) {
+            return commands;
+        }
+        List<Command> planned = new ArrayList<>();
+        int start = 0;
+        while (start < commands.size()) {
+            List<Stage> chain = new ArrayList<>();
+            Stage first = firstStage(commands.get(start));
+            if (first != null) {
+                chain.add(first);
+                while (start + chain.size() < commands.size()) {
+                    Stage next = nextStage(chain.getLast().command(), commands.get(start + chain.size()));
+                    if (next == null) {
+                        break;
+                    }
+                    chain.add(next);
+                }
+            }
+            if (chain.size() > 1) {
+                planned.add(new FusedCommand(chain));
+                start += chain.size();
+            } else {
+                planned.add(commands.get(start++));
+            }
+        }
+        return planned;
+    }
+
+    // The stage starting a chain or null: cat or grep writing to the pipe
+    private static Stage firstStage(Command command) {
+        if (command.getOutputRedirect() != null || command.getErrorRedirect() != null) {
+            return null;
+        }
+        return switch (command.getName()) {
+            case "cat" -> new Stage(command, null, null);
+            case "grep" -> grepStage(command, true);
+            default -> null;
+        };
+    }
+
+    // The stage continuing a chain after previous or null: grep or wc reading the pipe
+    private static Stage nextStage(Command previous, Command command) {
+        if (previous.getName().equals("wc") || previous.getOutputRedirect() != null
+                || command.getInputRedirect() != null || command.getErrorRedirect() != null) {
+            return null;
+        }
+        return switch (command.getName()) {
+            case "grep" -> grepStage(command, false);
+            case "wc" -> command.getArgs().isEmpty() ? new Stage(command, null, null) : null;
+            default -> null;
+        };
+    }
+
+    // Parses the grep arguments, grep with invalid arguments is left to the builtin that reports them
+    private static Stage grepStage(Command command, boolean first) {
+        GrepArgs grepArgs = new GrepArgs();
+        try {
+            JCommander.newBuilder().addObject(grepArgs).build().parse(command.getArgs().toArray(new String[0]));
+            if (!first && !grepArgs.getFileNames().isEmpty()) {
+                // grep reads its file, not the pipe
+                return null;
+            }
+            if (grepArgs.getMaxLineBytes() != Long.MAX_VALUE || grepArgs.isCount()) {
+                // the fused pass doesn't cut lines or count matches
+                return null;
+            }
+            return new Stage(command, grepArgs, grepArgs.getPattern());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the chain: reads the input of the first stage line by line and passes every line
+     * through the stages.
+     *
+     * @return exit status of the last stage
+     */
+    int execute() {
+        Stage first = stages.getFirst();
+        Command last = stages.getLast().command();
+        InputStream input = null;
+        SpilledLine spilled = null;
+        int exitCode = 0;
+        try {
+            LineStage chain = buildChain(getStdout());
+            try {
+                input = openInput(first);
+            } catch (IOException e) {
+                // the first stage fails, the rest of the chain gets empty input
+                reportError(first.command(), e);
+            }
+            if (input != null) {
+                LineInput lines = LineInput.windowed(input, ByteLineReader.DEFAULT_WINDOW_SIZE);
+                while (nextLine(lines, first.command())) {
+                    if (!lines.isPartial()) {
+                        chain.accept(lines.string());
+                        continue;
+                    }
+                    if (spilled == null) {
+                        spilled = new SpilledLine();
+                    }
+                    spilled.start();
+                    spilled.add(lines);
+                    boolean whole = true;
+                    while (lines.isPartial() && (whole = nextLine(lines, first.command()))) {
+                        spilled.add(lines);
+                    }
+                    if (!whole) {
+                        // the input ended with an error in the middle of the line
+                        break;
+                    }
+                    chain.accept(spilled);
+                }
+            }
+            chain.finish();
+        } catch (IOException e) {
+            // only writing of the last stage and spilling a long line can fail here
+            exitCode = e instanceof BrokenPipeException ? 0 : reportError(last, e);
+        } finally {
+            if (spilled != null) {
+                try {
+                    spilled.close();
+                } catch (IOException e) {
+                    exitCode = reportError(last, e);
+                }
+            }
+            if (input != null && input != System.in) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    reportError(first.command(), e);
+                }
+            }
+        }
+        return exitCode;
+    }
+
+    // Input of the first stage: its file or stdin
+    private InputStream openInput(Stage first) throws IOException {
+        List<String> files = first.grepArgs() != null ?
+                first.grepArgs().getFileNames() :
+                first.command().getArgs();
+        return files.isEmpty() ? getStdin() : CompressedInput.open(first.command().resolve(files.getFirst()));
+    }
+
+    // Moves to the next line, a read error ends the input of the first stage like in the pipeline
+    private boolean nextLine(LineInput lines, Command first) {
+        try {
+            return lines.next();
+        } catch (IOException e) {
+            reportError(first, e);
+            return false;
+        }
+    }
+
+    private int reportError(Command stage, Exception e) {
+        getStderr().println(stage.getName() + ": " + e.getMessage());
+        return 1;
+    }
+
+    // Links the stages from the last one to the first one
+    private LineStage buildChain(OutputStream output) {
+        Stage last = stages.getLast();
+        LineStage chain = last.command().getName().equals("wc") ?
+                new WcStage(output) :
+                new OutputStage(output);
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            Stage stage = stages.get(i);
+            if (stage.grepArgs() != null) {
+                chain = new GrepStage(stage.pattern(), stage.grepArgs().getAdditionalLines(), chain);
+            }
+        }
+        return chain;
+    }
+
+    // Receives the lines written by the previous stage
+    private interface LineStage {
+        void accept(String line) throws IOException;
+
+        void accept(SpilledLine line) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    // A line longer than the window of the input, kept in a temporary file instead of memory
+    private static final class SpilledLine {
+        private final Path file;
+        private final FileChannel channel;
+        private long length;
+
+        SpilledLine() throws IOException {
+            file = Files.createTempFile("cli-fused", ".line");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        void start() throws IOException {
+            channel.truncate(0);
+            length = 0;
+        }
+
+        void add(LineInput part) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(part.buffer(), part.start(), part.length());
+            while (buffer.hasRemaining()) {
+                length += channel.write(buffer, length);
+            }
+        }
+
+        // The line read again in parts of the window size
+        LineInput parts() throws IOException {
+            return LineInput.windowed(stream(), ByteLineReader.DEFAULT_WINDOW_SIZE);
+        }
+
+        boolean find(LineMatcher.Parts search) throws IOException {
+            LineInput parts = parts();
+            search.start();
+            boolean found = false;
+            while (!found && parts.next()) {
+                found = search.find(parts);
+            }
+            return found;
+        }
+
+        void copyTo(OutputStream output) throws IOException {
+            stream().transferTo(output);
+        }
+
+        // The bytes of the line from the start, the stream is not closed: it would close the file
+        private InputStream stream() throws IOException {
+            return Channels.newInputStream(channel.position(0));
+        }
+
+        void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // grep: passes matched lines and their context
+    private static final class GrepStage implements LineStage {
+        private final LineMatcher matcher;
+        private final int additionalLines;
+        private final LineStage next;
+        // counter of remaining additional lines after match
+        private int additionalLineCnt;
+        // search of the spilled lines, created for the first one
+        private LineMatcher.Parts parts;
+
+        GrepStage(Pattern pattern, int additionalLines, LineStage next) {
+            // one matcher is reused for all lines
+            this.matcher = LineMatcher.compile(pattern);
+            this.additionalLines = additionalLines;
+            this.next = next;
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            boolean matched = matcher.find(line);
+            if (matched || additionalLineCnt > 0) {
+                next.accept(line);
+            }
+            endLine(matched);
+        }
+
+        @Override
+        public void accept(SpilledLine line) throws IOException {
+            if (parts == null) {
+                parts = matcher.parts();
+            }
+            boolean matched = line.find(parts);
+            if (matched || additionalLineCnt > 0) {
+                next.accept(line);
+            }
+            endLine(matched);
+        }
+
+        // Counts the context after the line passed on or not
+        private void endLine(boolean matched) throws IOException {
+            if (matched) {
+                additionalLineCnt = additionalLines;
+            } else if (additionalLineCnt > 0) {
+                additionalLineCnt--;
+                if (additionalLineCnt == 0) {
+                    next.accept(CONTEXT_SEPARATOR);
+                }
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            next.finish();
+        }
+    }
+
+    // wc at the end of the chain: counts the lines like the builtin reading its stdin
+    private static final class WcStage implements LineStage {
+        private final OutputStream output;
+        private long lineCnt, wordCnt, byteCnt;
+        // lines, words and bytes of the spilled lines
+        private final long[] spilledCounts = new long[3];
+
+        WcStage(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void accept(String line) {
+            lineCnt++;
+            wordCnt += line.isBlank() ? 0 : WHITESPACE.split(line.trim()).length;
+            byteCnt += line.getBytes().length + 1;
+        }
+
+        @Override
+        public void accept(SpilledLine line) throws IOException {
+            Executor.countLinesWordsBytes(line.parts(), spilledCounts);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            output.write(String.format("%7d %7d %7d %s%n", lineCnt + spilledCounts[0], wordCnt + spilledCounts[1],
+                    byteCnt + spilledCounts[2], "").getBytes());
+            output.flush();
+        }
+    }
+
+    // The end of a chain without wc: lines are written the way grep writes them
+    private static final class OutputStage implements LineStage {
+        private final OutputStream output;
+        private final Writer writer;
+
+        OutputStage(OutputStream output) {
+            this.output = output;
+            this.writer = new BufferedWriter(new OutputStreamWriter(output));
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            writer.append(line).append('\n');
+        }
+
+        // A spilled line is printed as the bytes of the input, like grep prints the long lines
+        @Override
+        public void accept(SpilledLine line) throws IOException {
+            writer.flush();
+            line.copyTo(output);
+            writer.append('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Glob expands unquoted words with wildcards into the names of existing files, like a shell:
+//  *       any part of a name, names starting with '.' only if the pattern starts with '.'
+//  ?       any character
+//  [...]   any of the characters, [!...] any character except them
+//  **      any number of directories, including none
+// A word that matches nothing is left as it is.
+// Every part of a pattern is compiled into a PathMatcher once. Directory listings are cached
+// with the modification time of the directory, so expanding the same globs again (in a loop
+// over big directories) doesn't list the directories again while they don't change.
+final class Glob {
+
+    // Number of cached directory listings and compiled patterns
+    private static final int CACHE_SIZE = 256;
+    // A listing taken less than this after the change of the directory may miss a change made
+    // in the same tick of the modification time, it isn't trusted
+    private static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+    private static final Map<Path, Listing> LISTINGS = lruMap();
+    private static final Map<String, PathMatcher> MATCHERS = lruMap();
+
+    private Glob() {
+    }
+
+    // Bits of Listing.types: the entry is known to be a directory or not, with or without following links
+    private static final int KNOWN = 1;
+    private static final int DIRECTORY = 2;
+    private static final int NO_FOLLOW_SHIFT = 2;
+
+    // Names of a directory, sorted, and which of them are directories (looked up when needed)
+    private static final class Listing {
+        final FileTime modified;
+        final long listedAt;
+        final String[] names;
+        byte[] types;
+
+        Listing(FileTime modified, long listedAt, String[] names) {
+            this.modified = modified;
+            this.listedAt = listedAt;
+            this.names = names;
+        }
+    }
+
+    /**
+     * Returns true if the word has wildcards to expand. Words with quotes are never expanded.
+     */
+    static boolean isPattern(String word) {
+        boolean wildcard = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '\'' || c == '"') {
+                return false;
+            }
+            wildcard |= c == '*' || c == '?' || c == '[';
+        }
+        return wildcard;
+    }
+
+    /**
+     * Expands the pattern into the sorted names of the matching files, written the way the pattern
+     * is written (relative or absolute). Returns the pattern itself if nothing matches.
+     */
+    static List<String> expand(String pattern) {
+        return expand(pattern, null);
+    }
+
+    /**
+     * Expands the pattern like {@link #expand(String)}, relative patterns are matched in the directory
+     * (null for the working directory of the process).
+     */
+    static List<String> expand(String pattern, Path workingDirectory) {
+        boolean absolute = pattern.startsWith("/");
+        List<String> segments = new ArrayList<>(Arrays.asList(pattern.split("/", -1)));
+        if (absolute) {
+            segments.remove(0);
+        }
+        // The leading segments without wildcards are the directory to start from
+        int first = 0;
+        StringBuilder prefix = new StringBuilder(absolute ? "/" : "");
+        while (first < segments.size() - 1 && !hasWildcard(segments.get(first))) {
+            prefix.append(segments.get(first)).append('/');
+            first++;
+        }
+        String start = prefix.isEmpty() ? "." : prefix.toString();
+
+        List<String> matches = new ArrayList<>();
+        try {
+            Path directory = workingDirectory == null ? Path.of(start) : workingDirectory.resolve(start);
+            expand(directory, prefix.toString(), segments, first, matches);
+        } catch (IOException | RuntimeException e) {
+            // an unreadable directory has no matches, like in a shell
+        }
+        if (matches.isEmpty()) {
+            return List.of(pattern);
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    // Matches the segments from index in the directory, prefix is the matched part of the word
+    private static void expand(Path directory, String prefix, List<String> segments, int index,
+                               List<String> matches) throws IOException {
+        String segment = segments.get(index);
+        boolean last = index == segments.size() - 1;
+        if (last && segment.isEmpty()) {
+            // a trailing '/' matches only directories
+            if (!prefix.isEmpty() && Files.isDirectory(directory)) {
+                matches.add(prefix);
+            }
+            return;
+        }
+        if (!hasWildcard(segment)) {
+            Path child = directory.resolve(segment);
+            if (last ? Files.exists(child, LinkOption.NOFOLLOW_LINKS) : Files.isDirectory(child)) {
+                if (last) {
+                    matches.add(prefix + segment);
+                } else {
+                    expand(child, prefix + segment + "/", segments, index + 1, matches);
+                }
+            }
+            return;
+        }
+
+        Listing listing = list(directory);
+        if (listing == null) {
+            return;
+        }
+        if (segment.equals("**")) {
+            if (last) {
+                // every file and directory below
+                for (int i = 0; i < listing.names.length; i++) {
+                    String name = listing.names[i];
+                    if (name.startsWith(".")) {
+                        continue;
+                    }
+                    matches.add(prefix + name);
+                    if (isDirectory(directory, listing, i, true)) {
+                        expand(directory.resolve(name), prefix + name + "/", segments, index, matches);
+                    }
+                }
+                return;
+            }
+            // no directories, then one more directory and ** again; symbolic links are not followed
+            expand(directory, prefix, segments, index + 1, matches);
+            for (int i = 0; i < listing.names.length; i++) {
+                String name = listing.names[i];
+                if (!name.startsWith(".") && isDirectory(directory, listing, i, true)) {
+                    expand(directory.resolve(name), prefix + name + "/", segments, index, matches);
+                }
+            }
+            return;
+        }
+
+        PathMatcher matcher = matcher(segment);
+        boolean hidden = segment.startsWith(".");
+        for (int i = 0; i < listing.names.length; i++) {
+            String name = listing.names[i];
+            if (name.startsWith(".") && !hidden || !matcher.matches(Path.of(name))) {
+                continue;
+            }
+            if (last) {
+                matches.add(prefix + name);
+            } else if (isDirectory(directory, listing, i, false)) {
+                expand(directory.resolve(name), prefix + name + "/", segments, index + 1, matches);
+            }
+        }
+    }
+
+    // The cached listing if the directory hasn't changed since it was taken, a new one otherwise
+    private static Listing list(Path directory) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(key);
+        } catch (IOException e) {
+            return null;
+        }
+        synchronized (LISTINGS) {
+            Listing cached = LISTINGS.get(key);
+            if (cached != null && cached.modified.equals(modified)
+                    && cached.listedAt - modified.toMillis() > MTIME_GRANULARITY_MILLIS) {
+                return cached;
+            }
+        }
+        long listedAt = System.currentTimeMillis();
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(key)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+            }
+        }
+        String[] sorted = names.toArray(new String[0]);
+        Arrays.sort(sorted);
+        Listing listing = new Listing(modified, listedAt, sorted);
+        synchronized (LISTINGS) {
+            LISTINGS.put(key, listing);
+        }
+        return listing;
+    }
+
+    // Whether the entry of the listing is a directory, looked up once per listing.
+    // The ** recursion doesn't follow symbolic links, so it can't loop
+    private static boolean isDirectory(Path directory, Listing listing, int i, boolean noFollow) {
+        int shift = noFollow ? NO_FOLLOW_SHIFT : 0;
+        synchronized (listing) {
+            if (listing.types == null) {
+                listing.types = new byte[listing.names.length];
+            }
+            int type = listing.types[i] >> shift;
+            if ((type & KNOWN) == 0) {
+                Path entry = directory.resolve(listing.names[i]);
+                boolean isDirectory = noFollow ?
+                        Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS) :
+                        Files.isDirectory(entry);
+                type = KNOWN | (isDirectory ? DIRECTORY : 0);
+                listing.types[i] |= (byte) (type << shift);
+            }
+            return (type & DIRECTORY) != 0;
+        }
+    }
+
+    // Compiled matcher of one segment, braces and backslashes are literal in a shell glob
+    private static PathMatcher matcher(String segment) {
+        synchronized (MATCHERS) {
+            PathMatcher matcher = MATCHERS.get(segment);
+            if (matcher == null) {
+                String glob = segment.replace("\\", "\\\\").replace("{", "\\{").replace("}", "\\}");
+                matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                MATCHERS.put(segment, matcher);
+            }
+            return matcher;
+        }
+    }
+
+    private static boolean hasWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('[') >= 0;
+    }
+
+    private static <K, V> Map<K, V> lruMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package org.cli;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import com.beust.jcommander.Parameter;
+
+// class specifically for parsing arguments for grep using JCommander
+class GrepArgs {
+    @Parameter(names = "-w", description = "Search only whole word")
+    private boolean wholeWord;
+
+    @Parameter(names = "-i", description = "Case-insensitive search")
+    private boolean caseInsensitive;
+
+    @Parameter(names = "-A", arity = 1, description = "Print 'A' lines after match")
+    private int additionalLines = 0;
+
+    @Parameter(names = "--max-line-bytes", arity = 1, description = "Print at most 'max-line-bytes' bytes of a line")
+    private long maxLineBytes = Long.MAX_VALUE;
+
+    @Parameter(names = "-c", description = "Print only the number of matching lines")
+    private boolean count;
+
+    @Parameter(names = "--incremental", description = "Count only the lines appended since the previous run (with -c)")
+    private boolean incremental;
+
+    // always assume that pattern goes before files
+    @Parameter(description = "Pattern and files to search")
+    private List<String> positionalParams;
+
+    // return list of fileNames for grep. Currently, will process only first of them
+    public List<String> getFileNames() {
+        return positionalParams.subList(1, positionalParams.size());
+    }
+
+    public int getAdditionalLines() {
+        return additionalLines;
+    }
+
+    public boolean isCount() {
+        return count;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    // return the limit of the printed bytes of a line, no limit by default
+    public long getMaxLineBytes() {
+        return maxLineBytes;
+    }
+
+    // return Pattern for grep match
+    public Pattern getPattern() {
+        String patternString;
+        // update it for wholeWord
+        if (wholeWord) {
+            patternString = "\\b" + positionalParams.getFirst() + "\\b";
+        } else {
+            patternString = positionalParams.getFirst();
+        }
+        // update for case sensation
+        if (caseInsensitive) {
+            return Pattern.compile(patternString, Pattern.CASE_INSENSITIVE);
+        }
+        return Pattern.compile(patternString);
+    }
+}
@@ -0,0 +1,120 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+// HashLineCounter counts lines exactly in an open-addressing hash table.
+// Keys are copied once into a single byte array, and entries are stored in parallel primitive
+// arrays, so counting a line that was already seen doesn't allocate anything.
+final class HashLineCounter implements LineCounter {
+
+    private static final int INITIAL_ENTRIES = 1024;
+    // Maximum size of a Java array, the bytes of all distinct lines must fit into it
+    private static final int MAX_KEY_BYTES = Integer.MAX_VALUE - 8;
+
+    // bytes of all distinct lines, one after another
+    private byte[] keys = new byte[64 * 1024];
+    private int keysSize;
+
+    // entries in order of the first occurrence
+    private int[] keyOffsets = new int[INITIAL_ENTRIES];
+    private int[] keyLengths = new int[INITIAL_ENTRIES];
+    private long[] hashes = new long[INITIAL_ENTRIES];
+    private long[] counts = new long[INITIAL_ENTRIES];
+    private int size;
+
+    // open-addressing table with linear probing: entry index + 1, 0 for an empty slot
+    private int[] slots = new int[INITIAL_ENTRIES * 2];
+
+    @Override
+    public void add(byte[] bytes, int offset, int length) {
+        long hash = LineCounter.hash(bytes, offset, length);
+        int mask = slots.length - 1;
+        int slot = (int) hash & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && Arrays.equals(keys, keyOffsets[entry], keyOffsets[entry] + keyLengths[entry],
+                    bytes, offset, offset + length)) {
+                counts[entry]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = insert(bytes, offset, length, hash) + 1;
+        // Keep the load factor at most 1/2
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    @Override
+    public long distinct() {
+        return size;
+    }
+
+    @Override
+    public void writeTop(OutputStream output, int limit) throws IOException {
+        int resultSize = limit > 0 ? Math.min(limit, size) : size;
+        // Heap of the best entries found so far, the worst of them on top
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, resultSize), (a, b) -> compare(b, a));
+        for (int entry = 0; entry < size; entry++) {
+            top.add(entry);
+            if (top.size() > resultSize) {
+                top.poll();
+            }
+        }
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        for (int entry : result) {
+            LineCounter.writeEntry(output, counts[entry], keys, keyOffsets[entry], keyLengths[entry]);
+        }
+    }
+
+    // Order of the result: higher count first, then the earlier first occurrence
+    private int compare(int first, int second) {
+        int byCount = Long.compare(counts[second], counts[first]);
+        return byCount != 0 ? byCount : Integer.compare(first, second);
+    }
+
+    // Append a new entry with count 1 and return its index
+    private int insert(byte[] bytes, int offset, int length, long hash) {
+        if (size == keyOffsets.length) {
+            int capacity = size * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        if (length > keys.length - keysSize) {
+            long required = (long) keysSize + length;
+            if (required > MAX_KEY_BYTES) {
+                throw new IllegalStateException("too many distinct lines to count exactly, use --approx");
+            }
+            keys = Arrays.copyOf(keys, (int) Math.min(MAX_KEY_BYTES, Math.max(required, 2L * keys.length)));
+        }
+        System.arraycopy(bytes, offset, keys, keysSize, length);
+        keyOffsets[size] = keysSize;
+        keyLengths[size] = length;
+        hashes[size] = hash;
+        counts[size] = 1;
+        keysSize += length;
+        return size++;
+    }
+
+    // Double the table and put all entries into it again
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = (int) hashes[entry] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// History keeps the input lines of the sessions in an append-only file shared by all sessions
+// of the user, one UTF-8 line per entry.
+// A line is appended with one write under a file lock, so concurrent sessions (other processes
+// and daemon connections) never interleave their lines.
+// The file is read through a memory mapping. Every lookup maps the file again and indexes only
+// the entries added since the previous lookup, so nothing is read at startup and a search never
+// scans millions of entries: the index maps every trigram (3 bytes) to the blocks of entries
+// containing it, and only the entries of the blocks having all trigrams of the query are compared.
+//
+// The file is configured with the system property cli.history (~/.cli_history by default),
+// cli.history=none disables the history.
+final class History {
+
+    static final String DEFAULT_FILE = ".cli_history";
+    // Entries of one block of the trigram index
+    private static final int BLOCK_SIZE = 64;
+    // Appends of all History objects in this JVM, a file lock can't be taken twice by one JVM
+    private static final Object APPEND_LOCK = new Object();
+
+    private static History instance;
+
+    private final Path file;
+    // Start offsets of the entries, entry i ends with '\n' at starts[i + 1] - 1
+    private long[] starts = new long[1024];
+    private int count;
+    // End of the last complete entry indexed, a line being written by another session is not indexed
+    private long indexedEnd;
+    private MappedByteBuffer map;
+    // Blocks of the entries containing the trigram, in ascending order
+    private final Map<Integer, Postings> trigrams = new HashMap<>();
+
+    History(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the history configured by system properties, or null if it is disabled.
+     */
+    static synchronized History get() {
+        String property = System.getProperty("cli.history");
+        if ("none".equals(property)) {
+            return null;
+        }
+        Path file = property == null || property.isEmpty() ?
+                Path.of(System.getProperty("user.home"), DEFAULT_FILE) :
+                Path.of(property);
+        if (instance == null || !instance.file.equals(file)) {
+            instance = new History(file);
+        }
+        return instance;
+    }
+
+    /**
+     * Appends the line to the history file.
+     */
+    void add(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (APPEND_LOCK) {
+            // the lock is released when the channel is closed
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.lock();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    synchronized int size() throws IOException {
+        refresh();
+        return count;
+    }
+
+    /**
+     * Returns the entry with the given index, starting from 0.
+     */
+    synchronized String entry(int index) throws IOException {
+        refresh();
+        int start = (int) starts[index];
+        byte[] bytes = new byte[(int) starts[index + 1] - 1 - start];
+        map.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Resolves a history reference of `!` recall:
+     * "!" is the last entry, a number N is the entry N (starting from 1),
+     * any other text is the last entry starting with it.
+     *
+     * @return the entry, or null if there is no such entry
+     */
+    synchronized String recall(String reference) throws IOException {
+        refresh();
+        if (reference.equals("!")) {
+            return count == 0 ? null : entry(count - 1);
+        }
+        if (reference.chars().allMatch(Character::isDigit)) {
+            int number;
+            try {
+                number = Integer.parseInt(reference);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return number >= 1 && number <= count ? entry(number - 1) : null;
+        }
+        int[] last = {-1};
+        search(reference, true, true, index -> {
+            if (last[0] == -1) {
+                last[0] = index;
+            }
+        });
+        return last[0] == -1 ? null : entry(last[0]);
+    }
+
+    /**
+     * Passes the indexes of the entries containing the text (starting with it if prefix is true)
+     * to the consumer in ascending order.
+     */
+    synchronized void forEachMatch(String text, boolean prefix, IntConsumer consumer) throws IOException {
+        refresh();
+        search(text, prefix, false, consumer);
+    }
+
+    // Compares the entries of the candidate blocks with the query.
+    // Newest first stops at the first match, that is all `!` recall needs
+    private void search(String text, boolean prefix, boolean newestFirst, IntConsumer consumer) {
+        byte[] query = text.getBytes(StandardCharsets.UTF_8);
+        int[] blocks = candidateBlocks(query);
+        for (int b = 0; b < blocks.length; b++) {
+            int block = blocks[newestFirst ? blocks.length - 1 - b : b];
+            int first = block * BLOCK_SIZE;
+            int last = Math.min(first + BLOCK_SIZE, count) - 1;
+            for (int i = 0; i <= last - first; i++) {
+                int index = newestFirst ? last - i : first + i;
+                if (matches(index, query, prefix)) {
+                    consumer.accept(index);
+                    if (newestFirst) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Blocks that have all the trigrams of the query, every block for queries shorter than a trigram
+    private int[] candidateBlocks(byte[] query) {
+        int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (query.length < 3) {
+            int[] all = new int[blockCount];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+        int[] result = null;
+        for (int i = 0; i + 2 < query.length; i++) {
+            Postings postings = trigrams.get(trigram(query[i], query[i + 1], query[i + 2]));
+            if (postings == null) {
+                return new int[0];
+            }
+            result = result == null ? Arrays.copyOf(postings.blocks, postings.size) : postings.intersect(result);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(int index, byte[] query, boolean prefix) {
+        int start = (int) starts[index];
+        int length = (int) starts[index + 1] - 1 - start;
+        if (query.length > length) {
+            return false;
+        }
+        int lastStart = prefix ? 0 : length - query.length;
+        for (int from = 0; from <= lastStart; from++) {
+            int i = 0;
+            while (i < query.length && map.get(start + from + i) == query[i]) {
+                i++;
+            }
+            if (i == query.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Maps the file again and indexes the entries added since the previous call
+    private void refresh() throws IOException {
+        if (map == null && !Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("history file is too large: " + file);
+            }
+            if (map != null && size == map.capacity()) {
+                return;
+            }
+            if (size < indexedEnd) {
+                // the file was truncated, index it from the beginning
+                count = 0;
+                indexedEnd = 0;
+                trigrams.clear();
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int start = (int) indexedEnd;
+        int limit = map.capacity();
+        for (int i = start; i < limit; i++) {
+            if (map.get(i) == '\n') {
+                addEntry(start, i);
+                start = i + 1;
+            }
+        }
+        indexedEnd = start;
+    }
+
+    // Adds the entry [start, end) followed by '\n' at end
+    private void addEntry(int start, int end) {
+        if (count + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[count] = start;
+        starts[count + 1] = end + 1;
+        int block = count / BLOCK_SIZE;
+        for (int i = start; i + 2 < end; i++) {
+            trigrams.computeIfAbsent(trigram(map.get(i), map.get(i + 1), map.get(i + 2)), key -> new Postings()).add(block);
+        }
+        count++;
+    }
+
+    private static int trigram(byte first, byte second, byte third) {
+        return (first & 0xFF) << 16 | (second & 0xFF) << 8 | third & 0xFF;
+    }
+
+    // Sorted list of block numbers without duplicates
+    private static final class Postings {
+        int[] blocks = new int[2];
+        int size;
+
+        // Blocks are added in ascending order, so a duplicate is always the last one
+        void add(int block) {
+            if (size > 0 && blocks[size - 1] == block) {
+                return;
+            }
+            if (size == blocks.length) {
+                blocks = Arrays.copyOf(blocks, size * 2);
+            }
+            blocks[size++] = block;
+        }
+
+        int[] intersect(int[] other) {
+            int[] result = new int[Math.min(size, other.length)];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.length) {
+                if (blocks[i] < other[j]) {
+                    i++;
+                } else if (blocks[i] > other[j]) {
+                    j++;
+                } else {
+                    result[n++] = blocks[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+}
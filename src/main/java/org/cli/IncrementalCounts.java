@@ -0,0 +1,262 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// IncrementalCounts lets wc --incremental and grep -c --incremental count append-only files
+// (logs) again without reading them from the start. For every file and query (wc, or grep with
+// its pattern) a state file keeps the identity of the file (its file key, the inode on Unix), the
+// offset after the last complete line counted, a CRC of the bytes before that offset and the
+// counts up to it. The next run reads only the bytes after the offset. The incomplete last line
+// isn't part of the state: it is counted on every run, from the offset, until it is complete.
+// A file with another identity, shorter than the offset or with other bytes before the offset
+// (rotated, truncated or rewritten) is counted again from the start.
+//
+// The state file is ~/.cli_incremental, or the file of the system property cli.incremental.
+final class IncrementalCounts {
+
+    static final String DEFAULT_FILE = ".cli_incremental";
+    // States kept in the state file, the least recently updated ones are dropped first
+    static final int MAX_ENTRIES = 4096;
+    // Bytes before the offset compared with the CRC of the state
+    private static final int CHECK_BYTES = 256;
+    // Updates of all the IncrementalCounts in this JVM, a file lock can't be taken twice by one JVM
+    private static final Object UPDATE_LOCK = new Object();
+
+    private final Path stateFile;
+
+    // The part of a file counted before
+    private record State(String identity, long offset, long check, long[] counts) {
+    }
+
+    /**
+     * Counts the lines of a region of a file, adding the counts to the array.
+     */
+    interface Counter {
+        void count(InputStream region, long[] counts) throws IOException;
+    }
+
+    IncrementalCounts(Path stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Returns the counts configured by system properties.
+     */
+    static IncrementalCounts get() {
+        String property = System.getProperty("cli.incremental");
+        return new IncrementalCounts(property == null || property.isEmpty() ?
+                Path.of(System.getProperty("user.home"), DEFAULT_FILE) :
+                Path.of(property));
+    }
+
+    /**
+     * Returns the counts of the whole file, counting only the bytes appended since the previous
+     * count of the same query. A compressed file is decompressed and counted whole every time.
+     *
+     * @param query   what is counted (the command and the options changing the counts)
+     * @param file    the file to count
+     * @param size    number of counts
+     * @param counter counts the lines of a region, the same way for the whole file and its parts
+     */
+    long[] count(String query, Path file, int size, Counter counter) throws IOException {
+        long[] counts = new long[size];
+        if (CompressedInput.isCompressed(file)) {
+            try (InputStream input = CompressedInput.open(file)) {
+                counter.count(input, counts);
+            }
+            return counts;
+        }
+        Path path = file.toAbsolutePath().normalize();
+        String key = hash(query + '\0' + path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            String identity = String.valueOf(Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+            // the bytes appended while counting are left to the next run
+            long end = channel.size();
+            State state = load().get(key);
+            boolean valid = state != null && state.counts().length == size && state.identity().equals(identity)
+                    && state.offset() <= end && check(channel, state.offset()) == state.check();
+            long offset = 0;
+            if (valid) {
+                offset = state.offset();
+                System.arraycopy(state.counts(), 0, counts, 0, size);
+            }
+
+            long lineEnd = lastLineEnd(channel, offset, end);
+            counter.count(new RegionInput(channel, offset, lineEnd), counts);
+            if (!valid || lineEnd != offset) {
+                update(key, new State(identity, lineEnd, check(channel, lineEnd), counts.clone()));
+            }
+            // the incomplete last line is counted, but not remembered
+            counter.count(new RegionInput(channel, lineEnd, end), counts);
+        }
+        return counts;
+    }
+
+    // The offset after the last '\n' of the region, from if there is none
+    private static long lastLineEnd(FileChannel channel, long from, long to) throws IOException {
+        byte[] block = BufferPool.shared().borrow(BufferPool.LARGE);
+        try {
+            long blockEnd = to;
+            while (blockEnd > from) {
+                int length = (int) Math.min(block.length, blockEnd - from);
+                long blockStart = blockEnd - length;
+                readFully(channel, ByteBuffer.wrap(block, 0, length), blockStart);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (block[i] == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+            return from;
+        } finally {
+            BufferPool.shared().release(block);
+        }
+    }
+
+    // CRC of the bytes just before the offset
+    private static long check(FileChannel channel, long offset) throws IOException {
+        int length = (int) Math.min(offset, CHECK_BYTES);
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(channel, bytes, offset - length);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.flip());
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                throw new IOException("file was truncated while reading it");
+            }
+        }
+    }
+
+    // States of the state file, the least recently updated first
+    private Map<String, State> load() throws IOException {
+        if (!Files.exists(stateFile)) {
+            return new LinkedHashMap<>();
+        }
+        synchronized (UPDATE_LOCK) {
+            // the locks are released when the channel is closed
+            try (FileChannel channel = FileChannel.open(stateFile, StandardOpenOption.READ)) {
+                channel.lock(0, Long.MAX_VALUE, true);
+                return parse(channel);
+            }
+        }
+    }
+
+    // Replaces the state of the key, under a lock against other sessions updating the file
+    private void update(String key, State state) throws IOException {
+        synchronized (UPDATE_LOCK) {
+            try (FileChannel channel = FileChannel.open(stateFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                Map<String, State> states = parse(channel);
+                states.remove(key);
+                states.put(key, state);
+                Iterator<String> eldest = states.keySet().iterator();
+                while (states.size() > MAX_ENTRIES) {
+                    eldest.next();
+                    eldest.remove();
+                }
+                StringBuilder text = new StringBuilder();
+                for (Map.Entry<String, State> entry : states.entrySet()) {
+                    State value = entry.getValue();
+                    text.append(entry.getKey()).append('\t').append(value.identity())
+                            .append('\t').append(value.offset()).append('\t').append(value.check());
+                    for (long count : value.counts()) {
+                        text.append('\t').append(count);
+                    }
+                    text.append('\n');
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                channel.truncate(0);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, bytes.position());
+                }
+            }
+        }
+    }
+
+    // Lines "KEY IDENTITY OFFSET CHECK COUNT..." separated by tabs, a broken line is ignored
+    private static Map<String, State> parse(FileChannel channel) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+        readFully(channel, bytes, 0);
+        Map<String, State> states = new LinkedHashMap<>();
+        for (String line : new String(bytes.array(), StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length < 5) {
+                continue;
+            }
+            try {
+                long[] counts = new long[fields.length - 4];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = Long.parseLong(fields[i + 4]);
+                }
+                states.put(fields[0], new State(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), counts));
+            } catch (NumberFormatException e) {
+                // written by an incompatible version, the file is counted again
+            }
+        }
+        return states;
+    }
+
+    // The key of a query and a file in the state file: fixed length, without tabs and line breaks
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A region of the file read with positional reads
+    private static final class RegionInput extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RegionInput(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read < 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+}
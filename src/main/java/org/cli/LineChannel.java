@@ -0,0 +1,521 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// LineChannel connects two line-oriented builtins running in the same JVM.
+// Instead of a byte stream the upstream stage hands over batches of lines: the bytes of the
+// lines in one buffer and the offsets where every line and its terminator end. The downstream
+// stage gets the lines already split, so it doesn't scan them for newlines again.
+// Lines end with '\n', '\r' or "\r\n" like in BufferedReader.readLine, the terminators stay in
+// the batch, so the bytes of the batches are exactly the bytes written.
+// A stage that doesn't know about lines uses the byte stream view: source() and sink().
+// A line longer than the window never has to fit in a batch: its parts are handed over as they are
+// written, like the parts of ByteLineReader. Readers with a window get the parts, the line view
+// joins them.
+// Batches are recycled through a small pool, so the number of batches in flight is bounded
+// and a slow consumer slows the producer down like a BoundedPipe does.
+final class LineChannel implements PipelineLink {
+
+    // Default size of the bytes of a batch and maximum number of lines in it
+    static final int BATCH_SIZE = 64 * 1024;
+    static final int BATCH_LINES = 2048;
+    // Number of batches: one being written, one being read and the rest waiting in the queue
+    private static final int POOL_SIZE = 4;
+    private static final byte[] LINE_FEED = {'\n'};
+
+    private final int batchSize;
+    private final int batchLines;
+    private final int windowSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Deque<Batch> filled = new ArrayDeque<>();
+    private final Deque<Batch> free = new ArrayDeque<>();
+    private int allocated;
+    private boolean writerClosed;
+    private volatile boolean readerClosed;
+    // the last batch handed over ends with a part of a line, the writer owns it
+    private boolean continued;
+
+    // Batch being filled by the writer and batch being read by the reader, owned by their threads
+    private Batch writing;
+    private Batch reading;
+
+    private final Reader parts = new Reader();
+    private final ByteLines reader = new WholeLines();
+    private final InputStream source = new Source();
+    private final OutputStream sink = new Sink();
+
+    /**
+     * Returns true if pipelines connect line-oriented builtins with line channels.
+     * They are disabled by -Dcli.lineChannels=false, and when the default charset may encode
+     * ASCII characters differently, since lines are passed on as raw bytes.
+     */
+    static boolean isEnabled() {
+        return LineInput.ASCII_COMPATIBLE && !"false".equals(System.getProperty("cli.lineChannels"));
+    }
+
+    LineChannel() {
+        this(BATCH_SIZE, BATCH_LINES);
+    }
+
+    LineChannel(int batchSize, int batchLines) {
+        this(batchSize, batchLines, ByteLineReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize maximum size of a part of a long line, longer lines are handed over in parts
+     */
+    LineChannel(int batchSize, int batchLines, int windowSize) {
+        this.batchSize = batchSize;
+        this.batchLines = batchLines;
+        this.windowSize = Math.max(windowSize, 4); // room for a whole UTF-8 character
+    }
+
+    // Lines of the batch i are data[ends[i - 1], ends[i]), the line itself ends at contentEnds[i]
+    private static final class Batch {
+        byte[] data;
+        final int[] ends;
+        final int[] contentEnds;
+        int size;
+        int count;
+        // bytes before it are split into lines, a '\r' at the end waits for the next byte
+        int scanned;
+        // read position of the reader: the current line and the byte for the stream view
+        int line = -1;
+        int position;
+        // the only line of the batch is a part of a long line, more parts follow
+        boolean partial;
+
+        Batch(int size, int lines) {
+            this.data = new byte[size];
+            this.ends = new int[lines];
+            this.contentEnds = new int[lines];
+        }
+
+        int recordStart() {
+            return count == 0 ? 0 : ends[count - 1];
+        }
+
+        boolean isFull() {
+            return count == ends.length;
+        }
+
+        void addLine(int contentEnd, int end) {
+            contentEnds[count] = contentEnd;
+            ends[count] = end;
+            count++;
+        }
+
+        void reset() {
+            size = count = scanned = position = 0;
+            line = -1;
+            partial = false;
+        }
+    }
+
+    // Line view of the reading side with whole lines, the downstream stage uses either it, parts() or source()
+    ByteLines reader() {
+        return reader;
+    }
+
+    // Line view of the reading side, the lines longer than the window come in parts
+    ByteLines parts() {
+        return parts;
+    }
+
+    @Override
+    public InputStream source() {
+        return source;
+    }
+
+    @Override
+    public OutputStream sink() {
+        return sink;
+    }
+
+    /**
+     * Writes one line, the line terminator '\n' is added.
+     * The line must not contain line terminators.
+     */
+    void writeLine(byte[] bytes, int offset, int length) throws IOException {
+        if (length >= windowSize) {
+            // the line goes in parts through the stream view
+            sink.write(bytes, offset, length);
+            sink.write(LINE_FEED, 0, 1);
+            return;
+        }
+        Batch batch = writableBatch(length + 1);
+        System.arraycopy(bytes, offset, batch.data, batch.size, length);
+        batch.size += length;
+        batch.data[batch.size++] = '\n';
+        batch.addLine(batch.size - 1, batch.size);
+        batch.scanned = batch.size;
+    }
+
+    // Publishes the complete lines written so far, the incomplete last line stays
+    void flush() throws IOException {
+        while (writing != null) {
+            split(writing);
+            if (writing.count == 0) {
+                break;
+            }
+            rotate();
+        }
+    }
+
+    @Override
+    public void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            while (!filled.isEmpty()) {
+                recycle(filled.poll());
+            }
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Publishes the rest of the data, the last line may have no terminator
+    @Override
+    public void closeWriter() {
+        try {
+            if (writing != null && !readerClosed) {
+                flush();
+                // Only the last line without terminator is left, a '\r' not split yet terminates it.
+                // The last part of a long line is handed over even if it is empty
+                if (writing.size > 0 || continued) {
+                    writing.addLine(writing.scanned < writing.size ? writing.size - 1 : writing.size, writing.size);
+                }
+                publish();
+            }
+        } catch (IOException e) {
+            // the reader is gone, nobody needs the rest
+        }
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The batch being written with room for at least length more bytes and one more line
+    private Batch writableBatch(int length) throws IOException {
+        if (writing == null) {
+            writing = acquire();
+        }
+        if (writing.isFull() || writing.data.length - writing.size < length) {
+            if (writing.count > 0) {
+                rotate();
+            }
+            if (writing.data.length - writing.size < length) {
+                // a line longer than a batch gets a bigger batch, up to the window
+                int grown = Math.max(writing.data.length, Math.min(writing.data.length * 2, windowSize));
+                writing.data = Arrays.copyOf(writing.data, Math.max(grown, writing.size + length));
+            }
+        }
+        return writing;
+    }
+
+    // Publishes the complete lines of the batch being written and moves the incomplete line to a new batch
+    private void rotate() throws IOException {
+        Batch full = writing;
+        Batch next = acquire();
+        int tail = full.recordStart();
+        int remaining = full.size - tail;
+        if (next.data.length < remaining) {
+            next.data = new byte[Math.max(batchSize, Math.min(remaining * 2, windowSize))];
+        }
+        System.arraycopy(full.data, tail, next.data, 0, remaining);
+        next.size = remaining;
+        next.scanned = full.scanned - tail;
+        full.size = tail;
+        full.scanned = tail;
+        publish();
+        writing = next;
+    }
+
+    // Hands the window full of one line over as a part of it, the bytes after the part stay
+    private void publishPart() throws IOException {
+        // a '\r' not split yet may end the line, it stays with the rest
+        int cut = ByteLineReader.characterBoundary(writing.data, 0, writing.scanned);
+        writing.addLine(cut, cut);
+        writing.partial = true;
+        rotate();
+    }
+
+    // Hands the batch being written to the reader
+    private void publish() throws IOException {
+        Batch batch = writing;
+        writing = null;
+        if (batch.count == 0) {
+            recycleUnlocked(batch);
+            return;
+        }
+        continued = batch.partial;
+        lock.lock();
+        try {
+            if (readerClosed) {
+                recycle(batch);
+                throw new BrokenPipeException();
+            }
+            filled.add(batch);
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // An empty batch from the pool, waits while all batches are in use
+    private Batch acquire() throws IOException {
+        lock.lock();
+        try {
+            while (free.isEmpty() && allocated >= POOL_SIZE && !readerClosed) {
+                await(notFull);
+            }
+            if (readerClosed) {
+                throw new BrokenPipeException();
+            }
+            if (!free.isEmpty()) {
+                return free.poll();
+            }
+            allocated++;
+            return new Batch(batchSize, batchLines);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recycle(Batch batch) {
+        batch.reset();
+        free.add(batch);
+        notFull.signalAll();
+    }
+
+    private void recycleUnlocked(Batch batch) {
+        lock.lock();
+        try {
+            recycle(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Splits the new bytes of the batch into lines
+    private static void split(Batch batch) {
+        byte[] data = batch.data;
+        int i = batch.scanned;
+        while (i < batch.size && !batch.isFull()) {
+            byte b = data[i];
+            if (b == '\n') {
+                batch.addLine(i, i + 1);
+                i++;
+            } else if (b == '\r') {
+                if (i + 1 == batch.size) {
+                    // "\r\n" or a lone '\r', the next byte decides
+                    break;
+                }
+                int end = data[i + 1] == '\n' ? i + 2 : i + 1;
+                batch.addLine(i, end);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        batch.scanned = i;
+    }
+
+    // The next batch for the reader, null at the end of the stream
+    private Batch take() throws IOException {
+        lock.lock();
+        try {
+            if (reading != null) {
+                recycle(reading);
+                reading = null;
+            }
+            while (filled.isEmpty()) {
+                if (readerClosed) {
+                    throw new IOException("Pipe closed");
+                }
+                if (writerClosed) {
+                    return null;
+                }
+                await(notEmpty);
+            }
+            reading = filled.poll();
+            return reading;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Reader implements ByteLines {
+        @Override
+        public boolean next() throws IOException {
+            while (reading == null || reading.line + 1 >= reading.count) {
+                if (take() == null) {
+                    return false;
+                }
+            }
+            reading.line++;
+            return true;
+        }
+
+        @Override
+        public byte[] buffer() {
+            return reading.data;
+        }
+
+        @Override
+        public int start() {
+            return reading.line == 0 ? 0 : reading.ends[reading.line - 1];
+        }
+
+        @Override
+        public int length() {
+            return reading.contentEnds[reading.line] - start();
+        }
+
+        @Override
+        public boolean isPartial() {
+            return reading != null && reading.partial;
+        }
+    }
+
+    // Whole lines of the reader, the parts of a long line are joined
+    private final class WholeLines implements ByteLines {
+        private byte[] joined = new byte[0];
+        private int joinedLength;
+        // the current line is in joined, else it is the current line of the reader
+        private boolean isJoined;
+
+        @Override
+        public boolean next() throws IOException {
+            if (!parts.next()) {
+                return false;
+            }
+            isJoined = parts.isPartial();
+            joinedLength = 0;
+            while (isJoined) {
+                join(parts.buffer(), parts.start(), parts.length());
+                if (!parts.isPartial() || !parts.next()) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private void join(byte[] bytes, int offset, int length) {
+            if (joined.length - joinedLength < length) {
+                joined = Arrays.copyOf(joined, Math.max(joined.length * 2, joinedLength + length));
+            }
+            System.arraycopy(bytes, offset, joined, joinedLength, length);
+            joinedLength += length;
+        }
+
+        @Override
+        public byte[] buffer() {
+            return isJoined ? joined : parts.buffer();
+        }
+
+        @Override
+        public int start() {
+            return isJoined ? 0 : parts.start();
+        }
+
+        @Override
+        public int length() {
+            return isJoined ? joinedLength : parts.length();
+        }
+    }
+
+    private final class Source extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (reading == null || reading.position == reading.size) {
+                if (take() == null) {
+                    return -1;
+                }
+            }
+            int read = Math.min(length, reading.size - reading.position);
+            System.arraycopy(reading.data, reading.position, bytes, offset, read);
+            reading.position += read;
+            return read;
+        }
+
+        // Closing the reading side discards the data and breaks the channel for the writer
+        @Override
+        public void close() {
+            closeReader();
+        }
+    }
+
+    private final class Sink extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (readerClosed) {
+                throw new BrokenPipeException();
+            }
+            while (length > 0) {
+                Batch batch = writableBatch(1);
+                int written = Math.min(length, batch.data.length - batch.size);
+                System.arraycopy(bytes, offset, batch.data, batch.size, written);
+                batch.size += written;
+                split(batch);
+                offset += written;
+                length -= written;
+                if (batch.count == 0 && batch.size == batch.data.length && batch.size >= windowSize) {
+                    publishPart();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            LineChannel.this.flush();
+        }
+
+        // Closing the writing side is the end of the stream for the reader
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    }
+
+    // Waits for the condition, converting an interrupt into InterruptedIOException
+    private static void await(Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipe wait interrupted");
+        }
+    }
+}
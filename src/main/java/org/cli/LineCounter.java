@@ -0,0 +1,45 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// LineCounter aggregates how many times every distinct line occurs.
+// Lines are passed as byte slices, so implementations never decode them into Strings.
+interface LineCounter {
+
+    // Count one more occurrence of the line stored in bytes[offset, offset + length)
+    void add(byte[] bytes, int offset, int length);
+
+    // Number of distinct lines seen so far
+    long distinct();
+
+    /**
+     * Writes the most frequent lines in the `uniq -c` format, the most frequent first.
+     * Lines with the same count keep the order of their first occurrence.
+     *
+     * @param output destination stream
+     * @param limit  maximum number of lines to write, 0 to write all of them
+     */
+    void writeTop(OutputStream output, int limit) throws IOException;
+
+    // 64-bit hash of a byte slice: FNV-1a with the murmur3 finalizer to spread the bits
+    static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // Write one line of the result: right aligned count, space and the line itself
+    static void writeEntry(OutputStream output, long count, byte[] bytes, int offset, int length) throws IOException {
+        output.write(String.format("%7d ", count).getBytes());
+        output.write(bytes, offset, length);
+        output.write('\n');
+    }
+}
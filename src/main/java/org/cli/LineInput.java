@@ -0,0 +1,220 @@
+package org.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// LineInput gives the input lines to a line-oriented builtin.
+// Lines are split as bytes: by the previous stage when it is a builtin connected by a LineChannel,
+// by ByteLineReader otherwise. An ASCII line is read through a CharSequence view of its bytes,
+// without decoding, so the builtins don't allocate a String per line. Other lines are decoded
+// one by one with the same result as decoding the whole stream.
+// If the default charset may encode ASCII characters differently, the stream is decoded by
+// BufferedReader as the builtins always did.
+// Windowed input (for wc and grep) splits the lines longer than the window of ByteLineReader into
+// parts, the builtins handle such lines part by part. A channel hands long lines over in parts too,
+// they are joined for the other builtins. Lines of BufferedReader are always whole.
+final class LineInput {
+
+    // True if ASCII characters are single bytes with the same values in the default charset
+    static final boolean ASCII_COMPATIBLE = isAsciiCompatible(Charset.defaultCharset());
+
+    private final BufferedReader reader;
+    private final ByteLines lines;
+    private final ByteCharSequence ascii = new ByteCharSequence();
+    // current line decoded, for channel lines it is created only on request
+    private String line;
+    private boolean isAscii;
+    // the current line is a part of a long line that continues the previous part
+    private boolean continued;
+
+    private LineInput(BufferedReader reader, ByteLines lines) {
+        this.reader = reader;
+        this.lines = lines;
+    }
+
+    /**
+     * Lines of the input of the command: the line channel if the input is the stdin of the command
+     * connected to a channel, the decoded stream otherwise.
+     */
+    static LineInput of(Command command, InputStream input) {
+        if (input == command.getStdin() && command.getLineInput() != null) {
+            return new LineInput(null, command.getLineInput().reader());
+        }
+        return of(input);
+    }
+
+    // Lines of the stream
+    static LineInput of(InputStream input) {
+        if (ASCII_COMPATIBLE) {
+            return new LineInput(null, new ByteLineReader(input));
+        }
+        return new LineInput(new BufferedReader(new InputStreamReader(input)), null);
+    }
+
+    // Lines already split as bytes, like the lines of a LineChannel
+    static LineInput of(ByteLines lines) {
+        return new LineInput(null, lines);
+    }
+
+    /**
+     * Lines of the input of the command like {@link #of(Command, InputStream)}, a stream line longer
+     * than the window is split into parts.
+     */
+    static LineInput windowed(Command command, InputStream input) {
+        if (input == command.getStdin() && command.getLineInput() != null) {
+            return new LineInput(null, command.getLineInput().parts());
+        }
+        return windowed(input, ByteLineReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    // Lines of the stream, split into parts of the window size
+    static LineInput windowed(InputStream input, int windowSize) {
+        if (ASCII_COMPATIBLE) {
+            return new LineInput(null, new ByteLineReader(input, ByteLineReader.DEFAULT_BUFFER_SIZE, windowSize));
+        }
+        return of(input);
+    }
+
+    /**
+     * Raw lines of the input of the command for builtins working with bytes.
+     */
+    static ByteLines bytes(Command command, InputStream input) {
+        if (input == command.getStdin() && command.getLineInput() != null) {
+            return command.getLineInput().reader();
+        }
+        return new ByteLineReader(input);
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return true if there is a line, false at the end of the input
+     */
+    boolean next() throws IOException {
+        if (reader != null) {
+            line = reader.readLine();
+            return line != null;
+        }
+        line = null;
+        continued = lines.isPartial();
+        if (!lines.next()) {
+            return false;
+        }
+        isAscii = isAscii(lines.buffer(), lines.start(), lines.length());
+        if (isAscii) {
+            ascii.set(lines.buffer(), lines.start(), lines.length());
+        }
+        return true;
+    }
+
+    // The current line for matching, valid until the next call to next()
+    CharSequence chars() {
+        return reader == null && isAscii ? ascii : string();
+    }
+
+    // The current line as a String
+    String string() {
+        if (line == null) {
+            line = isAscii ?
+                    new String(lines.buffer(), lines.start(), lines.length(), StandardCharsets.ISO_8859_1) :
+                    new String(lines.buffer(), lines.start(), lines.length());
+        }
+        return line;
+    }
+
+    // Length of the current line encoded by the default charset, the way the builtins count bytes
+    int byteLength() {
+        return reader == null && isAscii ? lines.length() : string().getBytes().length;
+    }
+
+    // True if the current line is a byte slice that is the same after decoding and encoding
+    boolean hasAsciiBytes() {
+        return reader == null && isAscii;
+    }
+
+    // True if the current line is a part of a long line and more parts follow
+    boolean isPartial() {
+        return reader == null && lines.isPartial();
+    }
+
+    // True if the current line is a part of a long line after its first part
+    boolean isContinued() {
+        return continued;
+    }
+
+    byte[] buffer() {
+        return lines.buffer();
+    }
+
+    int start() {
+        return lines.start();
+    }
+
+    int length() {
+        return lines.length();
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isAscii(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // CharSequence over ASCII bytes: every byte is a char
+    private static final class ByteCharSequence implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        ByteCharSequence() {
+        }
+
+        ByteCharSequence(byte[] bytes, int offset, int length) {
+            set(bytes, offset, length);
+        }
+
+        void set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) bytes[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new ByteCharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
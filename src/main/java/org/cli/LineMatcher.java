@@ -0,0 +1,53 @@
+package org.cli;
+
+import java.util.regex.Pattern;
+
+/**
+ * Finds the pattern of grep in lines.
+ * Patterns are compiled into a {@link ByteAutomaton}, which searches the bytes of a line in
+ * linear time whatever the pattern is. Patterns with features the automaton doesn't have
+ * (backreferences, lookaround, possessive quantifiers, inline flags...) are searched by
+ * java.util.regex. A matcher keeps state between searches, it is used by one thread.
+ */
+interface LineMatcher {
+
+    /**
+     * Returns the matcher of the pattern, an automaton if the pattern allows it.
+     */
+    static LineMatcher compile(Pattern pattern) {
+        ByteAutomaton automaton = ByteAutomaton.compile(pattern);
+        return automaton != null ? automaton : new RegexLineMatcher(pattern);
+    }
+
+    /**
+     * Returns true if the pattern is found in the line.
+     */
+    boolean find(CharSequence line);
+
+    /**
+     * Returns true if the pattern is found in the current line of the input.
+     */
+    boolean find(LineInput line);
+
+    /**
+     * Returns a search of lines given in parts, for the lines longer than the window of the input.
+     */
+    Parts parts();
+
+    /**
+     * A search of one line given part by part.
+     */
+    interface Parts {
+        /**
+         * Starts a new line.
+         */
+        void start();
+
+        /**
+         * Searches the line up to the end of the part, the line ends with a part that isn't partial.
+         *
+         * @return true if the pattern is found in the line so far
+         */
+        boolean find(LineInput part);
+    }
+}
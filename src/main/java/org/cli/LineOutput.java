@@ -0,0 +1,116 @@
+package org.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+// LineOutput writes the output lines of a line-oriented builtin, every line followed by '\n'.
+// When the next stage is a builtin connected by a LineChannel, the lines go to it as byte slices,
+// otherwise they are written to the stream. An ASCII input line is passed on as the same bytes
+// without decoding and encoding it. If the default charset may encode ASCII characters
+// differently, the lines are encoded by a BufferedWriter as the builtins always did.
+final class LineOutput {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final LineChannel channel;
+    private final OutputStream bytes;
+    private final Writer writer;
+
+    private LineOutput(LineChannel channel, OutputStream bytes, Writer writer) {
+        this.channel = channel;
+        this.bytes = bytes;
+        this.writer = writer;
+    }
+
+    /**
+     * Lines to the output of the command: the line channel if the output is the stdout of the command
+     * connected to a channel, the stream otherwise.
+     */
+    static LineOutput of(Command command, OutputStream output) {
+        if (output == command.getStdout() && command.getLineOutput() != null) {
+            return new LineOutput(command.getLineOutput(), null, null);
+        }
+        if (LineInput.ASCII_COMPATIBLE) {
+            return new LineOutput(null, new BufferedOutputStream(output), null);
+        }
+        return new LineOutput(null, null, new BufferedWriter(new OutputStreamWriter(output)));
+    }
+
+    // Writes the current line of the input
+    void write(LineInput input) throws IOException {
+        if (writer == null && input.hasAsciiBytes()) {
+            writeBytes(input.buffer(), input.start(), input.length());
+        } else {
+            write(input.string());
+        }
+    }
+
+    // Writes at most maxBytes bytes of the current line of the input, cut between characters
+    void write(LineInput input, long maxBytes) throws IOException {
+        if (maxBytes == Long.MAX_VALUE || input.byteLength() <= maxBytes) {
+            write(input);
+            return;
+        }
+        if (input.hasAsciiBytes()) {
+            writePart(input.buffer(), input.start(), (int) maxBytes);
+        } else {
+            byte[] encoded = input.string().getBytes();
+            writePart(encoded, 0, ByteLineReader.characterBoundary(encoded, 0, (int) maxBytes));
+        }
+        endLine();
+    }
+
+    // Writes a part of a line written in parts, without the line terminator
+    void writePart(byte[] line, int offset, int length) throws IOException {
+        if (channel != null) {
+            // the channel splits the stream view into lines, the line stays open until endLine()
+            channel.sink().write(line, offset, length);
+        } else if (bytes != null) {
+            bytes.write(line, offset, length);
+        } else {
+            writer.append(new String(line, offset, length));
+        }
+    }
+
+    // Ends the line written in parts
+    void endLine() throws IOException {
+        if (writer != null) {
+            writer.append('\n');
+        } else {
+            writeBytes(EMPTY, 0, 0);
+        }
+    }
+
+    void write(String line) throws IOException {
+        if (writer != null) {
+            writer.append(line).append('\n');
+        } else {
+            byte[] encoded = line.getBytes();
+            writeBytes(encoded, 0, encoded.length);
+        }
+    }
+
+    // Flush the output to ensure data is written
+    void flush() throws IOException {
+        if (channel != null) {
+            channel.flush();
+        } else if (bytes != null) {
+            bytes.flush();
+        } else {
+            writer.flush();
+        }
+    }
+
+    private void writeBytes(byte[] line, int offset, int length) throws IOException {
+        if (channel != null) {
+            channel.writeLine(line, offset, length);
+        } else {
+            bytes.write(line, offset, length);
+            bytes.write('\n');
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// LongLineMatcher is grep for the lines longer than the window of the input, which come in parts.
+// The parts are searched by the LineMatcher one after another: an automaton carries its state
+// from part to part, java.util.regex searches every part with the end of the previous parts.
+// The parts of a line that may still match are spilled to a temporary file, not kept in memory;
+// they are printed from it only when a later part matches. A line printed anyway (context of a
+// match) and the rest of a matched line go to the output directly. At most maxLineBytes of a
+// line are printed.
+final class LongLineMatcher {
+
+    private final LineMatcher.Parts search;
+    private final long maxLineBytes;
+    private final LineOutput output;
+    private FileChannel spill;
+    private Path spillFile;
+
+    // state of the current line
+    private boolean matched;
+    private boolean printing;
+    private long written;
+    private long spilled;
+
+    LongLineMatcher(LineMatcher matcher, long maxLineBytes, LineOutput output) {
+        this.search = matcher.parts();
+        this.maxLineBytes = maxLineBytes;
+        this.output = output;
+    }
+
+    /**
+     * Starts a new long line.
+     *
+     * @param print true if the line is printed whether it matches or not
+     */
+    void start(boolean print) {
+        matched = false;
+        printing = print;
+        written = 0;
+        spilled = 0;
+        search.start();
+    }
+
+    /**
+     * Searches and prints or spills the current part of the line.
+     */
+    void add(LineInput part) throws IOException {
+        if (!matched) {
+            matched = search.find(part);
+            if (matched && !printing) {
+                printing = true;
+                printSpilled();
+            }
+        }
+        if (printing) {
+            print(part);
+        } else {
+            spill(part);
+        }
+    }
+
+    /**
+     * Ends the line: the line terminator is printed if the line was printed.
+     *
+     * @return true if the line matched
+     */
+    boolean finish() throws IOException {
+        if (printing) {
+            output.endLine();
+        }
+        return matched;
+    }
+
+    /**
+     * Deletes the spill file.
+     */
+    void close() throws IOException {
+        if (spill != null) {
+            spill.close();
+            Files.deleteIfExists(spillFile);
+            spill = null;
+        }
+    }
+
+    // Parts are printed as the bytes of the input
+    private void print(LineInput part) throws IOException {
+        int length = (int) Math.min(part.length(), maxLineBytes - written);
+        if (length <= 0) {
+            return;
+        }
+        int end = part.start() + length;
+        if (length < part.length()) {
+            end = ByteLineReader.characterBoundary(part.buffer(), part.start(), end);
+        }
+        output.writePart(part.buffer(), part.start(), end - part.start());
+        written += length;
+    }
+
+    private void spill(LineInput part) throws IOException {
+        long length = Math.min(part.length(), maxLineBytes - spilled);
+        if (length <= 0) {
+            return;
+        }
+        if (spill == null) {
+            spillFile = Files.createTempFile("cli-grep", ".line");
+            spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(part.buffer(), part.start(), (int) length);
+        while (buffer.hasRemaining()) {
+            spill.write(buffer, spilled + buffer.position() - part.start());
+        }
+        spilled += length;
+    }
+
+    // Prints the parts spilled before the match
+    private void printSpilled() throws IOException {
+        byte[] chunk = BufferPool.shared().borrow((int) Math.min(spilled, BufferPool.LARGE));
+        try {
+            copySpilled(chunk);
+        } finally {
+            BufferPool.shared().release(chunk);
+        }
+        written = spilled;
+    }
+
+    private void copySpilled(byte[] chunk) throws IOException {
+        long position = 0;
+        while (position < spilled) {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, (int) Math.min(chunk.length, spilled - position));
+            while (buffer.hasRemaining()) {
+                if (spill.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("spill file is truncated");
+                }
+            }
+            int length = buffer.position();
+            // the cut of the line at maxLineBytes is moved back to a character border
+            int end = position + length == maxLineBytes ? ByteLineReader.characterBoundary(chunk, 0, length) : length;
+            output.writePart(chunk, 0, end);
+            position += length;
+        }
+    }
+}
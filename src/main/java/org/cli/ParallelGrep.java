@@ -0,0 +1,511 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// ParallelGrep searches the stdin of grep on several cores. A reader thread cuts the input into
+// blocks of whole lines, workers split and search the blocks concurrently, and the thread of grep
+// takes the blocks back in input order: it reads them as a LineInput and prints the lines as grep
+// always does, with the results of the workers for the matches.
+// The number of blocks is fixed: the reader waits for a free block while all of them are searched
+// or printed, so the memory doesn't depend on the length of the input or on the speed of the
+// stages around grep. A block is handed over as soon as the data read so far ends a line, so lines
+// flow through grep as they arrive.
+// A line that doesn't fit in a block grows the block up to the window, longer lines come in parts
+// like from ByteLineReader. Parts are not searched by the workers but by the thread of grep.
+// The bytes of the blocks are borrowed from the BufferPool and returned when grep is closed.
+//
+// The number of workers is the number of cores or the system property cli.grep.threads; grep
+// searches on its own thread with fewer than 2.
+final class ParallelGrep implements AutoCloseable {
+
+    // Initial size of a block
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final int blockSize;
+    private final int windowSize;
+    private final ExecutorService workers;
+    private final Thread reader;
+    // blocks not in use, and the results of the blocks in input order
+    private final int blocks;
+    private final BlockingQueue<Block> free;
+    private final BlockingQueue<Future<Block>> ordered;
+    // blocks created so far by the reader, they are created when they are first needed
+    private int allocated;
+    // one matcher per worker, a matcher keeps state between searches
+    private final ThreadLocal<LineMatcher> matchers;
+    // matcher of the long lines, on the thread of grep
+    private final LineMatcher longLines;
+
+    private final OrderedLines lines = new OrderedLines();
+    private final LineInput lineInput = LineInput.of(lines);
+    // grep stopped reading, the blocks given back from now on return their bytes to the pool
+    private volatile boolean closed;
+
+    // Lines read at once: line i is data[ends[i - 1], contentEnds[i]), its terminator ends at ends[i]
+    private static final class Block {
+        byte[] data;
+        // bytes read into the block at most, the borrowed data may be longer
+        int capacity;
+        int size;
+        int[] ends = new int[64];
+        int[] contentEnds = new int[64];
+        boolean[] matched = new boolean[64];
+        int count;
+        // the block is a part of a line longer than the window, more parts follow
+        boolean partial;
+        // the first line of the block is the last part of a long line
+        boolean continued;
+
+        Block(int capacity) {
+            this.capacity = capacity;
+            this.data = BufferPool.shared().borrow(capacity);
+        }
+
+        // Grows the block to the capacity, the data read so far is kept
+        void grow(int newCapacity) {
+            capacity = newCapacity;
+            if (data.length < capacity) {
+                byte[] grown = BufferPool.shared().borrow(capacity);
+                System.arraycopy(data, 0, grown, 0, size);
+                BufferPool.shared().release(data);
+                data = grown;
+            }
+        }
+
+        // Returns the data to the pool, the block is not used anymore
+        void release() {
+            BufferPool.shared().release(data);
+            data = null;
+        }
+
+        void addLine(int contentEnd, int end) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count * 2);
+                contentEnds = Arrays.copyOf(contentEnds, count * 2);
+                matched = Arrays.copyOf(matched, count * 2);
+            }
+            contentEnds[count] = contentEnd;
+            ends[count] = end;
+            count++;
+        }
+
+        int lineStart(int line) {
+            return line == 0 ? 0 : ends[line - 1];
+        }
+
+        void reset() {
+            size = count = 0;
+            partial = continued = false;
+        }
+    }
+
+    private ParallelGrep(InputStream input, Pattern pattern, int threads, int blockSize, int windowSize) {
+        this.input = input;
+        this.blockSize = blockSize;
+        this.windowSize = Math.max(windowSize, blockSize);
+        // one block being filled, one being printed, the others searched or waiting to be printed
+        this.blocks = threads * 2 + 2;
+        this.free = new ArrayBlockingQueue<>(blocks);
+        this.ordered = new ArrayBlockingQueue<>(blocks);
+        this.matchers = ThreadLocal.withInitial(() -> LineMatcher.compile(pattern));
+        this.longLines = LineMatcher.compile(pattern);
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cli-grep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reader = new Thread(this::read, "cli-grep-reader");
+        this.reader.setDaemon(true);
+    }
+
+    /**
+     * Returns the number of workers searching the input of grep.
+     */
+    static int threads() {
+        return Integer.getInteger("cli.grep.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns true if grep searches the input on several threads: the command is PARALLELIZABLE,
+     * the input is its stdin but neither the console nor a line channel, whose lines are already
+     * split, there are 2 workers or more, and lines are split as bytes.
+     */
+    static boolean isEnabled(Command command, InputStream input) {
+        return BuiltinRegistry.traits(command.getName()).contains(Builtin.Trait.PARALLELIZABLE)
+                && input == command.getStdin() && input != System.in && command.getLineInput() == null
+                && threads() > 1 && LineInput.ASCII_COMPATIBLE;
+    }
+
+    /**
+     * Starts reading and searching the input.
+     *
+     * @param threads    number of workers
+     * @param blockSize  initial size of a block
+     * @param windowSize size of the parts of longer lines
+     */
+    static ParallelGrep start(InputStream input, Pattern pattern, int threads, int blockSize, int windowSize) {
+        ParallelGrep grep = new ParallelGrep(input, pattern, threads, blockSize, windowSize);
+        grep.reader.start();
+        return grep;
+    }
+
+    /**
+     * Lines of the input in order, like {@link LineInput#windowed(InputStream, int)}.
+     */
+    LineInput lines() {
+        return lineInput;
+    }
+
+    /**
+     * Matcher of the lines of {@link #lines()}: the result of the workers for the current line,
+     * long lines given in parts are searched on the calling thread.
+     */
+    LineMatcher matcher() {
+        return new LineMatcher() {
+            @Override
+            public boolean find(CharSequence line) {
+                return longLines.find(line);
+            }
+
+            @Override
+            public boolean find(LineInput line) {
+                return lines.block.matched[lines.line];
+            }
+
+            @Override
+            public Parts parts() {
+                return longLines.parts();
+            }
+        };
+    }
+
+    /**
+     * Stops the reader and the workers and returns the blocks to the pool. The input is closed by
+     * the caller. A block the reader still holds is returned by the reader when it stops.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        // the searches already submitted finish, then no worker uses a block
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (lines.block != null) {
+            lines.block.release();
+            lines.block = null;
+        }
+        for (Block block = free.poll(); block != null; block = free.poll()) {
+            block.release();
+        }
+        for (Future<Block> searched = ordered.poll(); searched != null; searched = ordered.poll()) {
+            try {
+                Block block = searched.get();
+                if (block != null) {
+                    block.release();
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                // a failed read has no block
+            }
+        }
+    }
+
+    // The reader thread: cuts the input into blocks ending with a line terminator
+    private void read() {
+        // blocks held by the reader, they are given back if it stops before handing them over
+        Block block = null;
+        Block next = null;
+        try {
+            block = freeBlock();
+            boolean continued = false;
+            // the last block ended with '\r', a '\n' right after it belongs to that line
+            boolean skipLineFeed = false;
+            while (true) {
+                int read = input.read(block.data, block.size, block.capacity - block.size);
+                if (read > 0 && skipLineFeed) {
+                    skipLineFeed = false;
+                    if (block.data[0] == '\n') {
+                        System.arraycopy(block.data, 1, block.data, 0, read - 1);
+                        read--;
+                    }
+                }
+                if (read < 0) {
+                    // the last line without terminator, or the end of a long line
+                    Block last = block;
+                    block = null;
+                    if (last.size > 0 || continued) {
+                        last.continued = continued;
+                        submit(last);
+                    } else {
+                        giveBack(last);
+                    }
+                    break;
+                }
+                block.size += read;
+                // more data is waiting: fill the block before handing it over
+                if (block.size < block.capacity && input.available() > 0) {
+                    continue;
+                }
+
+                int cut = lastLineEnd(block);
+                if (cut == 0 && block.size == block.capacity) {
+                    if (block.capacity < windowSize) {
+                        block.grow(Math.min(block.capacity * 2, windowSize));
+                        continue;
+                    }
+                    // the window is full of one line: hand over its part without cutting a character
+                    cut = ByteLineReader.characterBoundary(block.data, 0, block.size);
+                    block.partial = true;
+                }
+                if (cut > 0) {
+                    next = freeBlock();
+                    int rest = block.size - cut;
+                    if (next.capacity < rest + 1) {
+                        next.grow(block.capacity);
+                    }
+                    System.arraycopy(block.data, cut, next.data, 0, rest);
+                    next.size = rest;
+                    skipLineFeed = rest == 0 && !block.partial && block.data[cut - 1] == '\r';
+                    block.size = cut;
+                    block.continued = continued;
+                    continued = block.partial;
+                    // a block handed over belongs to the workers and grep even if submit fails
+                    Block searched = block;
+                    block = next;
+                    next = null;
+                    submit(searched);
+                }
+            }
+            ordered.put(CompletableFuture.completedFuture(null));
+        } catch (IOException e) {
+            try {
+                ordered.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException interrupted) {
+                // grep stopped reading
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // grep stopped reading
+        } finally {
+            if (block != null) {
+                giveBack(block);
+            }
+            if (next != null) {
+                giveBack(next);
+            }
+        }
+    }
+
+    // Puts the block back among the free ones, after close its data goes back to the pool
+    private void giveBack(Block block) {
+        free.add(block);
+        // close() may have taken the free blocks already
+        if (closed && free.remove(block)) {
+            block.release();
+        }
+    }
+
+    // A block to fill, a new one while there are fewer than the maximum, else one given back by grep
+    private Block freeBlock() throws InterruptedException {
+        Block block = free.poll();
+        if (block == null && allocated < blocks) {
+            allocated++;
+            return new Block(blockSize);
+        }
+        if (block == null) {
+            block = free.take();
+        }
+        block.reset();
+        return block;
+    }
+
+    // The offset after the last line terminator of the block, 0 if there is none
+    private static int lastLineEnd(Block block) {
+        for (int i = block.size - 1; i >= 0; i--) {
+            if (block.data[i] == '\n' || block.data[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // Hands the block over to the workers, its result is printed in input order
+    private void submit(Block block) throws InterruptedException {
+        Future<Block> searched;
+        try {
+            searched = workers.submit(() -> {
+                search(block);
+                return block;
+            });
+        } catch (RejectedExecutionException e) {
+            // grep stopped reading, nobody searches the block
+            giveBack(block);
+            throw e;
+        }
+        try {
+            ordered.put(searched);
+        } catch (InterruptedException e) {
+            giveBackSearched(searched, block);
+            throw e;
+        }
+        // close() may have taken the searched blocks already
+        if (closed && ordered.remove(searched)) {
+            giveBackSearched(searched, block);
+        }
+    }
+
+    // Gives the block back once the worker is done with it
+    private void giveBackSearched(Future<Block> searched, Block block) {
+        try {
+            searched.get();
+        } catch (ExecutionException e) {
+            // the worker is done with the block all the same
+        } catch (InterruptedException e) {
+            // the worker may still use the block, it is left to the GC
+            Thread.currentThread().interrupt();
+            return;
+        }
+        giveBack(block);
+    }
+
+    // The worker: splits the block into lines and searches them
+    private void search(Block block) throws IOException {
+        if (block.partial) {
+            block.addLine(block.size, block.size);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < block.size; i++) {
+            byte b = block.data[i];
+            if (b == '\n' || b == '\r') {
+                int end = b == '\r' && i + 1 < block.size && block.data[i + 1] == '\n' ? i + 2 : i + 1;
+                block.addLine(i, end);
+                i = end - 1;
+                start = end;
+            }
+        }
+        if (start < block.size || block.continued && block.count == 0) {
+            block.addLine(block.size, block.size);
+        }
+
+        LineMatcher matcher = matchers.get();
+        BlockLines blockLines = new BlockLines(block);
+        LineInput input = LineInput.of(blockLines);
+        while (input.next()) {
+            // the end of a long line is searched with its other parts
+            block.matched[blockLines.line] = !(blockLines.line == 0 && block.continued) && matcher.find(input);
+        }
+    }
+
+    // Lines of one block
+    private static final class BlockLines implements ByteLines {
+        private final Block block;
+        private int line = -1;
+
+        BlockLines(Block block) {
+            this.block = block;
+        }
+
+        @Override
+        public boolean next() {
+            return ++line < block.count;
+        }
+
+        @Override
+        public byte[] buffer() {
+            return block.data;
+        }
+
+        @Override
+        public int start() {
+            return block.lineStart(line);
+        }
+
+        @Override
+        public int length() {
+            return block.contentEnds[line] - start();
+        }
+    }
+
+    // Lines of the blocks in input order, on the thread of grep
+    private final class OrderedLines implements ByteLines {
+        private Block block;
+        private int line;
+        private boolean finished;
+
+        @Override
+        public boolean next() throws IOException {
+            while (block == null || line + 1 >= block.count) {
+                if (block != null) {
+                    giveBack(block);
+                    block = null;
+                }
+                if (finished) {
+                    return false;
+                }
+                block = take();
+                if (block == null) {
+                    finished = true;
+                    return false;
+                }
+                line = -1;
+            }
+            line++;
+            return true;
+        }
+
+        // The next block searched, null at the end of the input
+        private Block take() throws IOException {
+            try {
+                return ordered.take().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted");
+            }
+        }
+
+        @Override
+        public byte[] buffer() {
+            return block.data;
+        }
+
+        @Override
+        public int start() {
+            return block.lineStart(line);
+        }
+
+        @Override
+        public int length() {
+            return block.contentEnds[line] - start();
+        }
+
+        @Override
+        public boolean isPartial() {
+            return block != null && block.partial;
+        }
+    }
+}
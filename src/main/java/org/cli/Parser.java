@@ -1,40 +1,98 @@
 package org.cli;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 // Parser provide public static function parse
 public class Parser {
 
+    // Operators of input (<), output (>, >>) and error (2>) redirection
+    private static final Set<String> REDIRECT_OPERATORS = Set.of("<", ">", ">>", "2>");
+
+    // Regexes are compiled once, when the parser is used for the first time, not on every call
+    // Matches not closed quotes
+    private static final Pattern NOT_CLOSED_QUOTES = Pattern.compile(
+            "([^']*'([^']*('[^']*')*)*)|((\\\\\"|[^\"])*\"((\\\\\"|[^\"\\\\])*(\"(\\\\\"|[^\"])*\")*)*)");
+    // Matches variables like $VAR (but not inside single quotes)
+    private static final Pattern VARIABLE = Pattern.compile("('[^']*')|(\\$([^$\"']+))");
+    // Matches "VAR=value" format
+    private static final Pattern ASSIGNMENT = Pattern.compile("([^=\"']+)=(.*)");
+    // Matches single and double quoted parts of a token
+    private static final Pattern QUOTES = Pattern.compile("'([^']*)'|\"((?:\\\\.|[^\"])*?)\"");
+    // Tokenization regex:
+    // - Matches pipes (|) and redirection operators separately
+    // - Matches sequences of characters that include quotes
+    // - Matches other standard tokens
+    private static final Pattern TOKEN = Pattern.compile(
+            "2>|>>|[|<>]|([^|<>\\s\"']*(\"((?:\\\\.|[^\"])*?)\"|'([^']*)')[^|<>\\s\"']*)+|[^|<>\\s\"']+");
+
+    // Command substitutions are replaced by START index END before the tokenization,
+    // private use characters are never typed, and they are parts of a word for the tokenizer
+    private static final char SUBSTITUTION_START = '\uE000';
+    private static final char SUBSTITUTION_END = '\uE001';
+    // Limit of the output of one command substitution (16 MB by default), set with cli.substitution.limit
+    private static final long DEFAULT_SUBSTITUTION_LIMIT = 16L << 20;
+
+    // Output of a command substitution, split into words unless it is inside double quotes
+    private record Substitution(String output, boolean quoted) {
+    }
+
     /**
      * Parses the input command line string into a list of commands.
-     * Supports environment variable substitution, quote handling, and pipelines (|).
+     * Supports environment variable substitution, quote handling, pipelines (|)
+     * and redirections (<, >, >>, 2>).
      *
      * @param inputLine the raw input string from the user
      * @param env       the environment containing variable mappings
      * @return          a list of parsed Command objects
      */
     public static List<Command> parse(String inputLine, Environment env) {
+        return parse(inputLine, env, System.err);
+    }
+
+    /**
+     * Parses the input command line string into a list of commands, like {@link #parse(String, Environment)},
+     * and reports parser errors to the given stream.
+     *
+     * @param inputLine the raw input string from the user
+     * @param env       the environment containing variable mappings
+     * @param errors    destination of parser error messages
+     * @return          a list of parsed Command objects
+     */
+    public static List<Command> parse(String inputLine, Environment env, PrintStream errors) {
         List<Command> commands = new ArrayList<>();
         if (inputLine == null || inputLine.trim().isEmpty()) {
-            System.err.println("Parser error: Input cannot be empty or null.");
+            errors.println("Parser error: Input cannot be empty or null.");
             return new ArrayList<>(); // Return empty list for empty input
         }
 
         // Matches not closed quotes
-        String notClosedQuotes = "([^']*'([^']*('[^']*')*)*)|((\\\\\"|[^\"])*\"((\\\\\"|[^\"\\\\])*(\"(\\\\\"|[^\"])*\")*)*)";
-        Matcher matchNotClosed = Pattern.compile(notClosedQuotes).matcher(inputLine);
+        Matcher matchNotClosed = NOT_CLOSED_QUOTES.matcher(inputLine);
         if (matchNotClosed.matches()) {
-            System.err.println("Parser error: Unclosed quotes.");
+            errors.println("Parser error: Unclosed quotes.");
             return new ArrayList<>(); // Return empty list for empty input
         }
 
-        List<String> tokens = tokenize(inputLine);  // Tokenize the input line
+        // Run the command substitutions $(...) and `...` in this JVM, their output replaces them
+        List<Substitution> substitutions = new ArrayList<>();
+        String line = substituteCommands(inputLine, env, errors, substitutions);
+        if (line == null) {
+            return new ArrayList<>();
+        }
+
+        List<String> tokens = tokenize(line);  // Tokenize the input line
         // If it's a single token, and it's a variable assignment, handle it separately
 
-        if (tokens.size() == 1 && setVarIfNeed(tokens.getFirst(), env)) {
+        if (tokens.size() == 1 && setVarIfNeed(tokens.getFirst(), env, substitutions, errors)) {
             return new ArrayList<>();
         }
 
@@ -47,12 +105,30 @@ public class Parser {
         }
 
         List<String> singleCommand = new ArrayList<>();
+        // Redirections of the current command: operator followed by the file name
+        List<String> redirects = new ArrayList<>();
         // Iterate through tokens and process commands
-        for (String token : tokensAfterVars) {
+        for (int i = 0; i < tokensAfterVars.size(); i++) {
+            String token = tokensAfterVars.get(i);
             if (token.equals("|")) {
                 // If we encounter a pipeline "|", create a new command and add it to the list
-                commands.add(new Command(singleCommand));
+                commands.add(createCommand(singleCommand, redirects, env));
                 singleCommand.clear();
+                redirects.clear();
+            } else if (REDIRECT_OPERATORS.contains(token)) {
+                // Redirection operator must be followed by a file name
+                if (i + 1 == tokensAfterVars.size() || isOperator(tokensAfterVars.get(i + 1))) {
+                    errors.println("Parser error: Missing file name after " + token + ".");
+                    return new ArrayList<>();
+                }
+                redirects.add(token);
+                redirects.add(insertOutputs(evalQuotes(tokensAfterVars.get(++i)), substitutions));
+            } else if (token.indexOf(SUBSTITUTION_START) >= 0) {
+                // Output of command substitutions, split into words outside double quotes
+                singleCommand.addAll(splitOutputs(evalQuotes(token), substitutions));
+            } else if (Glob.isPattern(token)) {
+                // Unquoted wildcards are expanded into the names of the matching files
+                singleCommand.addAll(Glob.expand(token, env.getDirectory()));
             } else {
                 // Handle quotes (escaping rules for weak and strong quotes)
                 singleCommand.add(evalQuotes(token));
@@ -61,16 +137,38 @@ public class Parser {
 
         // Add the final command (if any)
         if (!singleCommand.isEmpty()) {
-            commands.add(new Command(singleCommand));
+            commands.add(createCommand(singleCommand, redirects, env));
         }
         return commands;
     }
 
+    // Creates a command in the working directory of the environment and applies its redirections
+    // (pairs of operator and file name)
+    private static Command createCommand(List<String> tokens, List<String> redirects, Environment env) {
+        Command command = new Command(tokens);
+        command.setDirectory(env.getDirectory());
+        for (int i = 0; i < redirects.size(); i += 2) {
+            Path file = command.resolve(redirects.get(i + 1));
+            switch (redirects.get(i)) {
+                case "<" -> command.redirectInput(file);
+                case ">" -> command.redirectOutput(file, false);
+                case ">>" -> command.redirectOutput(file, true);
+                case "2>" -> command.redirectError(file);
+                default -> throw new IllegalArgumentException("Unknown redirection " + redirects.get(i));
+            }
+        }
+        return command;
+    }
+
+    // Checks if a token is a pipe or a redirection operator
+    private static boolean isOperator(String token) {
+        return token.equals("|") || REDIRECT_OPERATORS.contains(token);
+    }
+
     // Replaces occurrences of environment variables in the token.
     private static String findVarsAndReplace(String token, Environment env) {
         // Matches variables like $VAR
-        String setVarRegex = "('[^']*')|(\\$([^$\"']+))";
-        Matcher matcher = Pattern.compile(setVarRegex).matcher(token);
+        Matcher matcher = VARIABLE.matcher(token);
         return matcher.replaceAll(match -> {
             String matchGroup3 = match.group(3);
             if (matchGroup3 != null) {
@@ -81,33 +179,213 @@ public class Parser {
     }
 
     // Checks if a token is a variable assignment (e.g., VAR=value) and sets it in the environment.
-    private static boolean setVarIfNeed(String token, Environment env) {
-        String setVarRegex = "([^=\"']+)=(.*)";  // Matches "VAR=value" format
-        Matcher matcher = Pattern.compile(setVarRegex).matcher(token);
+    // The value can have outputs of command substitutions, an empty value is reported to errors
+    private static boolean setVarIfNeed(String token, Environment env, List<Substitution> substitutions,
+                                        PrintStream errors) {
+        Matcher matcher = ASSIGNMENT.matcher(token);  // Matches "VAR=value" format
         if (matcher.matches()) {
             String varName = matcher.group(1);
             String varValue = matcher.group(2);
 
             if (varValue.isEmpty()) {
-                System.err.println("Parser error: Variable value cannot be empty.");
+                errors.println("Parser error: Variable value cannot be empty.");
                 return false;
             }
 
             // Store the variable in the environment after handling quotes
-            env.setVar(varName, evalQuotes(varValue));
+            env.setVar(varName, insertOutputs(evalQuotes(varValue), substitutions));
             return true;
         }
         return false;
     }
 
+    // Replaces $(...) and `...` outside single quotes with placeholders and adds the outputs of the
+    // commands to substitutions. Returns null (after reporting the error) if a command can't be substituted
+    private static String substituteCommands(String inputLine, Environment env, PrintStream errors,
+                                             List<Substitution> substitutions) {
+        if (inputLine.indexOf('$') < 0 && inputLine.indexOf('`') < 0) {
+            return inputLine;
+        }
+        StringBuilder line = new StringBuilder(inputLine.length());
+        boolean inSingle = false;
+        boolean inDouble = false;
+        for (int i = 0; i < inputLine.length(); i++) {
+            char c = inputLine.charAt(i);
+            int end = -1;
+            int start = 0;
+            if (c == '\'' && !inDouble) {
+                inSingle = !inSingle;
+            } else if (c == '"' && !inSingle && (i == 0 || inputLine.charAt(i - 1) != '\\')) {
+                inDouble = !inDouble;
+            } else if (!inSingle && c == '$' && i + 1 < inputLine.length() && inputLine.charAt(i + 1) == '(') {
+                start = i + 2;
+                end = closingParenthesis(inputLine, start);
+            } else if (!inSingle && c == '`') {
+                start = i + 1;
+                end = inputLine.indexOf('`', start);
+            }
+            if (start == 0) {
+                line.append(c);
+                continue;
+            }
+            if (end < 0) {
+                errors.println("Parser error: Unclosed command substitution.");
+                return null;
+            }
+            String output = runSubstitution(inputLine.substring(start, end), env, errors);
+            if (output == null) {
+                return null;
+            }
+            line.append(SUBSTITUTION_START).append(substitutions.size()).append(SUBSTITUTION_END);
+            substitutions.add(new Substitution(output, inDouble));
+            i = end;
+        }
+        return line.toString();
+    }
+
+    // Index of the ')' closing $( before start, skipping nested parentheses and quotes, -1 if there is none
+    private static int closingParenthesis(String line, int start) {
+        int depth = 1;
+        for (int i = start; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\'' || c == '"') {
+                int closing = line.indexOf(c, i + 1);
+                if (closing < 0) {
+                    return -1;
+                }
+                i = closing;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Runs the pipeline in this JVM and returns its output without the trailing newlines,
+    // null if the output is over the limit. The commands read an empty input
+    private static String runSubstitution(String pipeline, Environment env, PrintStream errors) {
+        if (pipeline.isBlank()) {
+            return "";
+        }
+        // `exit` in a substitution would stop the interpreter, it is skipped like in a pipeline
+        List<Command> commands = FusedCommand.fuse(Parser.parse(pipeline, env, errors)).stream()
+                .filter(command -> !command.isExit())
+                .toList();
+        if (commands.isEmpty()) {
+            return "";
+        }
+        long limit = Long.getLong("cli.substitution.limit", DEFAULT_SUBSTITUTION_LIMIT);
+        LimitedBuffer output = new LimitedBuffer(limit);
+        for (Command command : commands) {
+            command.setStderr(errors);
+        }
+        commands.getFirst().setStdin(InputStream.nullInputStream());
+        commands.getLast().setStdout(output);
+        Pipeline.pipe(commands);
+        if (output.overflow) {
+            errors.println("Parser error: Output of $(" + pipeline + ") is larger than " + limit + " bytes.");
+            return null;
+        }
+        String text = output.toString();
+        int length = text.length();
+        while (length > 0 && text.charAt(length - 1) == '\n') {
+            length--;
+        }
+        return text.substring(0, length);
+    }
+
+    // Replaces the placeholders in the word with the outputs as they are
+    private static String insertOutputs(String word, List<Substitution> substitutions) {
+        if (word.indexOf(SUBSTITUTION_START) < 0) {
+            return word;
+        }
+        return String.join(" ", splitOutputs(word, substitutions));
+    }
+
+    // Replaces the placeholders in the word with the outputs, an output outside double quotes
+    // is split into words at whitespace, like in a shell
+    private static List<String> splitOutputs(String word, List<Substitution> substitutions) {
+        List<String> words = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        // the current word is kept even if it is empty when it has text or a quoted output
+        boolean keep = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c != SUBSTITUTION_START) {
+                current.append(c);
+                keep = true;
+                continue;
+            }
+            int end = word.indexOf(SUBSTITUTION_END, i);
+            Substitution substitution = substitutions.get(Integer.parseInt(word.substring(i + 1, end)));
+            i = end;
+            if (substitution.quoted()) {
+                current.append(substitution.output());
+                keep = true;
+                continue;
+            }
+            for (int j = 0; j < substitution.output().length(); j++) {
+                char o = substitution.output().charAt(j);
+                if (!Character.isWhitespace(o)) {
+                    current.append(o);
+                    keep = true;
+                } else if (keep) {
+                    words.add(current.toString());
+                    current.setLength(0);
+                    keep = false;
+                }
+            }
+        }
+        if (keep) {
+            words.add(current.toString());
+        }
+        return words;
+    }
+
+    // Growable buffer of the output of a substitution, the writer gets an error over the limit
+    private static final class LimitedBuffer extends OutputStream {
+        private final long limit;
+        private byte[] buffer = new byte[256];
+        private int count;
+        private boolean overflow;
+
+        LimitedBuffer(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (count + (long) len > limit) {
+                overflow = true;
+                throw new IOException("output of the command substitution is larger than " + limit + " bytes");
+            }
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(count + len, buffer.length * 2));
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new String(buffer, 0, count);
+        }
+    }
+
     /**
      * Handles quoting rules for single ('...') and double ("...") quotes.
      * - Single quotes: Treats everything literally.
      * - Double quotes: Allows escape sequences (\n, \t) but not variable substitution.
      */
     private static String evalQuotes(String token) {
-        String quoteRegex = "'([^']*)'|\"((?:\\\\.|[^\"])*?)\"";
-        Matcher matcher = Pattern.compile(quoteRegex).matcher(token);
+        Matcher matcher = QUOTES.matcher(token);
         return matcher.replaceAll(match -> {
             if (match.group(1) != null) {
                 // Inside '...' single quotes (strong quoting) - escape \ and $
@@ -122,18 +400,13 @@ public class Parser {
 
     /**
      * Tokenizes the input string into individual components.
-     * - Supports command arguments, quotes, and pipeline (`|`).
+     * - Supports command arguments, quotes, pipeline (`|`) and redirections (`<`, `>`, `>>`, `2>`).
      * - Keeps quoted substrings as single tokens.
      */
     private static List<String> tokenize(String inputLine) {
         List<String> tokens = new ArrayList<>();
 
-        // Tokenization regex:
-        // - Matches pipes (|) separately
-        // - Matches sequences of characters that include quotes
-        // - Matches other standard tokens
-        String tokenRegex = "\\||([^|\\s\"']*(\"((?:\\\\.|[^\"])*?)\"|'([^']*)')[^|\\s\"']*)+|[^|\\s\"']+";
-        Matcher matcher = Pattern.compile(tokenRegex).matcher(inputLine);
+        Matcher matcher = TOKEN.matcher(inputLine);
         while (matcher.find()) {
             tokens.add(matcher.group());
         }
@@ -1,10 +1,11 @@
 package org.cli;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 // Class for executing pipelines
 public class Pipeline {
@@ -17,8 +18,10 @@ public class Pipeline {
      *  If the command is "exit", terminates the program with status 0
      *  Otherwise executes the command normally
      * For multiple commands:
-     *  Connects stdout of each process to stdin of the next process
-     *  Executes the command normally
+     *  Connects stdout of each command to stdin of the next one with a bounded pipe,
+     *  or with a line channel when both commands are line-oriented builtins
+     *  Executes all the commands concurrently, each in its own thread
+     *  When a command finishes early, the previous commands are stopped
      *
      * @param commands      list of Command objects representing the pipeline
      * @return              exit status of the last command in the pipeline
@@ -35,63 +38,78 @@ public class Pipeline {
         }
 
         // Pipe with more than one command
-        List<Process> processes = new ArrayList<>();
-        try {
-            // Start all the processes and connect their stdin/stdout
-            Process prevProcess = null;
-            ProcessBuilder pb = new ProcessBuilder();
-
-            for (Command command : commands) {
-                // Skip exit command, do not process it
-                if (command.isExit()) {
-                    continue;
-                }
-                pb.command(command.getName());
-                pb.command().addAll(command.getArgs());
-
-                // Redirect stdin (except first command)
-                if (prevProcess != null) {
-                    pb.redirectInput(ProcessBuilder.Redirect.PIPE);
-                }
-
-                // Redirect stdout (except last command)
-                if (command != commands.getLast()) {
-                    pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
-                } else {
-                    pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-                }
-
-                // Redirect stderr
-                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        // Skip exit command, do not process it
+        List<Command> stages = commands.stream().filter(command -> !command.isExit()).toList();
+        if (stages.isEmpty()) {
+            return 0;
+        }
 
-                Process process = pb.start();
-                processes.add(process);
+        // Connect stdout of each command to stdin of the next one: line-oriented builtins exchange
+        // batches of lines, other commands get a bounded pipe
+        List<PipelineLink> pipes = new ArrayList<>();
+        boolean lineChannels = LineChannel.isEnabled();
+        for (int i = 0; i + 1 < stages.size(); i++) {
+            Command writer = stages.get(i);
+            Command reader = stages.get(i + 1);
+            if (lineChannels && isLineOriented(writer) && isLineOriented(reader)) {
+                LineChannel channel = new LineChannel();
+                writer.setStdout(channel);
+                reader.setStdin(channel);
+                pipes.add(channel);
+            } else {
+                BoundedPipe pipe = new BoundedPipe();
+                writer.setStdout(pipe.sink());
+                reader.setStdin(pipe.source());
+                pipes.add(pipe);
+            }
+        }
 
-                // Connect the stdout of the previous process to the stdin of the current process
-                if (prevProcess != null) {
-                    try (InputStream prevOut = prevProcess.getInputStream();
-                         OutputStream currIn = process.getOutputStream()) {
-                        prevOut.transferTo(currIn);
-                    } catch (IOException e) {
-                        // Skip broken pipe
-                        if (!e.getMessage().contains("Broken pipe")) {
-                            System.err.println(command.getName() + ": " + e.getMessage());
-                        }
-                    }
-                }
-                prevProcess = process;
+        // Run every command in its own thread: builtins in-process, external commands as child processes
+        ExecutorService pool = Executors.newFixedThreadPool(stages.size());
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < stages.size(); i++) {
+                Command command = stages.get(i);
+                PipelineLink input = i > 0 ? pipes.get(i - 1) : null;
+                PipelineLink output = i < pipes.size() ? pipes.get(i) : null;
+                results.add(pool.submit(() -> runStage(command, input, output)));
             }
 
             int exitCode = 0;
-            // Wait processes
-            for (Process p : processes) {
-                exitCode = p.waitFor();
+            // Wait commands
+            for (Future<Integer> result : results) {
+                exitCode = result.get();
             }
             // exit code of the last command in pipeline
             return exitCode;
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Pipeline error: " + e.getMessage());
+        } catch (InterruptedException | ExecutionException e) {
+            // commands of a session report to the stderr of the session
+            stages.getLast().getStderr().println("Pipeline error: " + e.getMessage());
             return 1;
+        } finally {
+            pool.shutdownNow();
         }
     }
-}
\ No newline at end of file
+
+    // Execute one command of the pipeline and close its pipes when it finishes.
+    // Closing the output gives the next command end of stream, closing the input
+    // tells the previous command that nobody reads its output anymore
+    private static int runStage(Command command, PipelineLink input, PipelineLink output) {
+        try {
+            return Executor.execute(command);
+        } finally {
+            if (output != null) {
+                output.closeWriter();
+            }
+            if (input != null) {
+                input.closeReader();
+            }
+        }
+    }
+
+    // Builtin running in this JVM that reads and writes text lines
+    private static boolean isLineOriented(Command command) {
+        return !(command instanceof FusedCommand)
+                && BuiltinRegistry.traits(command.getName()).contains(Builtin.Trait.LINE_ORIENTED);
+    }
+}
@@ -0,0 +1,22 @@
+package org.cli;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// PipelineLink connects two neighbouring stages of a pipeline running in the same JVM.
+// The upstream stage writes to the sink, the downstream one reads from the source.
+// Closing the reading side cancels the writer, closing the writing side is the end of the input.
+interface PipelineLink {
+
+    // Reading side of the link (stdin of the downstream stage)
+    InputStream source();
+
+    // Writing side of the link (stdout of the upstream stage)
+    OutputStream sink();
+
+    // The downstream stage is done, the upstream one gets BrokenPipeException on the next write
+    void closeReader();
+
+    // The upstream stage is done, the downstream one gets end of stream after the written data
+    void closeWriter();
+}
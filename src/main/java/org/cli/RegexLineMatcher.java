@@ -0,0 +1,78 @@
+package org.cli;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// RegexLineMatcher searches lines with java.util.regex, for the patterns ByteAutomaton can't run.
+// A line given in parts is searched part by part together with the end of the previous parts, so
+// matches crossing the border of two parts are found if they are not longer than the overlap.
+final class RegexLineMatcher implements LineMatcher {
+
+    // Characters of the previous parts searched again with the next part
+    static final int OVERLAP = 64 * 1024;
+
+    private final Pattern pattern;
+    // one matcher is reset for every line
+    private final Matcher matcher;
+
+    RegexLineMatcher(Pattern pattern) {
+        this.pattern = pattern;
+        this.matcher = pattern.matcher("");
+    }
+
+    @Override
+    public boolean find(CharSequence line) {
+        return matcher.reset(line).find();
+    }
+
+    @Override
+    public boolean find(LineInput line) {
+        return matcher.reset(line.chars()).find();
+    }
+
+    @Override
+    public Parts parts() {
+        return new OverlappingParts(pattern);
+    }
+
+    // Search of a long line keeping the end of the text searched so far
+    private static final class OverlappingParts implements Parts {
+        private final Matcher matcher;
+        // the end of the text searched so far, the last character is searched again with the next part.
+        // When the beginning of the line is dropped, one character before the overlap stays as the
+        // context of lookbehind and \b
+        private final StringBuilder text = new StringBuilder();
+        private boolean textAtLineStart;
+
+        OverlappingParts(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+            // the region is the new text, the text around it is only the context of the match
+            this.matcher.useTransparentBounds(true);
+            this.matcher.useAnchoringBounds(false);
+        }
+
+        @Override
+        public void start() {
+            text.setLength(0);
+            textAtLineStart = true;
+        }
+
+        @Override
+        public boolean find(LineInput part) {
+            boolean last = !part.isPartial();
+            int from = textAtLineStart ? 0 : 1;
+            text.append(part.chars());
+            // a part that isn't the last one keeps its last character for the next search,
+            // so $ and lookahead never see the end of a part as the end of the line
+            int to = last ? text.length() : text.length() - 1;
+            matcher.reset(text);
+            matcher.region(from, Math.max(from, to));
+            boolean found = matcher.find();
+            if (text.length() > OVERLAP + 1) {
+                text.delete(0, text.length() - OVERLAP - 1);
+                textAtLineStart = false;
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package org.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+// ResultCache memoizes the output of deterministic (PURE) builtins over files that have not changed.
+// The key is the command, its arguments and the identity (path, size, modification time, inode)
+// of every argument naming a file and of the input redirection. Only successful runs that
+// didn't read a pipe or the terminal are stored, so a stored result depends on the files only.
+// Results are replayed to any stdout, but runs writing to a line channel or a file channel are
+// not recorded, they keep their channels.
+// Entries are evicted in LRU order within a byte budget and can be persisted to a directory,
+// then they survive between sessions.
+//
+// The cache is disabled by default and is configured with system properties:
+//   cli.cache=true       enables it
+//   cli.cache.size=N     byte budget (64 MB by default), the same budget applies to the directory
+//   cli.cache.dir=DIR    directory of persisted entries (memory only if not set)
+final class ResultCache {
+
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    // Format marker of persisted entries
+    private static final int ENTRY_MAGIC = 0x434C4931;
+
+    private static volatile ResultCache instance;
+
+    private final long budget;
+    private final Path directory;
+    // LRU order: the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    // A stored result: exit code and the whole stdout
+    private record Entry(int exitCode, byte[] output) {
+    }
+
+    ResultCache(long budget, Path directory) {
+        this.budget = budget;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache configured by system properties, or null if caching is disabled.
+     */
+    static ResultCache get() {
+        if (!Boolean.getBoolean("cli.cache")) {
+            return null;
+        }
+        if (instance == null) {
+            synchronized (ResultCache.class) {
+                if (instance == null) {
+                    String directory = System.getProperty("cli.cache.dir");
+                    instance = new ResultCache(Long.getLong("cli.cache.size", DEFAULT_BUDGET),
+                            directory == null ? null : Path.of(directory));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Executes the builtin or replays its stored result.
+     *
+     * @param command the builtin command, its redirections are already opened
+     * @param builtin function running the builtin
+     * @return        exit status of the builtin
+     */
+    int execute(Command command, ToIntFunction<Command> builtin) {
+        String key = key(command);
+        if (key == null) {
+            return builtin.applyAsInt(command);
+        }
+
+        Entry entry = lookup(key);
+        if (entry != null) {
+            try {
+                command.getStdout().write(entry.output());
+                command.getStdout().flush();
+                return entry.exitCode();
+            } catch (IOException e) {
+                if (e instanceof BrokenPipeException) {
+                    return 0;
+                }
+                command.getStderr().println(command.getName() + ": " + e.getMessage());
+                return 1;
+            }
+        }
+
+        // Stages connected by line channels or writing to a file channel run as they are: wrapping their
+        // streams would drop the channels, and reads of a line channel can't be noticed
+        if (command.getLineInput() != null || command.getLineOutput() != null || command.getStdoutChannel() != null) {
+            return builtin.applyAsInt(command);
+        }
+
+        // Record the output while it is written, and notice whether the builtin read its stdin
+        CapturingOutputStream output = new CapturingOutputStream(command.getStdout(), budget / 4);
+        command.setStdout(output);
+        TouchedInputStream input = null;
+        if (command.getInputRedirect() == null) {
+            input = new TouchedInputStream(command.getStdin());
+            command.setStdin(input);
+        }
+        int exitCode = builtin.applyAsInt(command);
+
+        // The files might have changed while the command was reading them
+        boolean pure = exitCode == 0 && !output.failed && output.captured != null
+                && (input == null || !input.touched) && key.equals(key(command));
+        if (pure) {
+            store(key, new Entry(exitCode, output.captured.toByteArray()));
+        }
+        return exitCode;
+    }
+
+    // Key of the command or null if its result can't be cached
+    private static String key(Command command) {
+        if (!BuiltinRegistry.traits(command.getName()).contains(Builtin.Trait.PURE)
+                || command.getName().equals("tail") && command.getArgs().contains("-f")
+                // -c reads the files named in the checksum lists, not only the arguments
+                || List.of("sha256sum", "md5sum", "crc32").contains(command.getName())
+                        && command.getArgs().contains("-c")) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(command.getName());
+        for (String arg : command.getArgs()) {
+            key.append('\0').append(arg);
+        }
+        int files = 0;
+        for (String arg : command.getArgs()) {
+            files += appendIdentity(key, command, arg) ? 1 : 0;
+        }
+        if (command.getInputRedirect() != null) {
+            key.append("\0<");
+            files += appendIdentity(key, command, command.getInputRedirect().toString()) ? 1 : 0;
+        }
+        // Without files the input is a pipe or the terminal, nothing to compare with
+        return files == 0 ? null : key.toString();
+    }
+
+    // Appends the identity of the file to the key, returns false if the argument is not a file
+    private static boolean appendIdentity(StringBuilder key, Command command, String name) {
+        try {
+            Path path = command.resolve(name).toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return false;
+            }
+            key.append('\0').append(path)
+                    .append('|').append(attributes.size())
+                    .append('|').append(attributes.lastModifiedTime().toInstant())
+                    .append('|').append(attributes.fileKey());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // not a file name (a pattern, a flag) or not accessible
+            return false;
+        }
+    }
+
+    private synchronized Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null && directory != null) {
+            entry = load(key);
+            if (entry != null) {
+                put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void store(String key, Entry entry) {
+        synchronized (this) {
+            put(key, entry);
+        }
+        if (directory != null) {
+            persist(key, entry);
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        size += entry.output().length - (previous == null ? 0 : previous.output().length);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > budget && eldest.hasNext()) {
+            size -= eldest.next().output().length;
+            eldest.remove();
+        }
+    }
+
+    // Reads the persisted entry, the stored key must match because file names are hashes
+    private Entry load(String key) {
+        Path file = directory.resolve(fileName(key));
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+            if (input.readInt() != ENTRY_MAGIC) {
+                return null;
+            }
+            byte[] storedKey = input.readNBytes(input.readInt());
+            if (!key.equals(new String(storedKey, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            int exitCode = input.readInt();
+            byte[] output = input.readNBytes(input.readInt());
+            // mark the entry as recently used for the eviction of the directory
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(exitCode, output);
+        } catch (IOException e) {
+            // a missing or damaged entry is a miss
+            return null;
+        }
+    }
+
+    // Writes the entry to a temporary file and renames it, concurrent sessions never see half of it
+    private void persist(String key, Entry entry) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+            try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temporary))) {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(ENTRY_MAGIC);
+                output.writeInt(keyBytes.length);
+                output.write(keyBytes);
+                output.writeInt(entry.exitCode());
+                output.writeInt(entry.output().length);
+                output.write(entry.output());
+            }
+            Files.move(temporary, directory.resolve(fileName(key)),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evictPersisted();
+        } catch (IOException e) {
+            // the cache is an optimization, the command has succeeded anyway
+        }
+    }
+
+    // Deletes the least recently used persisted entries until the directory fits into the budget
+    private void evictPersisted() throws IOException {
+        List<PersistedEntry> persisted = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> list = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) list::iterator) {
+                if (file.getFileName().toString().endsWith(".entry")) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    persisted.add(new PersistedEntry(file, attributes.size(), attributes.lastModifiedTime()));
+                    total += attributes.size();
+                }
+            }
+        }
+        persisted.sort(Comparator.comparing(PersistedEntry::lastUsed));
+        for (PersistedEntry entry : persisted) {
+            if (total <= budget) {
+                break;
+            }
+            Files.deleteIfExists(entry.file());
+            total -= entry.size();
+        }
+    }
+
+    private record PersistedEntry(Path file, long size, FileTime lastUsed) {
+    }
+
+    private static String fileName(String key) {
+        return hash(key) + ".entry";
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Writes through to the stdout and keeps a copy until it gets larger than the limit
+    private static final class CapturingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final long limit;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        // the output was not fully delivered (e.g. the next stage has finished), it must not be stored
+        private boolean failed;
+
+        CapturingOutputStream(OutputStream target, long limit) {
+            this.target = target;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            try {
+                target.write(bytes, offset, length);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+            if (captured != null) {
+                if (captured.size() + (long) length > limit) {
+                    captured = null;
+                } else {
+                    captured.write(bytes, offset, length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                target.flush();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    // Remembers whether the builtin read its stdin
+    private static final class TouchedInputStream extends InputStream {
+        private final InputStream source;
+        private boolean touched;
+
+        TouchedInputStream(InputStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            touched = true;
+            return source.read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            touched = true;
+            return source.read(bytes, offset, length);
+        }
+
+        // Builtins close only their own inputs, the shared stdin is never closed through the wrapper
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.cli;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+// Session executes input lines with its own environment and standard streams.
+// The interpreter runs one session over System streams, the daemon runs one per connection,
+// so variables and exit codes of different clients never mix.
+final class Session {
+
+    private final Environment env = new Environment();
+    private final InputStream stdin;
+    private final OutputStream stdout;
+    private final PrintStream stderr;
+    // set by the `exit` command, the session doesn't read more lines after it
+    private boolean finished;
+    // history of the lines, null if the session doesn't record them
+    private History history;
+
+    /**
+     * @param stdin  standard input of the session, it is never closed by commands
+     * @param stdout standard output of the session
+     * @param stderr standard error of the session (parser errors included)
+     */
+    Session(InputStream stdin, OutputStream stdout, PrintStream stderr) {
+        // Builtins close the streams they read from, the session input must outlive every command
+        this.stdin = stdin == System.in ? stdin : new FilterInputStream(stdin) {
+            @Override
+            public void close() {
+            }
+        };
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    /**
+     * Parses and executes one input line and updates the "?" variable.
+     * The `exit` command finishes the session instead of the whole process.
+     *
+     * @param inputLine the raw input line
+     * @return          exit status of the line
+     */
+    int run(String inputLine) {
+        String line = inputLine.trim();
+        if (history != null) {
+            // `!` recall replaces the whole line with the entry, the recalled line is shown like in bash
+            if (line.length() > 1 && line.startsWith("!")) {
+                String recalled = recall(line.substring(1));
+                if (recalled == null) {
+                    stderr.println("cli: " + line + ": event not found");
+                    env.setVar("?", "1");
+                    flush();
+                    return 1;
+                }
+                stderr.println(recalled);
+                line = recalled;
+            }
+            record(line);
+        }
+
+        // Chains of builtins that can run in a single pass are fused before the execution
+        List<Command> commands = FusedCommand.fuse(Parser.parse(line, env, stderr));
+        int returnCode;
+        if (commands.size() == 1 && commands.getFirst().isExit()) {
+            finished = true;
+            returnCode = 0;
+        } else {
+            // The pipeline connects the inner commands to each other, the ends use the session streams
+            for (Command command : commands) {
+                command.setStderr(stderr);
+            }
+            if (!commands.isEmpty()) {
+                commands.getFirst().setStdin(stdin);
+                commands.getLast().setStdout(stdout);
+            }
+            returnCode = Pipeline.pipe(commands);
+        }
+        env.setVar("?", String.valueOf(returnCode)); // update return code
+        flush();
+        return returnCode;
+    }
+
+    /**
+     * Reads input lines from stdin and executes them until EOF or `exit` command.
+     *
+     * @return exit status of the last line
+     */
+    int runLines() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stdin));
+        int returnCode = 0;
+        String inputLine;
+        while (!finished && (inputLine = reader.readLine()) != null) {
+            returnCode = run(inputLine);
+        }
+        return returnCode;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    // Makes the commands of the session resolve relative file names against the directory
+    // and run external programs in it
+    void setDirectory(Path directory) {
+        env.setDirectory(directory);
+    }
+
+    // Makes the session record its lines and resolve `!` references in the history
+    void setHistory(History history) {
+        this.history = history;
+    }
+
+    private String recall(String reference) {
+        try {
+            return history.recall(reference);
+        } catch (IOException e) {
+            stderr.println("cli: history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void record(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        try {
+            history.add(line);
+        } catch (IOException e) {
+            stderr.println("cli: history: " + e.getMessage());
+        }
+    }
+
+    // Output of external commands is copied without flushing, push it to the client after every line
+    private void flush() {
+        try {
+            stdout.flush();
+        } catch (IOException e) {
+            stderr.println("cli: " + e.getMessage());
+        }
+        stderr.flush();
+    }
+}
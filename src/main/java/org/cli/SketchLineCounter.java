@@ -0,0 +1,217 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// SketchLineCounter estimates counts in fixed memory, whatever the number of lines is.
+// The number of distinct lines is estimated with HyperLogLog (about 1% error).
+// Counts of lines come from a Count-Min sketch, which may overestimate but never underestimates,
+// and only the lines that are currently among the heavy hitters are kept.
+final class SketchLineCounter implements LineCounter {
+
+    // HyperLogLog uses 2^PRECISION registers
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+    // Count-Min sketch has DEPTH rows of WIDTH counters
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 16;
+
+    private final byte[] registers = new byte[REGISTERS];
+    private final long[] sketch = new long[DEPTH * WIDTH];
+
+    // heavy hitters: at most `capacity` lines with the highest estimated counts
+    private final int capacity;
+    private final Map<Key, Candidate> candidates = new HashMap<>();
+    // binary min-heap of the candidates, the weakest first; a candidate knows its position,
+    // so updating its estimate moves it without searching the heap
+    private final Candidate[] weakest;
+    // reusable key for lookups, so lines that are not heavy hitters don't allocate
+    private final Key probe = new Key();
+    private long sequence;
+
+    /**
+     * @param capacity number of the most frequent lines to keep
+     */
+    SketchLineCounter(int capacity) {
+        this.capacity = capacity;
+        this.weakest = new Candidate[capacity];
+    }
+
+    @Override
+    public void add(byte[] bytes, int offset, int length) {
+        long hash = LineCounter.hash(bytes, offset, length);
+
+        // HyperLogLog: the first bits choose the register, it keeps the maximum rank of the rest
+        int register = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+
+        // Count-Min sketch: one counter in every row, the estimate is the minimum of them
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = (first + row * second) & (WIDTH - 1);
+            estimate = Math.min(estimate, ++sketch[row * WIDTH + column]);
+        }
+
+        updateCandidates(bytes, offset, length, hash, estimate);
+    }
+
+    @Override
+    public long distinct() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        // Small cardinalities are estimated better by linear counting
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    @Override
+    public void writeTop(OutputStream output, int limit) throws IOException {
+        List<Candidate> result = new ArrayList<>(candidates.values());
+        result.sort(Comparator.comparingLong((Candidate candidate) -> candidate.estimate).reversed()
+                .thenComparingLong(candidate -> candidate.sequence));
+        if (limit > 0 && result.size() > limit) {
+            result = result.subList(0, limit);
+        }
+        for (Candidate candidate : result) {
+            LineCounter.writeEntry(output, candidate.estimate, candidate.key.bytes, 0, candidate.key.length);
+        }
+    }
+
+    // Update the estimate of a heavy hitter or make the line one if its estimate is high enough
+    private void updateCandidates(byte[] bytes, int offset, int length, long hash, long estimate) {
+        if (capacity == 0) {
+            return;
+        }
+        probe.set(bytes, offset, length, hash);
+        Candidate candidate = candidates.get(probe);
+        if (candidate != null) {
+            // estimates never decrease, the candidate can only get stronger than its children
+            candidate.estimate = estimate;
+            siftDown(candidate.position);
+            return;
+        }
+        int size = candidates.size();
+        if (size == capacity && weakest[0].estimate >= estimate) {
+            return;
+        }
+        Key key = new Key();
+        key.set(Arrays.copyOfRange(bytes, offset, offset + length), 0, length, hash);
+        candidate = new Candidate(key, estimate, sequence++);
+        candidates.put(key, candidate);
+        if (size == capacity) {
+            // the line replaces the weakest heavy hitter
+            candidates.remove(weakest[0].key);
+            place(candidate, 0);
+            siftDown(0);
+        } else {
+            place(candidate, size);
+            siftUp(size);
+        }
+    }
+
+    // The weaker candidate has the lower estimate, or became a heavy hitter later
+    private static boolean weaker(Candidate candidate, Candidate other) {
+        return candidate.estimate < other.estimate
+                || candidate.estimate == other.estimate && candidate.sequence > other.sequence;
+    }
+
+    private void place(Candidate candidate, int position) {
+        weakest[position] = candidate;
+        candidate.position = position;
+    }
+
+    private void siftUp(int position) {
+        Candidate candidate = weakest[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!weaker(candidate, weakest[parent])) {
+                break;
+            }
+            place(weakest[parent], position);
+            position = parent;
+        }
+        place(candidate, position);
+    }
+
+    private void siftDown(int position) {
+        Candidate candidate = weakest[position];
+        int size = candidates.size();
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && weaker(weakest[child + 1], weakest[child])) {
+                child++;
+            }
+            if (!weaker(weakest[child], candidate)) {
+                break;
+            }
+            place(weakest[child], position);
+            position = child;
+        }
+        place(candidate, position);
+    }
+
+    // Line used as a key of the map of heavy hitters
+    private static final class Key {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+        private long hash;
+
+        void set(byte[] bytes, int offset, int length, long hash) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && hash == key.hash
+                    && Arrays.equals(bytes, offset, offset + length, key.bytes, key.offset, key.offset + key.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) hash;
+        }
+    }
+
+    private static final class Candidate {
+        private final Key key;
+        private long estimate;
+        // order of becoming a heavy hitter, used to break ties
+        private final long sequence;
+        // index in the heap of the weakest candidates
+        private int position;
+
+        Candidate(Key key, long estimate, long sequence) {
+            this.key = key;
+            this.estimate = estimate;
+            this.sequence = sequence;
+        }
+    }
+}
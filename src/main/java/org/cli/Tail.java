@@ -0,0 +1,170 @@
+package org.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+// Tail implements the reading part of the `tail` builtin
+final class Tail {
+
+    // Size of the block read backwards from the end of the file
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // How long follow mode waits for a file system event before checking the file anyway
+    private static final long FOLLOW_POLL_MILLIS = 1000;
+
+    private Tail() {
+    }
+
+    /**
+     * Writes the last lines of a file to the output.
+     * The file is read backwards block by block with positional reads, so only the
+     * tail of the file is touched no matter how large the file is.
+     *
+     * @param channel   the file to read, opened for reading
+     * @param lineCount number of lines to print
+     * @param output    destination stream
+     * @return          the file size at the moment of reading (the position follow mode continues from)
+     */
+    static long lastLines(FileChannel channel, int lineCount, OutputStream output) throws IOException {
+        long size = channel.size();
+        long start = findStartOfLastLines(channel, size, lineCount);
+        transfer(channel, start, size, output);
+        return size;
+    }
+
+    /**
+     * Writes the last lines of a stream to the output.
+     * A stream cannot be read backwards, so only the last lineCount lines are kept while reading.
+     *
+     * @param input     source stream
+     * @param lineCount number of lines to print
+     * @param output    destination stream
+     */
+    static void lastLines(InputStream input, int lineCount, OutputStream output) throws IOException {
+        Deque<byte[]> lines = new ArrayDeque<>();
+        byte[] buffer = new byte[BLOCK_SIZE];
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, lineStart, i + 1 - lineStart);
+                    addLine(lines, line.toByteArray(), lineCount);
+                    line.reset();
+                    lineStart = i + 1;
+                }
+            }
+            line.write(buffer, lineStart, read - lineStart);
+        }
+        // Last line without trailing newline
+        if (line.size() > 0) {
+            addLine(lines, line.toByteArray(), lineCount);
+        }
+        for (byte[] bytes : lines) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Follows the file and writes data appended to it since position.
+     * Waits for modification events of the parent directory and also re-checks the size
+     * periodically, because not every file system delivers events. A truncated file is
+     * reread from the beginning. Runs until the thread is interrupted or the output fails.
+     *
+     * @param path     path of the followed file
+     * @param channel  the file, opened for reading
+     * @param position number of bytes already written to the output
+     * @param output   destination stream
+     * @param errors   stream for the truncation notice
+     */
+    static void follow(Path path, FileChannel channel, long position, OutputStream output, PrintStream errors)
+            throws IOException, InterruptedException {
+        Path directory = path.toAbsolutePath().getParent();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                long size = channel.size();
+                if (size < position) {
+                    errors.println("tail: " + path + ": file truncated");
+                    position = 0;
+                }
+                if (size > position) {
+                    transfer(channel, position, size, output);
+                    output.flush();
+                    position = size;
+                }
+                WatchKey key = watchService.poll(FOLLOW_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        }
+    }
+
+    // Scans the file backwards and returns the offset of the first byte of the last lineCount lines
+    private static long findStartOfLastLines(FileChannel channel, long size, int lineCount) throws IOException {
+        if (lineCount == 0) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        int newlines = 0;
+        long end = size;
+        while (end > 0) {
+            long blockStart = Math.max(0, end - BLOCK_SIZE);
+            buffer.clear().limit((int) (end - blockStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                long offset = blockStart + i;
+                // The newline at the very end terminates the last line, it doesn't start a new one
+                if (buffer.get(i) == '\n' && offset != size - 1 && ++newlines == lineCount) {
+                    return offset + 1;
+                }
+            }
+            end = blockStart;
+        }
+        return 0;
+    }
+
+    // Copies [from, to) of the file to the output without reading it into the heap when possible
+    private static void transfer(FileChannel channel, long from, long to, OutputStream output) throws IOException {
+        WritableByteChannel target = Channels.newChannel(output);
+        while (from < to) {
+            long transferred = channel.transferTo(from, to - from, target);
+            if (transferred <= 0) {
+                break;
+            }
+            from += transferred;
+        }
+    }
+
+    // Keeps only the last lineCount lines in the deque
+    private static void addLine(Deque<byte[]> lines, byte[] line, int lineCount) {
+        if (lineCount == 0) {
+            return;
+        }
+        if (lines.size() == lineCount) {
+            lines.removeFirst();
+        }
+        lines.addLast(line);
+    }
+}
@@ -0,0 +1,243 @@
+package org.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tee implements the `tee` builtin: it copies its input to several sinks (files and stdout).
+// The input is read once into shared chunks, every sink has its own writer thread and a bounded
+// queue of the chunks it hasn't written yet. A slow sink doesn't stall the others until its
+// queue is full, and then the reading waits for it, so the memory stays bounded.
+// A chunk goes back to the free list when every sink has written it, and its buffer goes back
+// to the BufferPool when the copy ends, also when the copy is stopped with chunks still queued.
+final class Tee {
+
+    // Size of a chunk of the input
+    static final int CHUNK_SIZE = 64 * 1024;
+    // Chunks a sink can be behind the reading
+    static final int QUEUE_CAPACITY = 16;
+
+    // Marks the end of the input in the queues
+    private static final Chunk END = new Chunk(new byte[0]);
+
+    private final List<Sink> sinks = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Chunk> free = new ConcurrentLinkedQueue<>();
+
+    // Bytes of the input shared by the sinks
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        // sinks that haven't written the chunk yet
+        final AtomicInteger pending = new AtomicInteger();
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    // One destination with its writer thread, written through a FileChannel when there is one
+    private final class Sink implements Runnable {
+        final String name;
+        final FileChannel channel;
+        final OutputStream stream;
+        // the sink closes the channel of a file it opened, not the channel behind stdout
+        final boolean owned;
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread thread;
+        // the first write error, the sink only drains its queue after it
+        volatile IOException error;
+
+        Sink(String name, FileChannel channel, OutputStream stream, boolean owned) {
+            this.name = name;
+            this.channel = channel;
+            this.stream = stream;
+            this.owned = owned;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk;
+                while ((chunk = queue.take()) != END) {
+                    if (error == null) {
+                        try {
+                            write(chunk);
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                    }
+                    release(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finish();
+            }
+        }
+
+        private void write(Chunk chunk) throws IOException {
+            if (channel != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk.data, 0, chunk.length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } else {
+                stream.write(chunk.data, 0, chunk.length);
+            }
+        }
+
+        private void finish() {
+            try {
+                if (owned) {
+                    channel.close();
+                } else if (channel == null && error == null) {
+                    stream.flush();
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a file sink. The file is created, truncated unless append is true.
+     */
+    void addFile(Path file, boolean append) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        sinks.add(new Sink(file.toString(), channel, null, true));
+    }
+
+    /**
+     * Adds the standard output sink, written through the channel if stdout is a file (channel may be null).
+     */
+    void addStdout(OutputStream stdout, FileChannel channel) {
+        sinks.add(new Sink("standard output", channel, stdout, false));
+    }
+
+    /**
+     * Copies the input to every sink and waits until they have written it.
+     * The reading stops early when no sink can be written anymore.
+     * Write errors are reported to errors, a broken pipe of stdout is not an error.
+     *
+     * @return exit status: 0 if every sink was written, 1 otherwise
+     */
+    int copy(InputStream input, PrintStream errors) throws IOException, InterruptedException {
+        for (Sink sink : sinks) {
+            sink.thread = new Thread(sink, "tee " + sink.name);
+            sink.thread.setDaemon(true);
+            sink.thread.start();
+        }
+        // every chunk of the copy, queued, being written or free
+        List<Chunk> chunks = new ArrayList<>();
+        boolean finished = false;
+        try {
+            while (isWritable()) {
+                Chunk chunk = free.poll();
+                if (chunk == null) {
+                    chunk = new Chunk(BufferPool.shared().borrow(CHUNK_SIZE));
+                    chunks.add(chunk);
+                }
+                int length = input.read(chunk.data);
+                if (length < 0) {
+                    free.offer(chunk);
+                    break;
+                }
+                chunk.length = length;
+                chunk.pending.set(sinks.size());
+                for (Sink sink : sinks) {
+                    sink.queue.put(chunk);
+                }
+            }
+            for (Sink sink : sinks) {
+                sink.queue.put(END);
+            }
+            for (Sink sink : sinks) {
+                sink.thread.join();
+            }
+            finished = true;
+        } finally {
+            // the command is stopped or the input failed, the writers must not wait forever
+            boolean stopped = finished || stopWriters();
+            if (stopped) {
+                // no writer uses a chunk anymore, the ones left in the queues go back with the free ones
+                for (Sink sink : sinks) {
+                    sink.queue.clear();
+                }
+                free.clear();
+                for (Chunk chunk : chunks) {
+                    BufferPool.shared().release(chunk.data);
+                }
+            }
+        }
+
+        int exitCode = 0;
+        for (Sink sink : sinks) {
+            if (sink.error != null && !(sink.error instanceof BrokenPipeException && !sink.owned)) {
+                errors.println("tee: " + sink.name + ": " + sink.error.getMessage());
+                exitCode = 1;
+            }
+        }
+        return exitCode;
+    }
+
+    // Interrupts the writers and waits for them, returns false if one of them is still writing a chunk
+    private boolean stopWriters() {
+        for (Sink sink : sinks) {
+            sink.thread.interrupt();
+        }
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        try {
+            for (Sink sink : sinks) {
+                while (sink.thread.isAlive()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        sink.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    } catch (InterruptedException e) {
+                        // the copy is being stopped, the writers are stopping too
+                        interrupted = true;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Some sink still takes data
+    private boolean isWritable() {
+        for (Sink sink : sinks) {
+            if (sink.error == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void release(Chunk chunk) {
+        if (chunk.pending.decrementAndGet() == 0) {
+            free.offer(chunk);
+        }
+    }
+}
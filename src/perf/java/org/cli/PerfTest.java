@@ -0,0 +1,520 @@
+package org.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// PerfTest is the end-to-end soak test of the interpreter.
+// It generates a synthetic log, runs every script of the corpus through a separate CLI process
+// in batch mode and records throughput, line latency, peak RSS and GC pauses of the process.
+// Every script runs several times, the median of every metric over the runs is compared with the
+// stored baseline, a metric worse than the baseline by more than the tolerance fails the run.
+// The baseline doesn't depend on the speed of the machine: before and after every script the
+// harness runs a reference, a plain scan of the start of the log in memory for line breaks, and
+// the baseline stores the timings of the scripts relative to the median speed of the reference.
+// Throughput is stored as a fraction of the speed of the reference (throughput.refRatio), times
+// (latencies and GC pauses) as the MB the reference scans meanwhile (p50.refMb, p99.refMb,
+// gcPause.refMb). Peak RSS doesn't depend on the speed and is stored in MB (peakRssMb).
+// The longest single GC pause jitters too much to be checked, it is only reported in
+// results.properties.
+//
+// Configuration (system properties, set from -P options by the perfTest Gradle task):
+//  perf.size            size of the synthetic log, e.g. 2g or 300m (2g by default)
+//  perf.tolerance       allowed relative regression (0.25 by default)
+//  perf.runs            runs of every script, the medians are checked (3 by default)
+//  perf.updateBaseline  store the results as the new baseline instead of checking them
+//  perf.jvmArgs         options of the measured JVM (-Xmx512m by default)
+//  perf.classpath       class path of the interpreter
+//  perf.dir             directory for the log, GC logs and results
+//  perf.scripts         directory of the *.cli scripts
+//  perf.baseline        baseline file
+public final class PerfTest {
+
+    // Line printed by the script after every measured line, its arrival ends the line
+    private static final String MARK = "@@perf-mark@@";
+    // "# repeat: N" in a script runs its lines N times,
+    // "# throughput: false" marks a script whose lines read only a part of the log
+    private static final Pattern REPEAT = Pattern.compile("#\\s*repeat:\\s*(\\d+)");
+    private static final Pattern THROUGHPUT = Pattern.compile("#\\s*throughput:\\s*(true|false)");
+    // Pause events of the unified GC log, e.g. "... Pause Young (Normal) ... 24M->3M(256M) 2.345ms"
+    private static final Pattern GC_PAUSE = Pattern.compile("Pause.*\\s(\\d+(?:\\.\\d+)?)ms$");
+    private static final Pattern SIZE = Pattern.compile("(\\d+)([kmg]?)", Pattern.CASE_INSENSITIVE);
+    // Bytes of the log scanned by the reference
+    private static final int REFERENCE_BYTES = 64 << 20;
+
+    // Metrics, lower is better for all of them except throughput
+    private static final String MB_PER_SEC = "mbPerSec";
+    private static final String P50 = "p50Ms";
+    private static final String P99 = "p99Ms";
+    private static final String PEAK_RSS = "peakRssMb";
+    private static final String GC_TOTAL = "gcPauseMs";
+    private static final String GC_MAX = "gcMaxPauseMs";
+    private static final List<String> METRICS = List.of(MB_PER_SEC, P50, P99, PEAK_RSS, GC_TOTAL, GC_MAX);
+    // Keys of the checked metrics in the baseline, they name the unit the value is stored in
+    private static final Map<String, String> BASELINE_KEYS = Map.of(
+            MB_PER_SEC, "throughput.refRatio",
+            P50, "p50.refMb",
+            P99, "p99.refMb",
+            PEAK_RSS, "peakRssMb",
+            GC_TOTAL, "gcPause.refMb");
+
+    private PerfTest() {
+    }
+
+    // Results of one script and the speed of the reference they are relative to
+    private record Result(String script, TreeMap<String, Double> metrics, double reference) {
+    }
+
+    /**
+     * Runs the corpus and checks the results against the baseline.
+     * Exits with 1 if a metric regressed or a script failed.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long size = parseSize(System.getProperty("perf.size", "2g"));
+        double tolerance = Double.parseDouble(System.getProperty("perf.tolerance", "0.25"));
+        int runs = Integer.getInteger("perf.runs", 3);
+        boolean updateBaseline = Boolean.parseBoolean(System.getProperty("perf.updateBaseline", "false"));
+        Path dir = Path.of(System.getProperty("perf.dir", "build/perf"));
+        Path scripts = Path.of(System.getProperty("perf.scripts", "src/perf/scripts"));
+        Path baselineFile = Path.of(System.getProperty("perf.baseline", "src/perf/baseline.properties"));
+        Files.createDirectories(dir);
+
+        Path log = generateLog(dir, size);
+        List<Path> corpus;
+        try (Stream<Path> files = Files.list(scripts)) {
+            corpus = files.filter(file -> file.toString().endsWith(".cli")).sorted().toList();
+        }
+
+        // The runs are interleaved, so a slow period of the machine doesn't hit all runs of one script
+        List<Double> references = new ArrayList<>();
+        Map<String, List<TreeMap<String, Double>>> measured = new LinkedHashMap<>();
+        for (int run = 1; run <= runs; run++) {
+            for (Path script : corpus) {
+                Result result = runScript(script, log, dir, references);
+                measured.computeIfAbsent(result.script(), key -> new ArrayList<>()).add(result.metrics());
+                System.out.println("run " + run + "/" + runs + " " + format(result));
+            }
+        }
+        double reference = median(references);
+        List<Result> results = new ArrayList<>();
+        measured.forEach((script, metrics) -> results.add(new Result(script, medians(metrics), reference)));
+        results.forEach(result -> System.out.println("median  " + format(result)));
+
+        store(toProperties(results, size), dir.resolve("results.properties"), "perfTest results");
+        if (updateBaseline) {
+            store(toBaseline(results, size), baselineFile,
+                    "perfTest baseline relative to the reference scan, regenerate with ./gradlew perfTest -Pperf.updateBaseline=true");
+            System.out.println("Baseline updated: " + baselineFile);
+            return;
+        }
+
+        if (!Files.exists(baselineFile)) {
+            System.out.println("No baseline at " + baselineFile + ", nothing to compare");
+            return;
+        }
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselineFile)) {
+            baseline.load(reader);
+        }
+        if (!String.valueOf(size).equals(baseline.getProperty("size"))) {
+            System.out.println("Baseline was recorded for a log of " + baseline.getProperty("size")
+                    + " bytes, not " + size + ", nothing to compare");
+            return;
+        }
+        List<String> regressions = compare(results, baseline, tolerance);
+        regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    // Runs the script in a new interpreter process and measures it, the speeds of the reference
+    // before and after the script are added to the references
+    private static Result runScript(Path script, Path log, Path dir, List<Double> references)
+            throws IOException, InterruptedException {
+        String name = script.getFileName().toString().replaceFirst("\\.cli$", "");
+        List<String> lines = new ArrayList<>();
+        int repeat = 1;
+        boolean throughput = true;
+        for (String line : Files.readAllLines(script)) {
+            Matcher matcher = REPEAT.matcher(line.trim());
+            Matcher throughputMatcher = THROUGHPUT.matcher(line.trim());
+            if (matcher.matches()) {
+                repeat = Integer.parseInt(matcher.group(1));
+            } else if (throughputMatcher.matches()) {
+                throughput = Boolean.parseBoolean(throughputMatcher.group(1));
+            } else if (!line.isBlank() && !line.trim().startsWith("#")) {
+                lines.add(line);
+            }
+        }
+
+        // The first mark comes after the JVM start, every next one after a line of the script
+        StringBuilder input = new StringBuilder("LOG=" + log.toAbsolutePath() + "\necho " + MARK + "\n");
+        for (int i = 0; i < repeat; i++) {
+            for (String line : lines) {
+                input.append(line).append("\necho ").append(MARK).append('\n');
+            }
+        }
+        input.append("exit\n");
+
+        double before = referenceMbPerSec(log);
+        references.add(before);
+        Path gcLog = dir.resolve(name + "-gc.log");
+        Path errors = dir.resolve(name + ".err");
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : System.getProperty("perf.jvmArgs", "-Xmx512m").split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.add("-Xlog:gc:file=" + gcLog.toAbsolutePath());
+        command.add("-cp");
+        command.add(System.getProperty("perf.classpath", System.getProperty("java.class.path")));
+        command.add("org.cli.CLI");
+
+        Process process = new ProcessBuilder(command)
+                .redirectError(errors.toFile())
+                .start();
+        RssMonitor rss = new RssMonitor(process.pid());
+        rss.start();
+
+        // The script is written by another thread, the process may block on its output meanwhile
+        Thread writer = new Thread(() -> {
+            try (OutputStream stdin = process.getOutputStream()) {
+                stdin.write(input.toString().getBytes());
+            } catch (IOException e) {
+                // the process died, the exit code reports it
+            }
+        });
+        writer.start();
+
+        List<Long> marks = new ArrayList<>();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.ISO_8859_1))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.equals(MARK)) {
+                    marks.add(System.nanoTime());
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        writer.join();
+        rss.interrupt();
+        rss.join();
+        double after = referenceMbPerSec(log);
+        references.add(after);
+
+        int expectedMarks = 1 + repeat * lines.size();
+        if (exitCode != 0 || marks.size() != expectedMarks) {
+            throw new IllegalStateException("script " + name + " failed with exit code " + exitCode
+                    + " after " + marks.size() + " of " + expectedMarks + " lines, see " + errors);
+        }
+
+        // Latencies of the lines in ms, the lines that read the log give the throughput
+        List<Double> latencies = new ArrayList<>();
+        double logSeconds = 0;
+        long logBytes = 0;
+        for (int i = 1; i < marks.size(); i++) {
+            double millis = (marks.get(i) - marks.get(i - 1)) / 1e6;
+            latencies.add(millis);
+            if (throughput && lines.get((i - 1) % lines.size()).contains("$LOG")) {
+                logSeconds += millis / 1000;
+                logBytes += Files.size(log);
+            }
+        }
+        Collections.sort(latencies);
+
+        TreeMap<String, Double> metrics = new TreeMap<>();
+        if (logBytes > 0) {
+            metrics.put(MB_PER_SEC, logBytes / 1e6 / logSeconds);
+        }
+        metrics.put(P50, percentile(latencies, 0.50));
+        metrics.put(P99, percentile(latencies, 0.99));
+        if (rss.peakKb() > 0) {
+            metrics.put(PEAK_RSS, rss.peakKb() / 1024.0);
+        }
+        List<Double> pauses = gcPauses(gcLog);
+        metrics.put(GC_TOTAL, pauses.stream().mapToDouble(Double::doubleValue).sum());
+        metrics.put(GC_MAX, pauses.stream().mapToDouble(Double::doubleValue).max().orElse(0));
+        return new Result(name, metrics, Math.max(before, after));
+    }
+
+    // Checks the metrics of the results that have a baseline value, the baseline is converted to this machine
+    private static List<String> compare(List<Result> results, Properties baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result result : results) {
+            for (var metric : result.metrics().entrySet()) {
+                String baselineKey = BASELINE_KEYS.get(metric.getKey());
+                String stored = baselineKey == null ? null : baseline.getProperty(result.script() + "." + baselineKey);
+                if (stored == null) {
+                    continue;
+                }
+                String key = result.script() + "." + metric.getKey();
+                double expected = fromRelative(metric.getKey(), Double.parseDouble(stored), result.reference());
+                double actual = metric.getValue();
+                boolean regressed = metric.getKey().equals(MB_PER_SEC) ?
+                        actual < expected * (1 - tolerance) :
+                        actual > expected * (1 + tolerance) + slack(metric.getKey());
+                if (regressed) {
+                    regressions.add(String.format(Locale.ROOT, "%s: %.2f, baseline %.2f", key, actual, expected));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    // Absolute noise allowed on top of the relative tolerance, small values jitter a lot
+    private static double slack(String metric) {
+        return switch (metric) {
+            case P50, P99 -> 2;
+            case PEAK_RSS -> 16;
+            case GC_TOTAL -> 10;
+            default -> 0;
+        };
+    }
+
+    // Speed of the reference in MB/s: the best of a hundred scans counting the lines of the start of
+    // the log in memory, so it measures the processor, not the disk and the page cache. The scan is
+    // a method of its own, so the later scans run fully compiled
+    private static double referenceMbPerSec(Path log) throws IOException {
+        byte[] data;
+        try (InputStream input = Files.newInputStream(log)) {
+            data = input.readNBytes((int) Math.min(Files.size(log), REFERENCE_BYTES));
+        }
+        double best = 0;
+        for (int run = 0; run < 100; run++) {
+            long start = System.nanoTime();
+            if (countLines(data) == 0) {
+                throw new IllegalStateException("the log has no lines: " + log);
+            }
+            best = Math.max(best, data.length / 1e6 / ((System.nanoTime() - start) / 1e9));
+        }
+        return best;
+    }
+
+    private static long countLines(byte[] data) {
+        long lines = 0;
+        for (byte b : data) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // The value of the metric measured on this machine as stored in the baseline
+    private static double toRelative(String metric, double value, double reference) {
+        return switch (metric) {
+            case MB_PER_SEC -> value / reference;
+            case PEAK_RSS -> value;
+            default -> value / 1000 * reference;
+        };
+    }
+
+    // The value of the metric on this machine for a value stored in the baseline
+    private static double fromRelative(String metric, double value, double reference) {
+        return switch (metric) {
+            case MB_PER_SEC -> value * reference;
+            case PEAK_RSS -> value;
+            default -> value / reference * 1000;
+        };
+    }
+
+    // All the metrics as measured
+    private static Properties toProperties(List<Result> results, long size) {
+        Properties properties = new Properties();
+        properties.setProperty("size", String.valueOf(size));
+        for (Result result : results) {
+            result.metrics().forEach((metric, value) -> properties.setProperty(result.script() + "." + metric,
+                    String.format(Locale.ROOT, "%.4f", value)));
+        }
+        return properties;
+    }
+
+    // The checked metrics relative to the reference, under their baseline keys
+    private static Properties toBaseline(List<Result> results, long size) {
+        Properties properties = new Properties();
+        properties.setProperty("size", String.valueOf(size));
+        for (Result result : results) {
+            result.metrics().forEach((metric, value) -> {
+                String baselineKey = BASELINE_KEYS.get(metric);
+                if (baselineKey != null) {
+                    properties.setProperty(result.script() + "." + baselineKey,
+                            String.format(Locale.ROOT, "%.4f", toRelative(metric, value, result.reference())));
+                }
+            });
+        }
+        return properties;
+    }
+
+    // Writes the properties sorted and without a timestamp, so a new baseline gives a readable diff
+    private static void store(Properties properties, Path file, String comment) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write("# " + comment + "\n");
+            for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+                writer.write(key + "=" + properties.getProperty(key) + "\n");
+            }
+        }
+    }
+
+    private static String format(Result result) {
+        StringBuilder line = new StringBuilder(String.format("%-12s", result.script()));
+        for (String metric : METRICS) {
+            Double value = result.metrics().get(metric);
+            line.append(String.format(Locale.ROOT, " %s=%s", metric,
+                    value == null ? "-" : String.format(Locale.ROOT, "%.2f", value)));
+        }
+        return line.append(String.format(Locale.ROOT, " reference=%.2f", result.reference())).toString();
+    }
+
+    // Median of every metric over the runs of a script
+    private static TreeMap<String, Double> medians(List<TreeMap<String, Double>> runs) {
+        TreeMap<String, Double> medians = new TreeMap<>();
+        for (String metric : runs.getFirst().keySet()) {
+            medians.put(metric, median(runs.stream().map(run -> run.get(metric)).toList()));
+        }
+        return medians;
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    private static double percentile(List<Double> sorted, double fraction) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static List<Double> gcPauses(Path gcLog) throws IOException {
+        List<Double> pauses = new ArrayList<>();
+        if (!Files.exists(gcLog)) {
+            return pauses;
+        }
+        for (String line : Files.readAllLines(gcLog)) {
+            Matcher matcher = GC_PAUSE.matcher(line);
+            if (matcher.find()) {
+                pauses.add(Double.parseDouble(matcher.group(1)));
+            }
+        }
+        return pauses;
+    }
+
+    // Writes the synthetic log once, the same size always gives the same content
+    private static Path generateLog(Path dir, long size) throws IOException {
+        Path log = dir.resolve("synthetic-" + size + ".log");
+        if (Files.exists(log) && Files.size(log) == size) {
+            return log;
+        }
+        String[] levels = {"DEBUG", "INFO", "INFO", "INFO", "INFO", "INFO", "INFO", "WARN", "WARN", "ERROR"};
+        String[] users = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+        String[] paths = {"/api/items", "/api/orders", "/api/users", "/login", "/static/app.js", "/health"};
+        Random random = new Random(42);
+        long written = 0;
+        long millis = 1_700_000_000_000L;
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(log), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
+            while (written < size) {
+                millis += random.nextInt(50);
+                String level = levels[random.nextInt(levels.length)];
+                line.setLength(0);
+                line.append(Instant.ofEpochMilli(millis)).append(' ').append(level)
+                        .append(" [worker-").append(random.nextInt(16)).append("] ")
+                        .append(paths[random.nextInt(paths.length)]).append('/').append(random.nextInt(10_000))
+                        .append(" user=").append(users[random.nextInt(users.length)])
+                        .append(" status=").append(level.equals("ERROR") ? 500 : 200)
+                        .append(" took ").append(random.nextInt(2000)).append(" ms");
+                if (level.equals("ERROR") && random.nextBoolean()) {
+                    line.append(" timeout while calling upstream");
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+                int length = (int) Math.min(bytes.length, size - written);
+                if (length < bytes.length) {
+                    // the last line is cut to the exact size, it still ends with a newline
+                    bytes[length - 1] = '\n';
+                }
+                output.write(bytes, 0, length);
+                written += length;
+            }
+        }
+        return log;
+    }
+
+    private static long parseSize(String size) {
+        Matcher matcher = SIZE.matcher(size.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("invalid perf.size: " + size);
+        }
+        long value = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2).toLowerCase(Locale.ROOT)) {
+            case "k" -> value << 10;
+            case "m" -> value << 20;
+            case "g" -> value << 30;
+            default -> value;
+        };
+    }
+
+    // Polls the peak resident set size of the process (VmHWM), Linux only
+    private static final class RssMonitor extends Thread {
+        private final Path status;
+        private volatile long peakKb = -1;
+
+        RssMonitor(long pid) {
+            this.status = Path.of("/proc", String.valueOf(pid), "status");
+            setDaemon(true);
+        }
+
+        long peakKb() {
+            return peakKb;
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted() && Files.exists(status)) {
+                try (InputStream input = Files.newInputStream(status)) {
+                    for (String line : new String(input.readAllBytes()).split("\n")) {
+                        if (line.startsWith("VmHWM:")) {
+                            peakKb = Math.max(peakKb, Long.parseLong(line.replaceAll("\\D", "")));
+                        }
+                    }
+                    Thread.sleep(20);
+                } catch (IOException | NumberFormatException e) {
+                    // the process has just exited
+                    return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
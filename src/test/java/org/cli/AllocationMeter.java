@@ -0,0 +1,44 @@
+package org.cli;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+// AllocationMeter measures the heap bytes allocated by the current thread while a task runs.
+// The JIT compiler removes allocations only from compiled code, so the task runs a few times
+// before the measurement, and the smallest of several measurements is taken to skip the noise
+// of class loading and deoptimization.
+final class AllocationMeter {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 5;
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Returns the bytes allocated by one run of the task on the current thread after the warm-up.
+     * Work that the task hands to other threads is not counted.
+     */
+    static long allocatedBytes(Task task) throws Exception {
+        if (!THREADS.isThreadAllocatedMemoryEnabled()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            task.run();
+            fewest = Math.min(fewest, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+        return fewest;
+    }
+}
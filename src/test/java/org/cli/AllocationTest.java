@@ -0,0 +1,139 @@
+package org.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Allocation budgets of the hot paths of the builtins and the parser.
+// A String per line costs at least 40 bytes per line, the per-line ceilings catch it
+class AllocationTest {
+
+    private static final int LINES = 100_000;
+    // bytes allocated per input line by wc and grep: buffers and argument parsing spread over the lines
+    private static final long PER_LINE_CEILING = 8;
+    // bytes allocated per MB of input
+    private static final long PER_MB_CEILING = 64 * 1024;
+    // bytes allocated by cat per MB of input
+    private static final long CAT_PER_MB_CEILING = 16 * 1024;
+    // bytes allocated by one parse of a typical line
+    private static final long PARSE_CEILING = 32 * 1024;
+    // bytes allocated by wc and grep for a line of LONG_LINE bytes: the window, not the line
+    private static final int LONG_LINE = 16 << 20;
+    private static final long LONG_LINE_CEILING = 6 << 20;
+
+    @TempDir
+    Path dir;
+
+    private byte[] data;
+    private Path file;
+    private String threads;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // grep searches on the measured thread, the workers of ParallelGrep would allocate on their own
+        threads = System.getProperty("cli.grep.threads");
+        System.setProperty("cli.grep.threads", "1");
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            text.append("2024-01-01T00:00:").append(i % 60).append(i % 10 == 0 ? " ERROR " : " INFO ")
+                    .append("[worker-").append(i % 16).append("] request ").append(i).append(" took ")
+                    .append(i % 1000).append(" ms\n");
+        }
+        data = text.toString().getBytes(StandardCharsets.US_ASCII);
+        file = Files.write(dir.resolve("log.txt"), data);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (threads == null) {
+            System.clearProperty("cli.grep.threads");
+        } else {
+            System.setProperty("cli.grep.threads", threads);
+        }
+    }
+
+    // Runs the builtin over the data on the current thread and returns the allocated bytes
+    private long builtinAllocation(String... tokens) throws Exception {
+        return AllocationMeter.allocatedBytes(() -> {
+            Command command = new Command(List.of(tokens));
+            command.setStdin(new ByteArrayInputStream(data));
+            command.setStdout(OutputStream.nullOutputStream());
+            assertEquals(0, Executor.execute(command));
+        });
+    }
+
+    private void assertPerLineBudget(String... tokens) throws Exception {
+        long allocated = builtinAllocation(tokens);
+        String message = String.join(" ", tokens) + " allocated " + allocated + " bytes";
+        assertTrue(allocated <= PER_LINE_CEILING * LINES, message);
+        assertTrue(allocated <= PER_MB_CEILING * data.length / (1 << 20), message);
+    }
+
+    @Test
+    void testWcAllocation() throws Exception {
+        assertPerLineBudget("wc");
+    }
+
+    @Test
+    void testGrepAllocation() throws Exception {
+        assertPerLineBudget("grep", "ERROR");
+    }
+
+    @Test
+    void testGrepWithOptionsAllocation() throws Exception {
+        assertPerLineBudget("grep", "-i", "-w", "-A", "1", "error");
+    }
+
+    @Test
+    void testCutAllocation() throws Exception {
+        assertPerLineBudget("cut", "-d", " ", "-f", "1,3-4");
+        assertPerLineBudget("cut", "-c", "12-19");
+    }
+
+    @Test
+    void testCatAllocation() throws Exception {
+        long fromStdin = builtinAllocation("cat");
+        long fromFile = builtinAllocation("cat", file.toString());
+
+        assertTrue(fromStdin <= CAT_PER_MB_CEILING * data.length / (1 << 20), "cat allocated " + fromStdin + " bytes");
+        assertTrue(fromFile <= CAT_PER_MB_CEILING * data.length / (1 << 20), "cat FILE allocated " + fromFile + " bytes");
+    }
+
+    @Test
+    void testLongLineAllocation() throws Exception {
+        byte[] line = new byte[LONG_LINE];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = (byte) (i % 10 == 9 ? ' ' : 'a' + i % 26);
+        }
+        data = line;
+
+        long wc = builtinAllocation("wc");
+        long grep = builtinAllocation("grep", "^a");
+
+        assertTrue(wc <= LONG_LINE_CEILING, "wc allocated " + wc + " bytes");
+        assertTrue(grep <= LONG_LINE_CEILING, "grep allocated " + grep + " bytes");
+    }
+
+    @Test
+    void testParseAllocation() throws Exception {
+        Environment env = new Environment();
+        env.setVar("FILE", file.toString());
+
+        long allocated = AllocationMeter.allocatedBytes(() ->
+                Parser.parse("cat $FILE | grep -i \"error\" -A 2 | wc > 'out file.txt'", env));
+
+        assertTrue(allocated <= PARSE_CEILING, "parse allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,95 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for BoundedPipe
+class BoundedPipeTest {
+
+    @Test
+    void testTransferLargerThanCapacity() throws Exception {
+        BoundedPipe pipe = new BoundedPipe(16);
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        // writer blocks while the pipe is full, so it has to run in another thread
+        Thread writer = new Thread(() -> {
+            try (OutputStream sink = pipe.sink()) {
+                sink.write(data);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+        writer.start();
+
+        byte[] received;
+        try (InputStream source = pipe.source()) {
+            received = source.readAllBytes();
+        }
+        writer.join();
+
+        assertTrue(Arrays.equals(data, received));
+    }
+
+    @Test
+    void testEndOfStreamAfterWriterClosed() throws IOException {
+        BoundedPipe pipe = new BoundedPipe();
+        pipe.sink().write("data".getBytes());
+        pipe.closeWriter();
+
+        assertEquals("data", new String(pipe.source().readAllBytes()));
+        assertEquals(-1, pipe.source().read());
+    }
+
+    @Test
+    void testClosedReaderBreaksPipe() {
+        BoundedPipe pipe = new BoundedPipe();
+        pipe.closeReader();
+
+        assertThrows(BrokenPipeException.class, () -> pipe.sink().write("data".getBytes()));
+    }
+
+    @Test
+    void testClosedReaderWakesBlockedWriter() throws Exception {
+        BoundedPipe pipe = new BoundedPipe(4);
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            try {
+                pipe.sink().write(new byte[100]);
+            } catch (IOException e) {
+                error.set(e);
+            }
+        });
+        writer.start();
+        // wait until the writer fills the pipe and blocks
+        while (pipe.source().available() < 4) {
+            Thread.sleep(10);
+        }
+        pipe.closeReader();
+        writer.join();
+
+        assertTrue(error.get() instanceof BrokenPipeException);
+    }
+
+    @Test
+    void testWriterFailureReachesReader() throws IOException {
+        BoundedPipe pipe = new BoundedPipe();
+        pipe.sink().write("data".getBytes());
+        pipe.closeWriter(new IOException("corrupted input"));
+
+        byte[] buffer = new byte[16];
+        assertEquals(4, pipe.source().read(buffer));
+        IOException error = assertThrows(IOException.class, () -> pipe.source().read(buffer));
+        assertEquals("corrupted input", error.getMessage());
+    }
+}
@@ -0,0 +1,122 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for BufferPool
+class BufferPoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testBorrowRoundsUpToSizeClass() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+
+        assertEquals(4096, pool.borrow(1).length);
+        assertEquals(8192, pool.borrow(5000).length);
+        assertEquals(BufferPool.LARGE, pool.borrow(BufferPool.LARGE).length);
+        // bigger than every class: allocated as it is
+        assertEquals(3 * 1024 * 1024, pool.borrow(3 * 1024 * 1024).length);
+    }
+
+    @Test
+    void testReleasedBufferIsReused() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        byte[] first = pool.borrow(BufferPool.LARGE);
+        pool.release(first);
+
+        assertSame(first, pool.borrow(BufferPool.LARGE));
+        // another size class doesn't get it
+        assertNotSame(first, pool.borrow(BufferPool.SMALL));
+
+        BufferPool.Stats stats = pool.stats();
+        assertEquals(2, stats.allocated());
+        assertEquals(1, stats.reused());
+        assertEquals(2, stats.lentBuffers());
+        assertEquals(BufferPool.LARGE + BufferPool.SMALL, stats.lentBytes());
+        assertEquals(0, stats.idleBuffers());
+    }
+
+    @Test
+    void testBudgetBoundsIdleBuffers() {
+        BufferPool pool = new BufferPool(2L * BufferPool.LARGE);
+        byte[][] buffers = new byte[4][];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(BufferPool.LARGE);
+        }
+        for (byte[] buffer : buffers) {
+            pool.release(buffer);
+        }
+
+        BufferPool.Stats stats = pool.stats();
+        assertEquals(0, stats.lentBuffers());
+        assertEquals(0, stats.lentBytes());
+        assertEquals(4L * BufferPool.LARGE, stats.peakLentBytes());
+        assertEquals(2, stats.idleBuffers());
+        assertEquals(2L * BufferPool.LARGE, stats.idleBytes());
+    }
+
+    @Test
+    void testCopyReturnsItsBuffer() throws IOException {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            assertEquals(data.length, pool.copy(new ByteArrayInputStream(data), output));
+            assertArrayEquals(data, output.toByteArray());
+        }
+
+        BufferPool.Stats stats = pool.stats();
+        assertEquals(0, stats.lentBuffers());
+        assertEquals(1, stats.allocated());
+        assertEquals(2, stats.reused());
+    }
+
+    @Test
+    void testPipelineReturnsBuffers() throws IOException {
+        Path file = Files.writeString(dir.resolve("log.txt"), "alpha\nbeta\ngamma\n".repeat(1000));
+        runPipeline("cat " + file + " | grep a | wc");
+        BufferPool.Stats before = BufferPool.shared().stats();
+
+        assertEquals("   3000    3000   17000 \n", runPipeline("cat " + file + " | grep a | wc"));
+
+        // the pipe and the copy of cat got the buffers of the first run back
+        BufferPool.Stats after = BufferPool.shared().stats();
+        assertEquals(before.lentBuffers(), after.lentBuffers());
+        assertEquals(before.allocated(), after.allocated());
+        assertTrue(after.reused() > before.reused());
+    }
+
+    @Test
+    void testBuffersBuiltinPrintsStats() {
+        String report = runPipeline("buffers");
+        String[] lines = report.split("\n");
+        assertEquals(5, lines.length, report);
+        assertTrue(lines[0].matches("lent: \\d+ buffers, \\d+ bytes"), report);
+        assertTrue(lines[2].matches("idle: \\d+ buffers, \\d+ bytes"), report);
+        assertTrue(lines[4].startsWith("reused: "), report);
+        assertTrue(runPipeline("buffers | wc").startsWith("      5 "));
+    }
+
+    private static String runPipeline(String line) {
+        List<Command> commands = Parser.parse(line, new Environment());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        commands.getLast().setStdout(output);
+        assertEquals(0, Pipeline.pipe(commands));
+        return output.toString();
+    }
+}
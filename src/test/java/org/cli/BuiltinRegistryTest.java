@@ -0,0 +1,95 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for builtins provided through ServiceLoader, see META-INF/services/org.cli.Builtin
+class BuiltinRegistryTest {
+
+    // Reverses every line of stdin
+    public static class Rev implements Builtin {
+        @Override
+        public String name() {
+            return "rev";
+        }
+
+        @Override
+        public Set<Trait> traits() {
+            return Set.of(Trait.PURE, Trait.LINE_ORIENTED);
+        }
+
+        @Override
+        public int execute(Command command) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(command.getStdin()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                command.getStdout().write((new StringBuilder(line).reverse() + "\n").getBytes());
+            }
+            return 0;
+        }
+    }
+
+    // Tries to replace the echo builtin of the interpreter
+    public static class ShadowEcho implements Builtin {
+        @Override
+        public String name() {
+            return "echo";
+        }
+
+        @Override
+        public int execute(Command command) {
+            return 42;
+        }
+    }
+
+    @Test
+    void testPluginIsFound() {
+        assertInstanceOf(Rev.class, BuiltinRegistry.find("rev"));
+        assertEquals(Set.of(Builtin.Trait.PURE, Builtin.Trait.LINE_ORIENTED), BuiltinRegistry.traits("rev"));
+        assertNull(BuiltinRegistry.find("no-such-builtin"));
+        assertEquals(Set.of(), BuiltinRegistry.traits("no-such-builtin"));
+    }
+
+    @Test
+    void testCoreBuiltinIsNotReplaced() {
+        assertNull(BuiltinRegistry.find("echo"));
+        Command echo = new Command(List.of("echo", "core"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        echo.setStdout(output);
+
+        assertEquals(0, Executor.execute(echo));
+        assertEquals("core\n", output.toString());
+    }
+
+    @Test
+    void testPluginRunsInPipeline() {
+        Command echo = new Command(List.of("echo", "abc"));
+        Command rev = new Command(List.of("rev"));
+        Command cat = new Command(List.of("cat"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        cat.setStdout(output);
+
+        assertEquals(0, Pipeline.pipe(List.of(echo, rev, cat)));
+        assertEquals("cba\n", output.toString());
+    }
+
+    @Test
+    void testPluginOutputIsFlushed() {
+        Command rev = new Command(List.of("rev"));
+        rev.setStdin(new ByteArrayInputStream("one\ntwo".getBytes()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        rev.setStdout(output);
+
+        assertEquals(0, Executor.execute(rev));
+        assertEquals("eno\nowt\n", output.toString());
+    }
+}
@@ -0,0 +1,202 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for ByteAutomaton, its results are compared with java.util.regex
+class ByteAutomatonTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "abc", "a|b", "(a|ab)(c|bcd)(d*)", "^abc", "abc$", "^$", "^", "$", "a.c", "...", "[a-c]+x", "[^a-c]",
+            "[^a-c]b", "\\d+\\.\\d*", "\\w+@\\w+", "\\s\\S", "\\W", "\\D+", "x{2,3}y", "x{2}", "(ab){2,}", "colou?r",
+            "\\Qa.b\\E", "[-a]b", "[a-]z", "\\x41", "\\u00e9", "é+", "[éa]b", "(?:ab)+", "(?<year>\\d{4})-\\d\\d",
+            "a*?b", "\\.", "\\\\", "\\t", "b\\Z", "c\\z", "\\Aa", "a+$", ".$", "^.*$", "日.", "😀", "x|",
+            "(a*)*b", "[\\d\\s]+", "[^\\w]", "a.*b(.?)+", "a(.?)*b(.?)+", "b(.?){1,}");
+
+    private static final List<String> LINES = List.of(
+            "", "abc", "xabcx", "ab", "abbcd", "foo bar", "foobar", "a\tb", "x\r", "abc\r", "abc\r\n", "abc\n",
+            "colour color", "2024-10-19", "aéb", "éé", "ÀB", "xxxy", "xxxxy", "ababab", "a.b", "user@host", "a-z",
+            "-b", "A", "abc ", "a\u0085", "a\u0085b", "日本語", "😀x", "3.14", "a\\b", "é", "b",
+            "aaaab", "   ", "axb", "axxb", "axbz", "xé1");
+
+    // Lines for \b and \B: java.util.regex before 19 sees non-ASCII letters as word characters
+    private static final List<String> ASCII_LINES = List.of(
+            "", "foo", "foo bar", "foobar", "a foo.", "_foo", "(foo)", "oo", " o ", "x");
+
+    private static void assertSameResults(String regex, int flags, List<String> lines) throws IOException {
+        Pattern pattern = Pattern.compile(regex, flags);
+        ByteAutomaton automaton = ByteAutomaton.compile(pattern);
+        assertNotNull(automaton, regex);
+        for (String line : lines) {
+            boolean expected = pattern.matcher(line).find();
+            String message = regex + " (flags " + flags + ") in \"" + line + "\"";
+            assertEquals(expected, automaton.find(line), message);
+            LineInput input = LineInput.of(new ByteArrayInputStream((line + "\n").getBytes()));
+            assertTrue(input.next());
+            // lines with a line break are only searched as strings
+            if (input.string().equals(line)) {
+                assertEquals(expected, automaton.find(input), message);
+                assertEquals(expected, findInParts(automaton, line, 4), message);
+            }
+        }
+    }
+
+    // Searches the line given in parts of the window size
+    private static boolean findInParts(LineMatcher matcher, String line, int window) throws IOException {
+        LineInput parts = LineInput.windowed(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8)), window);
+        LineMatcher.Parts search = matcher.parts();
+        search.start();
+        boolean found = false;
+        while (parts.next()) {
+            found = search.find(parts);
+        }
+        return found || !line.isEmpty() ? found : matcher.find("");
+    }
+
+    // Characters of the random patterns and lines
+    private static final String[] ATOMS = {"a", "b", "x", "A", "1", " ", "é", "日", "😀", ".", "[ab]", "[^a]", "[a-x]",
+            "\\d", "\\D", "\\w", "\\W", "\\s", "\\S"};
+    private static final String[] ASSERTIONS = {"^", "$", "\\b", "\\B"};
+    private static final String[] QUANTIFIERS = {"*", "+", "?", "{0,2}", "{2}", "{1,}", "*?", "+?", "??"};
+    private static final String[] CHARACTERS = {"a", "b", "x", "A", "B", "1", " ", "_", "é", "É", "日", "😀"};
+
+    // A random expression: sequences of atoms, assertions, groups and alternations, often repeated
+    private static String randomRegex(Random random, int depth) {
+        StringBuilder regex = new StringBuilder();
+        int length = 1 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            int choice = random.nextInt(10);
+            if (choice < 2 && depth > 0) {
+                regex.append(random.nextBoolean() ? "(" : "(?:").append(randomRegex(random, depth - 1));
+                if (random.nextInt(3) == 0) {
+                    regex.append('|').append(randomRegex(random, depth - 1));
+                }
+                regex.append(')');
+            } else if (choice < 3) {
+                regex.append(ASSERTIONS[random.nextInt(ASSERTIONS.length)]);
+                continue;
+            } else {
+                regex.append(ATOMS[random.nextInt(ATOMS.length)]);
+            }
+            if (random.nextInt(3) == 0) {
+                regex.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+            }
+        }
+        return regex.toString();
+    }
+
+    private static List<String> randomLines(Random random, boolean ascii) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                // non-ASCII characters are among the first 8 characters
+                line.append(CHARACTERS[ascii ? random.nextInt(8) : random.nextInt(CHARACTERS.length)]);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    @Test
+    void testSameResultsAsPattern() throws IOException {
+        for (String regex : PATTERNS) {
+            assertSameResults(regex, 0, LINES);
+        }
+
+        // java.util.regex before 19 sees non-ASCII letters as word characters for \b and \B
+        boolean asciiBoundaries = Runtime.version().feature() < 19;
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            String regex = randomRegex(random, 3);
+            boolean ascii = asciiBoundaries && (regex.contains("\\b") || regex.contains("\\B"));
+            assertSameResults(regex, random.nextInt(4) == 0 ? Pattern.CASE_INSENSITIVE : 0, randomLines(random, ascii));
+        }
+    }
+
+    @Test
+    void testWordBoundaries() throws IOException {
+        for (String regex : List.of("\\bfoo\\b", "\\Bo", "o\\B", "\\b", "\\B", "^\\b", "\\w\\b\\W", "\\bfoo|bar\\b")) {
+            assertSameResults(regex, 0, ASCII_LINES);
+        }
+        assertSameResults("x((\\B|\\D)+)+", Pattern.CASE_INSENSITIVE, List.of("axb", "x", "1x1"));
+        // no marker between the bytes of a character: é is not a word character, as in java.util.regex since 19
+        assertFalse(ByteAutomaton.compile(Pattern.compile("\\B")).find("xé1"));
+        assertTrue(ByteAutomaton.compile(Pattern.compile("é\\B")).find("éé"));
+    }
+
+    @Test
+    void testCaseInsensitive() throws IOException {
+        for (String regex : List.of("abc", "[a-c]+", "[^a]", "É", "Foo\\w", "\\x41")) {
+            assertSameResults(regex, Pattern.CASE_INSENSITIVE, List.of("ABC", "aBc", "é", "É", "FOOd", "a", "b"));
+        }
+    }
+
+    @Test
+    void testFallbackToPattern() {
+        for (String regex : List.of("(a)\\1", "(?=a)", "(?<=a)b", "a++", "(?i)a", "\\p{L}", "\\R", "\\h", "(?>a)",
+                "[a&&b]", "[[a]]", "\\G", "\\07")) {
+            assertNull(ByteAutomaton.compile(Pattern.compile(regex)), regex);
+            assertInstanceOf(RegexLineMatcher.class, LineMatcher.compile(Pattern.compile(regex)), regex);
+        }
+        assertNull(ByteAutomaton.compile(Pattern.compile("a", Pattern.MULTILINE)));
+        assertNull(ByteAutomaton.compile(Pattern.compile("a{5000}{5000}")));
+        assertInstanceOf(ByteAutomaton.class, LineMatcher.compile(Pattern.compile("error|warning")));
+    }
+
+    @Test
+    void testLinearTime() {
+        // java.util.regex backtracks for ages on these lines
+        assertFalse(ByteAutomaton.compile(Pattern.compile("(a|aa)*b")).find("a".repeat(100_000)));
+        assertFalse(ByteAutomaton.compile(Pattern.compile("(x+x+)+y")).find("x".repeat(100_000)));
+        assertTrue(ByteAutomaton.compile(Pattern.compile("(x+x+)+y")).find("x".repeat(100_000) + "y"));
+    }
+
+    @Test
+    void testStatesBeyondTableSize() {
+        // the search needs a state for each of the 2^13 combinations, the table is emptied many times
+        Pattern pattern = Pattern.compile("a[ab]{12}c");
+        ByteAutomaton automaton = ByteAutomaton.compile(pattern);
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = 0; j < 5000; j++) {
+                line.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            line.setCharAt(1000 + random.nextInt(3000), 'c');
+            assertEquals(pattern.matcher(line).find(), automaton.find(line), line.toString());
+            // the same line again with the table emptied in the middle of the parts
+            assertEquals(pattern.matcher(line).find(), findInPartsTwice(automaton, line.toString()));
+        }
+    }
+
+    // Searches the line in parts with the whole line searched between the parts
+    private static boolean findInPartsTwice(ByteAutomaton automaton, String line) {
+        LineMatcher.Parts search = automaton.parts();
+        search.start();
+        boolean found = false;
+        try {
+            LineInput parts = LineInput.windowed(new ByteArrayInputStream(line.getBytes()), 512);
+            while (parts.next()) {
+                boolean partial = parts.isPartial();
+                found = search.find(parts);
+                if (partial) {
+                    automaton.find(new StringBuilder(line).reverse());
+                }
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return found;
+    }
+}
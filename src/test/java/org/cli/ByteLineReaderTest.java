@@ -0,0 +1,102 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for ByteLineReader
+class ByteLineReaderTest {
+
+    private static List<String> readLines(String input, int bufferSize) throws IOException {
+        ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream(input.getBytes()), bufferSize);
+        List<String> lines = new ArrayList<>();
+        while (reader.next()) {
+            lines.add(new String(reader.buffer(), reader.start(), reader.length()));
+        }
+        return lines;
+    }
+
+    @Test
+    void testLineTerminators() throws IOException {
+        assertEquals(List.of("a", "b", "c", "", "d"), readLines("a\nb\r\nc\r\rd", 1024));
+    }
+
+    @Test
+    void testLastLineWithoutTerminator() throws IOException {
+        assertEquals(List.of("first", "last"), readLines("first\nlast", 1024));
+        assertEquals(List.of(), readLines("", 1024));
+    }
+
+    @Test
+    void testLinesLongerThanBuffer() throws IOException {
+        String longLine = "x".repeat(100);
+        assertEquals(List.of(longLine, "y", longLine), readLines(longLine + "\ny\n" + longLine + "\n", 8));
+    }
+
+    @Test
+    void testCarriageReturnAtBufferBoundary() throws IOException {
+        // "\r" is the last byte of the first read, "\n" the first byte of the next one
+        assertEquals(List.of("abc", "def"), readLines("abc\r\ndef", 4));
+    }
+
+    @Test
+    void testSameAsBufferedReader() throws IOException {
+        String input = "one\r\ntwo\n\nthree\rfour\n";
+        List<String> expected = new BufferedReader(new StringReader(input)).lines().toList();
+        assertEquals(expected, readLines(input, 3));
+    }
+
+    @Test
+    void testWindowSplitsLongLines() throws IOException {
+        String longLine = "x".repeat(100);
+        ByteLineReader reader = new ByteLineReader(
+                new ByteArrayInputStream((longLine + "\nshort\n" + longLine).getBytes()), 8, 32);
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        while (reader.next()) {
+            String part = new String(reader.buffer(), reader.start(), reader.length());
+            assertTrue(part.length() <= 32);
+            line.append(part);
+            if (!reader.isPartial()) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+        }
+        assertEquals(List.of(longLine, "short", longLine), lines);
+    }
+
+    @Test
+    void testLastLineFillingTheWindow() throws IOException {
+        // the last part is full and the input ends: an empty part ends the line
+        ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream("x".repeat(64).getBytes()), 8, 32);
+        List<Boolean> partial = new ArrayList<>();
+        while (reader.next()) {
+            partial.add(reader.isPartial());
+        }
+        assertEquals(List.of(true, true, false), partial);
+        assertEquals(0, reader.length());
+    }
+
+    @Test
+    void testWindowDoesNotCutCharacters() throws IOException {
+        String longLine = "\u00e9\u20ac\ud83d\ude00".repeat(50);
+        ByteLineReader reader = new ByteLineReader(
+                new ByteArrayInputStream(longLine.getBytes(StandardCharsets.UTF_8)), 8, 16);
+        StringBuilder line = new StringBuilder();
+        while (reader.next()) {
+            // every part decodes on its own
+            String part = new String(reader.buffer(), reader.start(), reader.length(), StandardCharsets.UTF_8);
+            assertFalse(part.contains("\ufffd"), part);
+            line.append(part);
+        }
+        assertEquals(longLine, line.toString());
+    }
+}
@@ -0,0 +1,114 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for Cut
+class CutTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String LOG = "2024-01-01\tGET\t/index.html\t200\t512\n"
+            + "2024-01-02\tPOST\t/login\t302\t0\n"
+            + "no tabs here\n"
+            + "\t\tempty\t\n";
+
+    @Test
+    void testFields() {
+        assertEquals("GET\nPOST\nno tabs here\n\n", cut(LOG, "-f", "2"));
+        assertEquals("2024-01-01\t/index.html\t200\n2024-01-02\t/login\t302\nno tabs here\n\tempty\t\n",
+                cut(LOG, "-f", "1,3-4"));
+        assertEquals("200\t512\n302\t0\nno tabs here\n\n", cut(LOG, "-f", "4-"));
+        assertEquals("2024-01-01\tGET\n2024-01-02\tPOST\nno tabs here\n\t\n", cut(LOG, "-f", "-2"));
+        // fields are printed in the input order once, whatever the order of the list
+        assertEquals("GET\t512\nPOST\t0\nno tabs here\n\n", cut(LOG, "-f", "5,2,2"));
+        // a missing field is empty
+        assertEquals("\nf\n", cut("a\nb\tc\nd\te\tf\n", "-f", "3", "-s"));
+    }
+
+    @Test
+    void testDelimiter() {
+        String csv = "name,age,city\nalice,30,paris\nbob,,rome\n";
+
+        assertEquals("name,city\nalice,paris\nbob,rome\n", cut(csv, "-d", ",", "-f", "1,3"));
+        assertEquals("age\n30\n\n", cut(csv, "-d", ",", "-f", "2"));
+        assertEquals("name age\n", cut("name age city\n", "-d", " ", "-f", "1-2"));
+    }
+
+    @Test
+    void testOnlyDelimited() {
+        assertEquals("GET\nPOST\n\n", cut(LOG, "-s", "-f", "2"));
+    }
+
+    @Test
+    void testCharacters() {
+        assertEquals("202\n202\nno \n\t\te\n", cut(LOG, "-c", "1-3"));
+        assertEquals("été\n", cut("été à\n", "-c", "1-3"));
+        assertEquals("éà\n", cut("été à\n", "-c", "1,5"));
+        assertEquals("abc\n\nx\n", cut("abcdef\n\nx\n", "-c", "-3"));
+    }
+
+    @Test
+    void testLineTerminators() {
+        assertEquals("a\nc\ne\n", cut("a\tb\r\nc\td\re\tf", "-f", "1"));
+    }
+
+    @Test
+    void testPipelineOfLineChannels() throws IOException {
+        Path file = Files.writeString(dir.resolve("people.csv"), "bob,rome\nalice,paris\ncarol,oslo\n");
+        List<Command> commands = Parser.parse("cut -d , -f 2 " + file + " | sort | cut -c 1-2", new Environment());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        commands.getLast().setStdout(output);
+
+        assertEquals(0, Pipeline.pipe(commands));
+        assertEquals("os\npa\nro\n", output.toString());
+    }
+
+    @Test
+    void testErrors() {
+        assertEquals("cut: specify either a list of fields (-f) or of characters (-c)\n", error("cut"));
+        assertEquals("cut: specify either a list of fields (-f) or of characters (-c)\n",
+                error("cut", "-f", "1", "-c", "1"));
+        assertEquals("cut: fields and positions are numbered from 1\n", error("cut", "-f", "0"));
+        assertEquals("cut: invalid decreasing range: 3-1\n", error("cut", "-f", "3-1"));
+        assertEquals("cut: invalid list: 1,x\n", error("cut", "-f", "1,x"));
+        assertEquals("cut: the delimiter must be a single byte character\n", error("cut", "-d", "::", "-f", "1"));
+    }
+
+    private static String cut(String input, String... args) {
+        Command command = new Command(tokens(args));
+        command.setStdin(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        assertEquals(0, Executor.execute(command));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String error(String... tokens) {
+        Command command = new Command(List.of(tokens));
+        command.setStdin(new ByteArrayInputStream(new byte[0]));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        command.setStderr(new PrintStream(errors));
+        assertEquals(1, Executor.execute(command));
+        return errors.toString();
+    }
+
+    private static List<String> tokens(String... args) {
+        String[] tokens = new String[args.length + 1];
+        tokens[0] = "cut";
+        System.arraycopy(args, 0, tokens, 1, args.length);
+        return List.of(tokens);
+    }
+}
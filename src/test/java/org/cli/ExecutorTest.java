@@ -1,16 +1,27 @@
 package org.cli;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 // Test class for Executor
 class ExecutorTest {
 
+    @TempDir
+    Path dir;
+
     private Path tempFile;
     private Path tempFileSimple;
     private ByteArrayOutputStream output;
@@ -200,6 +211,434 @@ class ExecutorTest {
         assertEquals("" , output.toString());
     }
 
+    @Test
+        // Test for tail command
+    void testExecuteTail() {
+        Command command = new Command(List.of("tail", "-n", "2", tempFile.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        String expected = """
+                Another ERROR found
+                Log: all systems normal
+                """;
+        assertEquals(expected, output.toString());
+    }
+
+    @Test
+    void testExecuteTailMoreLinesThanFile() {
+        Command command = new Command(List.of("tail", tempFileSimple.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals(simpleInput + "\n", output.toString());
+    }
+
+    @Test
+    void testExecuteTailAcrossBlocks() throws IOException {
+        Path bigFile = Files.createTempFile("testFileBig", ".txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append("line ").append(i).append("\n");
+        }
+        // last line without trailing newline
+        content.append("last");
+        Files.writeString(bigFile, content);
+        Command command = new Command(List.of("tail", "-n", "3", bigFile.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("line 99998\nline 99999\nlast", output.toString());
+        Files.deleteIfExists(bigFile);
+    }
+
+    @Test
+    void testExecuteTailStdin() {
+        Command command = new Command(List.of("tail", "-n", "1"));
+        command.setStdin(new ByteArrayInputStream("first\nsecond\nthird\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("third\n", output.toString());
+    }
+
+    @Test
+    void testExecuteTailFollow() throws Exception {
+        Command command = new Command(List.of("tail", "-n", "1", "-f", tempFileSimple.toString()));
+        command.setStdout(output);
+
+        Thread tail = new Thread(() -> Executor.execute(command));
+        tail.start();
+        // append only after the last line of the original file was printed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Files.writeString(tempFileSimple, "appended\n", StandardOpenOption.APPEND);
+
+        String expected = "Hello from file\tagain!!!\nappended\n";
+        while (!expected.equals(output.toString()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        tail.interrupt();
+        tail.join();
+
+        assertEquals(expected, output.toString());
+    }
+
+    @Test
+        // Test for sort command
+    void testExecuteSort() {
+        Command command = new Command(List.of("sort", tempFile.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        String expected = """
+                Another ERROR found
+                Log: all systems normal
+                Not whole worldERROR
+                Nothing important here
+                This is a warning
+                This is an ERROR message
+                """;
+        assertEquals(expected, output.toString());
+    }
+
+    @Test
+    void testExecuteSortNumericReverse() {
+        Command command = new Command(List.of("sort", "-n", "-r"));
+        command.setStdin(new ByteArrayInputStream("10\n9\n-1\n100\n2.5\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("100\n10\n9\n2.5\n-1\n", output.toString());
+    }
+
+    @Test
+    void testExecuteSortKeySeparatorUnique() {
+        Command command = new Command(List.of("sort", "-t", ":", "-k", "2,2", "-u"));
+        command.setStdin(new ByteArrayInputStream("a:b:3\nc:a:1\nd:b:2\ne:c:0\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("c:a:1\na:b:3\ne:c:0\n", output.toString());
+    }
+
+    @Test
+    void testExecuteSortSpillsToDisk() {
+        List<String> lines = new ArrayList<>();
+        StringBuilder input = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String line = "value " + random.nextInt(1000);
+            lines.add(line);
+            input.append(line).append("\n");
+        }
+        Collections.sort(lines);
+
+        // a tiny memory limit makes sort spill hundreds of runs and merge them in several passes
+        Command command = new Command(List.of("sort", "-S", "1K"));
+        command.setStdin(new ByteArrayInputStream(input.toString().getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals(String.join("\n", lines) + "\n", output.toString());
+    }
+
+    @Test
+    void testExecuteSortSpilledUniqueKeepsFirstOfDuplicates() {
+        StringBuilder input = new StringBuilder("dup A\n");
+        for (int i = 0; i < 3000; i++) {
+            input.append("line").append(i).append("\n");
+        }
+        input.append("dup B\n");
+
+        // more than 64 runs are merged in several passes, the first line of the group still wins
+        Command command = new Command(List.of("sort", "-u", "-k", "1,1", "-S", "1K"));
+        command.setStdin(new ByteArrayInputStream(input.toString().getBytes()));
+        command.setStdout(output);
+
+        assertEquals(0, Executor.execute(command));
+        assertTrue(output.toString().startsWith("dup A\n"), output.toString().substring(0, 20));
+        assertEquals(3001, output.toString().lines().count());
+    }
+
+    @Test
+    void testExecuteSortSpilledNumericKeysDeletesRuns() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder input = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            String line = "id" + i + " " + random.nextInt(100);
+            lines.add(line);
+            input.append(line).append("\n");
+        }
+        lines.sort(Comparator.comparingInt((String line) -> Integer.parseInt(line.split(" ")[1])).reversed()
+                .thenComparing(Comparator.reverseOrder()));
+        Command command = new Command(List.of("sort", "-n", "-r", "-k", "2", "-S", "1K", "-T", dir.toString()));
+        command.setStdin(new ByteArrayInputStream(input.toString().getBytes()));
+        command.setStdout(output);
+
+        assertEquals(0, Executor.execute(command));
+        assertEquals(String.join("\n", lines) + "\n", output.toString());
+        // the runs are deleted when sort finishes, not when the shell exits
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testExecuteSortInvalidKey() {
+        Command command = new Command(List.of("sort", "-k", "x", tempFile.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(1, exitCode);
+    }
+
+    @Test
+        // Test for count command
+    void testExecuteCount() {
+        Command command = new Command(List.of("count"));
+        command.setStdin(new ByteArrayInputStream("b\na\nb\nc\na\nb\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("      3 b\n      2 a\n      1 c\n", output.toString());
+    }
+
+    @Test
+    void testExecuteCountTopK() {
+        Command command = new Command(List.of("count", "-k", "1", tempFileSimple.toString()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("      1 Hello from file!!!\n", output.toString());
+    }
+
+    @Test
+    void testExecuteCountDistinct() {
+        Command command = new Command(List.of("count", "-d"));
+        command.setStdin(new ByteArrayInputStream("b\na\nb\nc\na\nb\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("3\n", output.toString());
+    }
+
+    @Test
+    void testExecuteCountApproximate() {
+        Command command = new Command(List.of("count", "--approx", "-k", "2"));
+        command.setStdin(new ByteArrayInputStream("b\na\nb\nc\na\nb\n".getBytes()));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("      3 b\n      2 a\n", output.toString());
+    }
+
+    @Test
+        // Test for output redirection of a builtin with direct channel transfer
+    void testExecuteCatRedirected() throws IOException {
+        Path target = Files.createTempFile("testFileTarget", ".txt");
+        Command command = new Command(List.of("cat", tempFileSimple.toString()));
+        command.redirectOutput(target, false);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals(simpleInput + "\n", Files.readString(target));
+
+        // append mode keeps the previous content
+        Command append = new Command(List.of("cat"));
+        append.redirectInput(tempFileSimple);
+        append.redirectOutput(target, true);
+
+        exitCode = Executor.execute(append);
+
+        assertEquals(0, exitCode);
+        assertEquals(simpleInput + "\n" + simpleInput + "\n", Files.readString(target));
+        Files.deleteIfExists(target);
+    }
+
+    @Test
+    void testExecuteWcInputRedirected() {
+        Command command = new Command(List.of("wc"));
+        command.redirectInput(tempFileSimple);
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("      2       7      44 \n", output.toString());
+    }
+
+    @Test
+    void testWcWordsMatchSplit() {
+        // control characters, whitespace that is not \s and spaces around, ASCII and not
+        List<String> lines = List.of("", "   ", "\u0001", " \u0001 ", "a\u0001b", "\u001c", "x\u001cy",
+                " one\ttwo  three ", "\u000bvertical\u000b", "\u00e9t\u00e9 \u00e0", "\u2003", "a\u2003b");
+        for (String line : lines) {
+            Command command = new Command(List.of("wc"));
+            command.setStdin(new ByteArrayInputStream((line + "\n").getBytes()));
+            ByteArrayOutputStream lineOutput = new ByteArrayOutputStream();
+            command.setStdout(lineOutput);
+
+            assertEquals(0, Executor.execute(command));
+            int words = line.isBlank() ? 0 : line.trim().split("\\s+").length;
+            assertEquals(String.format("%7d %7d %7d %s%n", 1, words, line.getBytes().length + 1, ""),
+                    lineOutput.toString(), line);
+        }
+    }
+
+    @Test
+    void testExecuteErrorRedirected() throws IOException {
+        Path errors = Files.createTempFile("testFileErrors", ".txt");
+        Command command = new Command(List.of("cat", "nonexistent_file.txt"));
+        command.redirectError(errors);
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(1, exitCode);
+        assertTrue(Files.readString(errors).startsWith("cat: nonexistent_file.txt"));
+        Files.deleteIfExists(errors);
+    }
+
+    @Test
+    void testExecuteExternalRedirected() throws IOException {
+        Path target = Files.createTempFile("testFileTarget", ".txt");
+        // sort is a builtin, so the external one is called through env
+        Command external = new Command(List.of("/usr/bin/env", "sort"));
+        external.redirectInput(tempFile);
+        external.redirectOutput(target, false);
+
+        int exitCode = Executor.execute(external);
+
+        assertEquals(0, exitCode);
+        assertEquals(6, Files.readAllLines(target).size());
+        assertEquals("", output.toString());
+        Files.deleteIfExists(target);
+    }
+
+    @Test
+    void testExecuteExternalRedirectedErrorsToStderr() throws IOException {
+        Path target = Files.createTempFile("testFileTarget", ".txt");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Command external = new Command(List.of("sh", "-c", "echo out; echo err >&2"));
+        external.redirectOutput(target, false);
+        external.setStderr(new PrintStream(errors));
+
+        assertEquals(0, Executor.execute(external));
+        assertEquals("out\n", Files.readString(target));
+        // the errors go to the stderr of the command, e.g. of a daemon session
+        assertEquals("err\n", errors.toString());
+        Files.deleteIfExists(target);
+    }
+
+    // Write gzip compressed content to a new temporary file
+    private static Path createGzipFile(String content) throws IOException {
+        Path file = Files.createTempFile("testFileCompressed", ".gz");
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(file))) {
+            gzip.write(content.getBytes());
+        }
+        return file;
+    }
+
+    @Test
+        // Test for cat, wc and grep over a compressed file
+    void testExecuteCompressedInput() throws IOException {
+        Path compressed = createGzipFile(simpleInput + "\n");
+
+        Command cat = new Command(List.of("cat", compressed.toString()));
+        cat.setStdout(output);
+        assertEquals(0, Executor.execute(cat));
+        assertEquals(simpleInput + "\n", output.toString());
+
+        output.reset();
+        Command wc = new Command(List.of("wc", compressed.toString()));
+        wc.setStdout(output);
+        assertEquals(0, Executor.execute(wc));
+        assertEquals("      2       7      44 " + compressed + "\n", output.toString());
+
+        output.reset();
+        Command grep = new Command(List.of("grep", "again", compressed.toString()));
+        grep.setStdout(output);
+        assertEquals(0, Executor.execute(grep));
+        assertEquals("Hello from file\tagain!!!\n", output.toString());
+
+        Files.deleteIfExists(compressed);
+    }
+
+    @Test
+    void testExecuteZcatStdin() throws IOException {
+        Path compressed = createGzipFile("compressed line\n".repeat(100000));
+        Command command = new Command(List.of("zcat"));
+        command.setStdin(Files.newInputStream(compressed));
+        command.setStdout(output);
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(0, exitCode);
+        assertEquals("compressed line\n".repeat(100000), output.toString());
+        Files.deleteIfExists(compressed);
+    }
+
+    @Test
+    void testExecuteZcatCorrupted() throws IOException {
+        Path compressed = createGzipFile("compressed line\n".repeat(1000));
+        byte[] bytes = Files.readAllBytes(compressed);
+        // keep the header, cut the rest
+        Files.write(compressed, Arrays.copyOf(bytes, 20));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Command command = new Command(List.of("zcat", compressed.toString()));
+        command.setStdout(output);
+        command.setStderr(new PrintStream(errors));
+
+        int exitCode = Executor.execute(command);
+
+        assertEquals(1, exitCode);
+        assertTrue(errors.toString().startsWith("zcat: "));
+        Files.deleteIfExists(compressed);
+    }
+
+    @Test
+    void testExecuteMissingFileMessage() {
+        for (String name : List.of("cat", "wc", "zcat")) {
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            Command command = new Command(List.of(name, "/nonexistent/file"));
+            command.setStdout(output);
+            command.setStderr(new PrintStream(errors));
+
+            assertEquals(1, Executor.execute(command), name);
+            assertEquals(name + ": /nonexistent/file (No such file or directory)\n", errors.toString(), name);
+        }
+    }
+
     @Test
         // Test for external command
     void testExecuteExternal() {
@@ -212,12 +651,47 @@ class ExecutorTest {
 
         String outputString = output.toString().trim();
         assertEquals("""
+                BoundedPipe.java
+                BrokenPipeException.java
+                BufferPool.java
+                Builtin.java
+                BuiltinRegistry.java
+                ByteAutomaton.java
+                ByteLineReader.java
+                ByteLines.java
                 CLI.java
                 Command.java
+                CompressedInput.java
+                Cut.java
+                Daemon.java
+                DaemonClient.java
+                DaemonProtocol.java
                 Environment.java
                 Executor.java
+                ExternalSort.java
+                FileChecksums.java
+                FusedCommand.java
+                Glob.java
+                GrepArgs.java
+                HashLineCounter.java
+                History.java
+                IncrementalCounts.java
+                LineChannel.java
+                LineCounter.java
+                LineInput.java
+                LineMatcher.java
+                LineOutput.java
+                LongLineMatcher.java
+                ParallelGrep.java
                 Parser.java
-                Pipeline.java""", outputString);
+                Pipeline.java
+                PipelineLink.java
+                RegexLineMatcher.java
+                ResultCache.java
+                Session.java
+                SketchLineCounter.java
+                Tail.java
+                Tee.java""", outputString);
 
     }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for FileChecksums
+class FileChecksumsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testKnownChecksums() throws IOException {
+        Path abc = Files.writeString(dir.resolve("abc"), "abc");
+        Path empty = Files.writeString(dir.resolve("empty"), "");
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  " + abc + "\n"
+                        + "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855  " + empty + "\n",
+                run(0, "sha256sum", abc.toString(), empty.toString()));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72  " + abc + "\n", run(0, "md5sum", abc.toString()));
+        assertEquals("352441c2  " + abc + "\n", run(0, "crc32", abc.toString()));
+        assertEquals("364b3fb7  " + abc + "\n", run(0, "crc32", "--fast", abc.toString()));
+    }
+
+    @Test
+    void testInput() {
+        Command command = new Command(List.of("sha256sum"));
+        command.setStdin(new ByteArrayInputStream("abc".getBytes()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+
+        assertEquals(0, Executor.execute(command));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  -\n", output.toString());
+    }
+
+    @Test
+    void testParallelResultsInArgumentOrder() throws Exception {
+        Random random = new Random(7);
+        List<String> args = new ArrayList<>(List.of("sha256sum"));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            // big files first, so later files are done before them
+            byte[] data = new byte[(40 - i) * 50_000 + random.nextInt(1000)];
+            random.nextBytes(data);
+            Path file = Files.write(dir.resolve("file" + i), data);
+            args.add(file.toString());
+            String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+            expected.append(checksum).append("  ").append(file).append('\n');
+        }
+
+        assertEquals(expected.toString(), run(0, args.toArray(new String[0])));
+    }
+
+    @Test
+    void testFileMappedInWindows() throws Exception {
+        byte[] data = new byte[1_000_003];
+        new Random(3).nextBytes(data);
+        Path file = Files.write(dir.resolve("data"), data);
+
+        // windows smaller than the file and not aligned with its end
+        String checksum = new FileChecksums("md5sum", "MD5", 4096 * 3).hash(file);
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data)), checksum);
+        assertEquals(checksum, new FileChecksums("md5sum", "MD5", 4096 * 3).hash(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    void testCheck() throws IOException {
+        Path good = Files.writeString(dir.resolve("good"), "abc");
+        Path changed = Files.writeString(dir.resolve("changed"), "abd");
+        Path list = Files.writeString(dir.resolve("list"),
+                "352441c2  " + good + "\n"
+                        + "352441C2 *" + good + "\n"
+                        + "352441c2  " + changed + "\n"
+                        + "not a checksum line\n"
+                        + "352441c2  " + dir.resolve("missing") + "\n");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        assertEquals(good + ": OK\n" + good + ": OK\n" + changed + ": FAILED\n"
+                        + dir.resolve("missing") + ": FAILED open or read\n",
+                run(1, errors, "crc32", "-c", list.toString()));
+        assertEquals("crc32: " + dir.resolve("missing") + ": No such file or directory\n"
+                        + "crc32: WARNING: 1 line is improperly formatted\n"
+                        + "crc32: WARNING: 1 listed file could not be read\n"
+                        + "crc32: WARNING: 1 computed checksum did NOT match\n",
+                errors.toString());
+
+        Path valid = Files.writeString(dir.resolve("valid"), "352441c2  " + good + "\n");
+        assertEquals(good + ": OK\n", run(0, "crc32", "-c", valid.toString()));
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        Path abc = Files.writeString(dir.resolve("abc"), "abc");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        // the other files are still hashed
+        assertEquals("900150983cd24fb0d6963f7d28e17f72  " + abc + "\n",
+                run(1, errors, "md5sum", dir.resolve("missing").toString(), abc.toString(), dir.toString()));
+        assertEquals("md5sum: " + dir.resolve("missing") + ": No such file or directory\n"
+                + "md5sum: " + dir + ": Is a directory\n", errors.toString());
+
+        errors.reset();
+        run(1, errors, "md5sum", "--fast", abc.toString());
+        assertEquals("md5sum: --fast is only supported by crc32\n", errors.toString());
+
+        errors.reset();
+        run(1, errors, "sha256sum", "-c", abc.toString());
+        assertEquals("sha256sum: " + abc + ": no properly formatted checksum lines found\n", errors.toString());
+    }
+
+    private static String run(int exitCode, String... tokens) {
+        return run(exitCode, new ByteArrayOutputStream(), tokens);
+    }
+
+    private static String run(int exitCode, ByteArrayOutputStream errors, String... tokens) {
+        Command command = new Command(List.of(tokens));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        command.setStderr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        assertEquals(exitCode, Executor.execute(command));
+        return output.toString();
+    }
+}
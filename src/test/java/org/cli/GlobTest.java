@@ -0,0 +1,99 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for Glob
+class GlobTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testIsPattern() {
+        assertTrue(Glob.isPattern("*.log"));
+        assertTrue(Glob.isPattern("file?.txt"));
+        assertTrue(Glob.isPattern("[ab].txt"));
+        assertFalse(Glob.isPattern("app.log"));
+        assertFalse(Glob.isPattern("'*.log'"));
+        assertFalse(Glob.isPattern("\"*.log\""));
+    }
+
+    @Test
+    void testWildcards() throws IOException {
+        create("a.log", "b.log", "c.txt", "ab.log", ".hidden.log");
+
+        assertEquals(paths("a.log", "ab.log", "b.log"), Glob.expand(dir + "/*.log"));
+        assertEquals(paths("a.log", "b.log"), Glob.expand(dir + "/?.log"));
+        assertEquals(paths("a.log", "c.txt"), Glob.expand(dir + "/[ac].*"));
+        assertEquals(paths("b.log"), Glob.expand(dir + "/[!ac].*"));
+        assertEquals(paths(".hidden.log"), Glob.expand(dir + "/.*.log"));
+    }
+
+    @Test
+    void testNoMatchKeepsPattern() {
+        String pattern = dir + "/*.none";
+
+        assertEquals(List.of(pattern), Glob.expand(pattern));
+        assertEquals(List.of(dir + "/missing/*"), Glob.expand(dir + "/missing/*"));
+    }
+
+    @Test
+    void testDirectories() throws IOException {
+        create("logs/one/a.log", "logs/two/b.log", "logs/c.log", "logs/d.txt", "logs/.git/e.log");
+
+        assertEquals(paths("logs/one/a.log", "logs/two/b.log"), Glob.expand(dir + "/logs/*/*.log"));
+        assertEquals(paths("logs/c.log", "logs/one/a.log", "logs/two/b.log"), Glob.expand(dir + "/logs/**/*.log"));
+        assertEquals(paths("logs/one/", "logs/two/"), Glob.expand(dir + "/logs/*/"));
+        assertEquals(paths("logs/c.log", "logs/d.txt", "logs/one", "logs/one/a.log", "logs/two", "logs/two/b.log"),
+                Glob.expand(dir + "/logs/**"));
+    }
+
+    @Test
+    void testCachedListingUntilDirectoryChanges() throws IOException {
+        create("a.log");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Files.setLastModifiedTime(dir, old);
+        assertEquals(paths("a.log"), Glob.expand(dir + "/*.log"));
+
+        // the directory looks unchanged, so the cached listing is used
+        create("b.log");
+        Files.setLastModifiedTime(dir, old);
+        assertEquals(paths("a.log"), Glob.expand(dir + "/*.log"));
+
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(old.toMillis() + 1000));
+        assertEquals(paths("a.log", "b.log"), Glob.expand(dir + "/*.log"));
+    }
+
+    @Test
+    void testRecentlyChangedDirectoryIsListedAgain() throws IOException {
+        create("a.log");
+        assertEquals(paths("a.log"), Glob.expand(dir + "/*.log"));
+
+        // a change in the same tick of the modification time is still seen
+        FileTime modified = Files.getLastModifiedTime(dir);
+        create("b.log");
+        Files.setLastModifiedTime(dir, modified);
+        assertEquals(paths("a.log", "b.log"), Glob.expand(dir + "/*.log"));
+    }
+
+    private void create(String... names) throws IOException {
+        for (String name : names) {
+            Path file = dir.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, name);
+        }
+    }
+
+    private List<String> paths(String... names) {
+        return List.of(names).stream().map(name -> dir + "/" + name).toList();
+    }
+}
@@ -0,0 +1,180 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for History
+class HistoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecall() throws IOException {
+        History history = new History(dir.resolve("history"));
+        history.add("grep ERROR app.log");
+        history.add("wc app.log");
+        history.add("grep -i warn app.log | wc");
+
+        assertEquals("grep -i warn app.log | wc", history.recall("!"));
+        assertEquals("wc app.log", history.recall("2"));
+        assertEquals("grep -i warn app.log | wc", history.recall("gr"));
+        assertEquals("grep ERROR app.log", history.recall("grep E"));
+        assertNull(history.recall("4"));
+        assertNull(history.recall("cat"));
+        // a prefix longer than the entries
+        assertNull(history.recall("wc app.log and more"));
+    }
+
+    @Test
+    void testEmptyHistory() throws IOException {
+        History history = new History(dir.resolve("missing"));
+
+        assertEquals(0, history.size());
+        assertNull(history.recall("!"));
+        assertNull(history.recall("echo"));
+    }
+
+    @Test
+    void testSearchMatchesScan() throws IOException {
+        History history = new History(dir.resolve("history"));
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String entry = switch (i % 4) {
+                case 0 -> "grep ERROR log" + i + ".txt";
+                case 1 -> "cat file" + (i % 7) + " | wc";
+                case 2 -> "echo été " + i;
+                default -> "sort -k " + (i % 5) + " data";
+            };
+            entries.add(entry);
+            history.add(entry);
+        }
+
+        for (String query : List.of("ERROR", "file3 |", "té", "-k 4", "99", "e", "no such text", "grep")) {
+            List<Integer> expected = new ArrayList<>();
+            List<Integer> expectedPrefix = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).contains(query)) {
+                    expected.add(i);
+                }
+                if (entries.get(i).startsWith(query)) {
+                    expectedPrefix.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            history.forEachMatch(query, false, found::add);
+            List<Integer> foundPrefix = new ArrayList<>();
+            history.forEachMatch(query, true, foundPrefix::add);
+
+            assertEquals(expected, found, query);
+            assertEquals(expectedPrefix, foundPrefix, query);
+        }
+    }
+
+    @Test
+    void testIndexSeesEntriesOfOtherSessions() throws IOException {
+        Path file = dir.resolve("history");
+        History first = new History(file);
+        History second = new History(file);
+        first.add("echo one");
+        assertEquals("echo one", second.recall("echo"));
+
+        second.add("echo two");
+        assertEquals(2, first.size());
+        assertEquals("echo two", first.recall("echo"));
+    }
+
+    @Test
+    void testIncompleteLineIsNotIndexed() throws IOException {
+        Path file = dir.resolve("history");
+        History history = new History(file);
+        history.add("echo done");
+        // another session is in the middle of writing its line
+        Files.write(file, "echo par".getBytes(), StandardOpenOption.APPEND);
+
+        assertEquals(1, history.size());
+        assertEquals("echo done", history.recall("echo"));
+
+        Files.write(file, "tial\n".getBytes(), StandardOpenOption.APPEND);
+        assertEquals(2, history.size());
+        assertEquals("echo partial", history.recall("echo"));
+    }
+
+    @Test
+    void testConcurrentSessionsDoNotInterleave() throws Exception {
+        Path file = dir.resolve("history");
+        List<Thread> sessions = new ArrayList<>();
+        Set<String> expected = new HashSet<>();
+        for (int s = 0; s < 4; s++) {
+            History history = new History(file);
+            String line = ("session " + s + " ").repeat(200);
+            for (int i = 0; i < 100; i++) {
+                expected.add(line + i);
+            }
+            Thread session = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        history.add(line + i);
+                    }
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+            });
+            sessions.add(session);
+            session.start();
+        }
+        for (Thread session : sessions) {
+            session.join();
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(expected.size(), lines.size());
+        assertEquals(expected, new HashSet<>(lines));
+    }
+
+    @Test
+    void testHistoryBuiltin() throws IOException {
+        Path file = dir.resolve("history");
+        History history = new History(file);
+        history.add("grep ERROR app.log");
+        history.add("wc app.log");
+        history.add("grep warn app.log");
+
+        String property = System.getProperty("cli.history");
+        System.setProperty("cli.history", file.toString());
+        try {
+            assertEquals("    1  grep ERROR app.log\n    2  wc app.log\n    3  grep warn app.log\n", run("history"));
+            assertEquals("    2  wc app.log\n    3  grep warn app.log\n", run("history", "-n", "2"));
+            assertEquals("    2  wc app.log\n", run("history", "-p", "wc"));
+            assertEquals("    1  grep ERROR app.log\n    3  grep warn app.log\n", run("history", "-p", "grep"));
+            assertEquals("", run("history", "cat"));
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.history");
+            } else {
+                System.setProperty("cli.history", property);
+            }
+        }
+    }
+
+    private static String run(String... tokens) {
+        Command command = new Command(List.of(tokens));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        assertEquals(0, Executor.execute(command));
+        return output.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for IncrementalCounts
+class IncrementalCountsTest {
+
+    @TempDir
+    Path dir;
+
+    // Counts lines and remembers how many bytes were read
+    private long bytesRead;
+
+    private void countLines(InputStream region, long[] counts) throws IOException {
+        int b;
+        while ((b = region.read()) != -1) {
+            bytesRead++;
+            counts[0] += b == '\n' ? 1 : 0;
+        }
+    }
+
+    @Test
+    void testReadsOnlyAppendedBytes() throws IOException {
+        IncrementalCounts incremental = new IncrementalCounts(dir.resolve("state"));
+        Path log = Files.writeString(dir.resolve("app.log"), "one\ntwo\n");
+
+        assertEquals(2, incremental.count("lines", log, 1, this::countLines)[0]);
+        assertEquals(8, bytesRead);
+
+        append(log, "three\n");
+        bytesRead = 0;
+        assertEquals(3, incremental.count("lines", log, 1, this::countLines)[0]);
+        assertEquals(6, bytesRead);
+
+        // nothing new
+        bytesRead = 0;
+        assertEquals(3, incremental.count("lines", log, 1, this::countLines)[0]);
+        assertEquals(0, bytesRead);
+
+        // another query has its own state
+        assertEquals(3, incremental.count("other", log, 1, this::countLines)[0]);
+        assertEquals(14, bytesRead);
+    }
+
+    @Test
+    void testIncompleteLineIsCountedAgain() throws IOException {
+        IncrementalCounts incremental = new IncrementalCounts(dir.resolve("state"));
+        Path log = Files.writeString(dir.resolve("app.log"), "one\ntw");
+
+        assertEquals(1, incremental.count("lines", log, 1, this::countLines)[0]);
+
+        append(log, "o\nthr");
+        bytesRead = 0;
+        assertEquals(2, incremental.count("lines", log, 1, this::countLines)[0]);
+        // the incomplete line again, then the rest
+        assertEquals(2 + 5, bytesRead);
+    }
+
+    @Test
+    void testRotatedOrTruncatedFileIsCountedAgain() throws IOException {
+        IncrementalCounts incremental = new IncrementalCounts(dir.resolve("state"));
+        Path log = Files.writeString(dir.resolve("app.log"), "one\ntwo\nthree\n");
+        assertEquals(3, incremental.count("lines", log, 1, this::countLines)[0]);
+
+        // truncated
+        Files.writeString(log, "four\n");
+        assertEquals(1, incremental.count("lines", log, 1, this::countLines)[0]);
+
+        // truncated in place and written again past the previous offset
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        append(log, "a\nb\nc\nd\n");
+        assertEquals(4, incremental.count("lines", log, 1, this::countLines)[0]);
+
+        // rotated: a new file with the same name
+        Files.delete(log);
+        Files.writeString(log, "x\ny\nz\nw\nv\n");
+        bytesRead = 0;
+        assertEquals(5, incremental.count("lines", log, 1, this::countLines)[0]);
+        assertEquals(10, bytesRead);
+    }
+
+    @Test
+    void testBuiltinsMatchFullCounts() throws IOException {
+        Path log = Files.writeString(dir.resolve("app.log"), "INFO start\nERROR disk full\nINFO retry\n");
+        String property = System.getProperty("cli.incremental");
+        System.setProperty("cli.incremental", dir.resolve("state").toString());
+        try {
+            for (String appended : List.of("", "ERROR again\n", "INFO ok\nERROR x", " y z\n", "\n\n")) {
+                append(log, appended);
+                assertEquals(run(0, "wc", log.toString()), run(0, "wc", "--incremental", log.toString()));
+                assertEquals(run(0, "grep", "-c", "ERROR", log.toString()),
+                        run(0, "grep", "-c", "--incremental", "ERROR", log.toString()));
+            }
+            assertEquals("3\n", run(0, "grep", "-c", "ERROR", log.toString()));
+            // the case-insensitive count has its own state
+            assertEquals("3\n", run(0, "grep", "-i", "-c", "--incremental", "error", log.toString()));
+            assertEquals("0\n", run(0, "grep", "-c", "--incremental", "error", log.toString()));
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.incremental");
+            } else {
+                System.setProperty("cli.incremental", property);
+            }
+        }
+    }
+
+    @Test
+    void testErrors() {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        run(1, errors, "wc", "--incremental");
+        run(1, errors, "grep", "--incremental", "ERROR", "app.log");
+
+        assertEquals("wc: --incremental needs a file\ngrep: --incremental needs -c and a file\n", errors.toString());
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardOpenOption.APPEND);
+    }
+
+    private static String run(int exitCode, String... tokens) {
+        return run(exitCode, new ByteArrayOutputStream(), tokens);
+    }
+
+    private static String run(int exitCode, ByteArrayOutputStream errors, String... tokens) {
+        Command command = new Command(List.of(tokens));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        command.setStderr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        assertEquals(exitCode, Executor.execute(command));
+        return output.toString();
+    }
+}
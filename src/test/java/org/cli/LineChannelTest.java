@@ -0,0 +1,209 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for LineChannel
+class LineChannelTest {
+
+    private static final String TEXT = "first\r\nsecond\rthird\n\nlast\r";
+
+    @Test
+    void testStreamViewKeepsBytes() throws Exception {
+        LineChannel channel = new LineChannel(8, 2);
+        byte[] data = TEXT.repeat(100).getBytes();
+
+        Thread writer = new Thread(() -> {
+            try (OutputStream sink = channel.sink()) {
+                // odd chunks split the lines and the "\r\n" terminators between writes
+                for (int i = 0; i < data.length; i += 3) {
+                    sink.write(data, i, Math.min(3, data.length - i));
+                }
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+        writer.start();
+        byte[] received = channel.source().readAllBytes();
+        writer.join();
+
+        assertTrue(Arrays.equals(data, received));
+    }
+
+    @Test
+    void testLinesSplitLikeReadLine() throws Exception {
+        String text = TEXT.repeat(50) + "no terminator";
+        LineChannel channel = new LineChannel(16, 3);
+
+        Thread writer = new Thread(() -> {
+            try (OutputStream sink = channel.sink()) {
+                sink.write(text.getBytes());
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+        writer.start();
+        List<String> lines = readLines(channel.reader());
+        writer.join();
+
+        assertEquals(new BufferedReader(new StringReader(text)).lines().toList(), lines);
+    }
+
+    @Test
+    void testLineLongerThanBatch() throws Exception {
+        String longLine = "x".repeat(1000);
+        LineChannel channel = new LineChannel(16, 4);
+
+        Thread writer = new Thread(() -> {
+            try {
+                byte[] bytes = longLine.getBytes();
+                channel.writeLine(bytes, 0, bytes.length);
+                channel.writeLine("short".getBytes(), 0, 5);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            } finally {
+                channel.closeWriter();
+            }
+        });
+        writer.start();
+        List<String> lines = readLines(channel.reader());
+        writer.join();
+
+        assertEquals(List.of(longLine, "short"), lines);
+    }
+
+    @Test
+    void testLineLongerThanWindowComesInParts() throws Exception {
+        // characters cut by the window, a '\r' after 63 bytes and a last part filling the window
+        String text = "\u00e9\u20ac".repeat(40) + "\r\n" + "x".repeat(63) + "\r" + "y".repeat(100) + "\n" + "z".repeat(128);
+        String written = "w".repeat(192);
+        List<String> expected = new ArrayList<>(List.of(written));
+        expected.addAll(new BufferedReader(new StringReader(text)).lines().toList());
+
+        for (boolean whole : List.of(true, false)) {
+            LineChannel channel = new LineChannel(16, 4, 64);
+            Thread writer = new Thread(() -> {
+                try {
+                    channel.writeLine(written.getBytes(), 0, written.length());
+                    OutputStream sink = channel.sink();
+                    byte[] bytes = text.getBytes();
+                    for (int i = 0; i < bytes.length; i += 7) {
+                        sink.write(bytes, i, Math.min(7, bytes.length - i));
+                    }
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                } finally {
+                    channel.closeWriter();
+                }
+            });
+            writer.start();
+            if (whole) {
+                assertEquals(expected, readLines(channel.reader()));
+            } else {
+                // the parts are joined again at the ends of the lines, none is longer than the window
+                List<String> lines = new ArrayList<>();
+                StringBuilder line = new StringBuilder();
+                LineInput parts = LineInput.of(channel.parts());
+                while (parts.next()) {
+                    assertTrue(parts.length() <= 64);
+                    line.append(parts.string());
+                    if (!parts.isPartial()) {
+                        lines.add(line.toString());
+                        line.setLength(0);
+                    }
+                }
+                assertEquals(expected, lines);
+            }
+            writer.join();
+        }
+    }
+
+    @Test
+    void testWrittenLinesReadAsStream() throws Exception {
+        LineChannel channel = new LineChannel(32, 2);
+
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    byte[] line = ("line " + i).getBytes();
+                    channel.writeLine(line, 0, line.length);
+                }
+            } catch (IOException e) {
+                fail(e.getMessage());
+            } finally {
+                channel.closeWriter();
+            }
+        });
+        writer.start();
+        List<String> lines = new BufferedReader(new InputStreamReader(channel.source())).lines().toList();
+        writer.join();
+
+        assertEquals(1000, lines.size());
+        assertEquals("line 999", lines.getLast());
+    }
+
+    @Test
+    void testEndOfStreamAfterWriterClosed() throws IOException {
+        LineChannel channel = new LineChannel();
+        channel.sink().write("data".getBytes());
+        channel.closeWriter();
+
+        assertEquals("data", new String(channel.source().readAllBytes()));
+        assertEquals(-1, channel.source().read());
+    }
+
+    @Test
+    void testClosedReaderBreaksChannel() {
+        LineChannel channel = new LineChannel();
+        channel.closeReader();
+
+        assertThrows(BrokenPipeException.class, () -> channel.sink().write("data".getBytes()));
+    }
+
+    @Test
+    void testClosedReaderWakesBlockedWriter() throws Exception {
+        LineChannel channel = new LineChannel(8, 1);
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            try {
+                // writes more batches than the pool has, so the writer blocks
+                byte[] line = "line".getBytes();
+                while (true) {
+                    channel.writeLine(line, 0, line.length);
+                }
+            } catch (IOException e) {
+                error.set(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(100);
+        channel.closeReader();
+        writer.join();
+
+        assertInstanceOf(BrokenPipeException.class, error.get());
+    }
+
+    private static List<String> readLines(ByteLines reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (reader.next()) {
+            line.reset();
+            line.write(reader.buffer(), reader.start(), reader.length());
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,108 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for HashLineCounter and SketchLineCounter
+class LineCounterTest {
+
+    private static void add(LineCounter counter, String line) {
+        byte[] bytes = ("padding" + line).getBytes();
+        // lines are slices of a bigger buffer in practice
+        counter.add(bytes, "padding".length(), bytes.length - "padding".length());
+    }
+
+    @Test
+    void testExactCountsWithResize() throws IOException {
+        LineCounter counter = new HashLineCounter();
+        for (int i = 0; i < 100000; i++) {
+            add(counter, "line " + (i % 5000));
+        }
+        add(counter, "line 42");
+
+        assertEquals(5000, counter.distinct());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        counter.writeTop(output, 2);
+        assertEquals("     21 line 42\n     20 line 0\n", output.toString());
+    }
+
+    @Test
+    void testExactEmptyLineAndTies() throws IOException {
+        LineCounter counter = new HashLineCounter();
+        add(counter, "b");
+        add(counter, "");
+        add(counter, "a");
+        add(counter, "");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        counter.writeTop(output, 0);
+        assertEquals("      2 \n      1 b\n      1 a\n", output.toString());
+    }
+
+    @Test
+    void testApproximateDistinct() {
+        LineCounter counter = new SketchLineCounter(10);
+        int distinct = 200000;
+        for (int i = 0; i < distinct; i++) {
+            add(counter, "user-" + i);
+        }
+
+        // HyperLogLog with 2^14 registers has about 1% standard error
+        assertEquals(distinct, counter.distinct(), distinct * 0.03);
+    }
+
+    @Test
+    void testApproximateHeavyHitters() throws IOException {
+        LineCounter counter = new SketchLineCounter(3);
+        for (int i = 0; i < 50000; i++) {
+            add(counter, "noise-" + i);
+            if (i % 10 == 0) {
+                add(counter, "ERROR");
+            }
+            if (i % 20 == 0) {
+                add(counter, "WARN");
+            }
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        counter.writeTop(output, 2);
+        String[] lines = output.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].endsWith(" ERROR"));
+        assertTrue(lines[1].endsWith(" WARN"));
+        // Count-Min sketch never underestimates
+        assertTrue(Long.parseLong(lines[0].trim().split(" ")[0]) >= 5000);
+    }
+
+    @Test
+    void testApproximateHeavyHittersReplaced() throws IOException {
+        // line i occurs i + 1 times in random order, the weakest heavy hitters are replaced over and over
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j <= i; j++) {
+                lines.add("line " + i);
+            }
+        }
+        Collections.shuffle(lines, new Random(3));
+        LineCounter counter = new SketchLineCounter(20);
+        for (String line : lines) {
+            add(counter, line);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        counter.writeTop(output, 0);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 199; i >= 180; i--) {
+            expected.append(String.format("%7d line %d\n", i + 1, i));
+        }
+        assertEquals(expected.toString(), output.toString());
+    }
+}
@@ -0,0 +1,149 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for LongLineMatcher and the builtins reading lines longer than the window
+class LongLineMatcherTest {
+
+    private static final int WINDOW = 1 << 20;
+
+    // Lines of the text that match, searched in parts of the window size
+    private static List<String> grep(String regex, String text, int window, long maxLineBytes) throws IOException {
+        return grep(LineMatcher.compile(Pattern.compile(regex)), text, window, maxLineBytes);
+    }
+
+    private static List<String> grep(LineMatcher matcher, String text, int window, long maxLineBytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Command command = new Command(List.of("grep"));
+        command.setStdout(output);
+        LineOutput result = LineOutput.of(command, output);
+        LongLineMatcher longLine = new LongLineMatcher(matcher, maxLineBytes, result);
+        LineInput lines = LineInput.windowed(new ByteArrayInputStream(text.getBytes()), window);
+        List<Boolean> matches = new ArrayList<>();
+        while (lines.next()) {
+            if (!lines.isContinued()) {
+                longLine.start(false);
+            }
+            longLine.add(lines);
+            if (!lines.isPartial()) {
+                matches.add(longLine.finish());
+            }
+        }
+        longLine.close();
+        result.flush();
+        String printed = output.toString();
+        List<String> printedLines = printed.isEmpty() ? List.of() : List.of(printed.split("\n", -1)).subList(0,
+                printed.split("\n", -1).length - 1);
+        assertEquals(matches.stream().filter(m -> m).count(), printedLines.size());
+        return printedLines;
+    }
+
+    @Test
+    void testMatchAcrossParts() throws IOException {
+        String line = "a".repeat(30) + "NEEDLE" + "b".repeat(30);
+
+        assertEquals(List.of(line), grep("NEEDLE", line + "\nother\n", 16, Long.MAX_VALUE));
+        assertEquals(List.of(), grep("NEEDLE", "other\n" + "a".repeat(100) + "\n", 16, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testAnchorsAtPartBorders() throws IOException {
+        // the second part starts with 'b' and the first one ends with 'a'
+        String line = "a".repeat(16) + "b".repeat(16) + "c";
+
+        assertEquals(List.of(), grep("^b", line, 16, Long.MAX_VALUE));
+        assertEquals(List.of(), grep("a$", line, 16, Long.MAX_VALUE));
+        assertEquals(List.of(), grep("\\bb", line, 16, Long.MAX_VALUE));
+        assertEquals(List.of(line), grep("^a+b+c$", line, 16, Long.MAX_VALUE));
+        assertEquals(List.of(line), grep("c$", line, 16, Long.MAX_VALUE));
+
+        // the same with java.util.regex
+        for (String regex : List.of("^b", "a$", "\\bb")) {
+            assertEquals(List.of(), grep(new RegexLineMatcher(Pattern.compile(regex)), line, 16, Long.MAX_VALUE));
+        }
+        assertEquals(List.of(line), grep(new RegexLineMatcher(Pattern.compile("^a+b+c$")), line, 16, Long.MAX_VALUE));
+        assertEquals(List.of(line), grep(new RegexLineMatcher(Pattern.compile("(?<=b)c$")), line, 16, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testAutomatonHasNoOverlapLimit() throws IOException {
+        // the match is longer than the overlap java.util.regex keeps between parts
+        String line = "<" + "x".repeat(RegexLineMatcher.OVERLAP + 4096) + ">";
+
+        assertEquals(List.of(line), grep("<x*>", line, 1024, Long.MAX_VALUE));
+        assertEquals(List.of(), grep(new RegexLineMatcher(Pattern.compile("<x*>")), line, 1024, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testMaxLineBytes() throws IOException {
+        String line = "x".repeat(40) + "match" + "y".repeat(40);
+
+        // the cut part was spilled before the match
+        assertEquals(List.of("x".repeat(10)), grep("match", line, 16, 10));
+        assertEquals(List.of(line.substring(0, 50)), grep("match", line, 16, 50));
+        // a cut never splits a character
+        assertEquals(List.of("é".repeat(5)), grep("z", "é".repeat(20) + "z", 16, 11));
+    }
+
+    @Test
+    void testWcLongLine() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String[] words = {"word", " ", "\t", "x\u0001y", "\u0001", "  ", "été", "\u000b"};
+        for (int i = 0; text.length() < 3 * WINDOW; i++) {
+            text.append(words[i * 7 % words.length]);
+        }
+        String longLine = " \u0001" + text + "\u0001 ";
+        String input = "short line\n" + longLine + "\n\nlast";
+
+        int expectedWords = 0;
+        for (String line : input.split("\n", -1)) {
+            expectedWords += line.isBlank() ? 0 : line.trim().split("\\s+").length;
+        }
+        String expected = String.format("%7d %7d %7d %s%n", 4, expectedWords, input.getBytes().length + 1, "");
+        assertEquals(expected, run(input, "wc"));
+    }
+
+    @Test
+    void testGrepLongLines() throws IOException {
+        // the matches are right at the border of the first window and in the last window
+        String first = "a".repeat(WINDOW - 3) + "NEEDLE" + "b".repeat(WINDOW);
+        String second = "c".repeat(2 * WINDOW) + "NEEDLE";
+        String context = "d".repeat(3 * WINDOW);
+        String input = "x\n" + first + "\n" + context + "\ny\n" + second + "\n" + context + "\n";
+
+        assertEquals(first + "\n" + second + "\n", run(input, "grep", "NEEDLE"));
+        assertEquals(first + "\n" + context + "\n------\n" + second + "\n" + context + "\n------\n",
+                run(input, "grep", "-A", "1", "NEEDLE"));
+        assertEquals("aaaa\ncccc\n", run(input, "grep", "--max-line-bytes", "4", "NEEDLE"));
+        assertEquals("x\ny\n", run(input, "grep", "--max-line-bytes", "4", "^[xy]$"));
+    }
+
+    @Test
+    void testInvalidMaxLineBytes() throws IOException {
+        Command command = new Command(List.of("grep", "--max-line-bytes", "-1", "x"));
+        command.setStdin(new ByteArrayInputStream("x\n".getBytes()));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        command.setStderr(new java.io.PrintStream(errors));
+
+        assertEquals(1, Executor.execute(command));
+        assertEquals("grep: invalid number of bytes: -1\n", errors.toString());
+    }
+
+    private static String run(String input, String... tokens) {
+        Command command = new Command(List.of(tokens));
+        command.setStdin(new ByteArrayInputStream(input.getBytes()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        assertEquals(0, Executor.execute(command));
+        return output.toString();
+    }
+}
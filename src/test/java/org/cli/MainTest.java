@@ -1,5 +1,206 @@
 package org.cli;
 
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
 class MainTest {
+    @TempDir
+    Path dir;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private Session session(String input) {
+        return new Session(new ByteArrayInputStream(input.getBytes()), output, new PrintStream(errors, true));
+    }
+
+    @Test
+    void testSessionRun() {
+        Session session = session("");
+        assertEquals(0, session.run("  WORD=startup  "));
+        assertEquals(0, session.run("echo $WORD | cat"));
+        assertEquals("startup\n", output.toString());
+    }
+
+    @Test
+    void testSessionExitCode() {
+        Session session = session("");
+        assertEquals(1, session.run("cat " + dir.resolve("missing.txt")));
+        assertEquals(0, session.run("echo $?"));
+        assertEquals("1\n", output.toString());
+        assertTrue(errors.toString().startsWith("cat: "));
+    }
+
+    @Test
+    void testSessionParserErrorsGoToSessionStderr() {
+        session("").run("echo 'unclosed");
+        assertEquals("Parser error: Unclosed quotes.\n", errors.toString());
+    }
+
+    @Test
+    void testSessionRunLinesStopsAtExit() throws IOException {
+        Session session = session("echo one\nexit\necho two\n");
+        assertEquals(0, session.runLines());
+        assertTrue(session.isFinished());
+        assertEquals("one\n", output.toString());
+    }
+
+    @Test
+    void testSessionsAreIsolated() {
+        session("").run("WORD=first");
+        session("").run("echo $WORD");
+        assertEquals("\n", output.toString());
+    }
+
+    @Test
+    void testSessionHistoryRecall() throws IOException {
+        Session session = session("");
+        History history = new History(dir.resolve("history"));
+        session.setHistory(history);
+
+        session.run("echo first");
+        session.run("X=2");
+        session.run("echo second");
+        session.run("!ec");
+        session.run("!1");
+        session.run("!!");
+
+        assertEquals("first\nsecond\nsecond\nfirst\nfirst\n", output.toString());
+        assertEquals("echo second\necho first\necho first\n", errors.toString());
+        // recalled lines are recorded as they were executed
+        assertEquals(6, history.size());
+        assertEquals("echo first", history.entry(5));
+
+        assertEquals(1, session.run("!missing"));
+        assertTrue(errors.toString().endsWith("cli: !missing: event not found\n"));
+    }
+
+    @Test
+    void testDaemonRequest() throws Exception {
+        Path socket = dir.resolve("cli.sock");
+        Thread daemon = new Thread(() -> {
+            try {
+                Daemon.serve(socket);
+            } catch (IOException e) {
+                // the test fails on connection
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        waitForSocket(socket);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            InputStream stdin = new ByteArrayInputStream("b\na\nb\n".getBytes());
+            assertEquals(0, DaemonClient.run(socket, new String[]{"-c", "sort -u | wc"}, stdin));
+            InputStream lines = new ByteArrayInputStream("VALUE=42\necho $VALUE\nexit\n".getBytes());
+            assertEquals(0, DaemonClient.run(socket, new String[0], lines));
+            assertEquals(1, DaemonClient.run(socket, new String[]{"-c", "cat " + dir.resolve("missing.txt")},
+                    InputStream.nullInputStream()));
+        });
+        daemon.interrupt();
+    }
+
+    @Test
+    void testSessionInDirectory() throws IOException {
+        Files.writeString(dir.resolve("input.txt"), "b\na\n");
+        Session session = session("");
+        session.setDirectory(dir);
+
+        assertEquals(0, session.run("pwd"));
+        assertEquals(0, session.run("cat input.txt"));
+        assertEquals(0, session.run("echo *.txt"));
+        assertEquals(0, session.run("sort < input.txt > sorted.txt"));
+
+        assertEquals(dir + "\nb\na\ninput.txt\n", output.toString());
+        assertEquals("a\nb\n", Files.readString(dir.resolve("sorted.txt")));
+    }
+
+    @Test
+    void testDaemonRequestRunsInClientDirectory() throws Exception {
+        Path socket = dir.resolve("cli.sock");
+        Path client = Files.createDirectory(dir.resolve("client"));
+        Files.writeString(client.resolve("input.txt"), "b\na\n");
+        Thread daemon = new Thread(() -> {
+            try {
+                Daemon.serve(socket);
+            } catch (IOException e) {
+                // the test fails on connection
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        waitForSocket(socket);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            // relative names are resolved in the directory of the client, not of the daemon
+            assertEquals(0, DaemonClient.run(socket, client, new String[]{"-c", "sort input.txt > sorted.txt"},
+                    InputStream.nullInputStream()));
+        });
+        assertEquals("a\nb\n", Files.readString(client.resolve("sorted.txt")));
+        daemon.interrupt();
+    }
+
+    @Test
+    void testDaemonInteractiveRequestRecordsHistory() throws Exception {
+        Path socket = dir.resolve("cli.sock");
+        Path historyFile = dir.resolve("history");
+        String property = System.getProperty("cli.history");
+        System.setProperty("cli.history", historyFile.toString());
+        Thread daemon = new Thread(() -> {
+            try {
+                Daemon.serve(socket);
+            } catch (IOException e) {
+                // the test fails on connection
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        try {
+            waitForSocket(socket);
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                InputStream lines = new ByteArrayInputStream("echo typed\nexit\n".getBytes());
+                assertEquals(0, DaemonClient.run(socket, new String[]{DaemonClient.INTERACTIVE}, lines));
+                // piped scripts are not recorded
+                InputStream script = new ByteArrayInputStream("echo piped\n".getBytes());
+                assertEquals(0, DaemonClient.run(socket, new String[0], script));
+            });
+            assertEquals("echo typed\nexit\n", Files.readString(historyFile));
+        } finally {
+            daemon.interrupt();
+            if (property == null) {
+                System.clearProperty("cli.history");
+            } else {
+                System.setProperty("cli.history", property);
+            }
+        }
+    }
 
-}
\ No newline at end of file
+    private static void waitForSocket(Path socket) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            if (Files.exists(socket)) {
+                try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                    channel.connect(UnixDomainSocketAddress.of(socket));
+                    return;
+                } catch (IOException e) {
+                    // not listening yet
+                }
+            }
+            Thread.sleep(50);
+        }
+        fail("Daemon did not start");
+    }
+}
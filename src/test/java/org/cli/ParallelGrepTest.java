@@ -0,0 +1,183 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for ParallelGrep
+class ParallelGrepTest {
+
+    // Lines with their part flags, and whether whole lines match
+    private static List<String> describe(LineInput lines, LineMatcher matcher) throws IOException {
+        List<String> described = new ArrayList<>();
+        while (lines.next()) {
+            String line = lines.string() + (lines.isPartial() ? " partial" : "") + (lines.isContinued() ? " continued" : "");
+            if (!lines.isPartial() && !lines.isContinued()) {
+                line += matcher.find(lines) ? " match" : "";
+            }
+            described.add(line);
+        }
+        return described;
+    }
+
+    @Test
+    void testSameLinesAsSequentialInput() throws IOException {
+        String text = "ERROR one\nINFO two\r\nERROR\r\rthree\n\n" + "x".repeat(100) + "\nERROR" + "y".repeat(70)
+                + "\n" + "été ERROR ".repeat(10) + "\n" + "z".repeat(64) + "\nlast ERROR";
+        Pattern pattern = Pattern.compile("ERROR");
+        List<String> expected = describe(LineInput.windowed(new ByteArrayInputStream(text.getBytes()), 32),
+                LineMatcher.compile(pattern));
+
+        try (ParallelGrep parallel = ParallelGrep.start(new ByteArrayInputStream(text.getBytes()), pattern, 3, 8, 32)) {
+            assertEquals(expected, describe(parallel.lines(), parallel.matcher()));
+        }
+        // a long line at the end of the input
+        String longLast = "line\n" + "w".repeat(64);
+        try (ParallelGrep parallel = ParallelGrep.start(new ByteArrayInputStream(longLast.getBytes()), pattern, 2, 8, 32)) {
+            assertEquals(describe(LineInput.windowed(new ByteArrayInputStream(longLast.getBytes()), 32),
+                    LineMatcher.compile(pattern)), describe(parallel.lines(), parallel.matcher()));
+        }
+    }
+
+    @Test
+    void testSameOutputAsSingleThread() {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            text.append(random.nextInt(20) == 0 ? "ERROR " : "INFO ").append(i).append(random.nextInt(50) == 0 ? "\r\n" : "\n");
+            if (i == 50_000) {
+                // longer than the window, searched in parts
+                text.append("a".repeat(ByteLineReader.DEFAULT_WINDOW_SIZE + 100)).append(" ERROR\n");
+            }
+        }
+        text.append("ERROR without line break");
+
+        String property = System.getProperty("cli.grep.threads");
+        try {
+            for (List<String> args : List.of(List.of("grep", "ERROR"), List.of("grep", "-A", "2", "ERROR 4"),
+                    List.of("grep", "-i", "error 7\\d+$"))) {
+                System.setProperty("cli.grep.threads", "1");
+                String expected = grep(args, text.toString());
+                System.setProperty("cli.grep.threads", "4");
+                assertEquals(expected, grep(args, text.toString()), args.toString());
+            }
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.grep.threads");
+            } else {
+                System.setProperty("cli.grep.threads", property);
+            }
+        }
+    }
+
+    @Test
+    void testLinesAreHandedOverAsTheyArrive() throws Exception {
+        PipedOutputStream writer = new PipedOutputStream();
+        PipedInputStream input = new PipedInputStream(writer);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try (ParallelGrep parallel = ParallelGrep.start(input, Pattern.compile("b"), 2, 1024, 4096)) {
+            LineInput lines = parallel.lines();
+            writer.write("abc\n".getBytes());
+            writer.flush();
+            // the first line comes while the input stays open
+            assertTrue(reader.submit(lines::next).get(10, TimeUnit.SECONDS));
+            assertEquals("abc", lines.string());
+            assertTrue(parallel.matcher().find(lines));
+
+            writer.write("def\n".getBytes());
+            writer.close();
+            assertTrue(lines.next());
+            assertEquals("def", lines.string());
+            assertFalse(parallel.matcher().find(lines));
+            assertFalse(lines.next());
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReadErrorReachesGrep() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("device error");
+            }
+        };
+        try (ParallelGrep parallel = ParallelGrep.start(failing, Pattern.compile("x"), 2, 1024, 4096)) {
+            IOException e = assertThrows(IOException.class, () -> parallel.lines().next());
+            assertEquals("device error", e.getMessage());
+        }
+    }
+
+    @Test
+    void testBlocksGoBackToThePool() throws Exception {
+        byte[] text = "ERROR line\nINFO line\n".repeat(10_000).getBytes();
+        long lent = BufferPool.shared().stats().lentBuffers();
+
+        // read to the end, and stopped with blocks read ahead
+        try (ParallelGrep parallel = ParallelGrep.start(new ByteArrayInputStream(text), Pattern.compile("E"), 2, 1024, 4096)) {
+            LineInput lines = parallel.lines();
+            while (lines.next()) {
+                assertEquals(lines.string().startsWith("E"), parallel.matcher().find(lines));
+            }
+        }
+        try (ParallelGrep parallel = ParallelGrep.start(new ByteArrayInputStream(text), Pattern.compile("E"), 2, 1024, 4096)) {
+            assertTrue(parallel.lines().next());
+        }
+        // the reader returns the blocks it holds when it stops
+        for (int i = 0; i < 100 && BufferPool.shared().stats().lentBuffers() != lent; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(lent, BufferPool.shared().stats().lentBuffers());
+    }
+
+    @Test
+    void testNotEnabledOnLineChannelOrWithoutTrait() {
+        String property = System.getProperty("cli.grep.threads");
+        try {
+            System.setProperty("cli.grep.threads", "4");
+            Command command = new Command(List.of("grep", "x"));
+            command.setStdin(new ByteArrayInputStream(new byte[0]));
+            assertTrue(ParallelGrep.isEnabled(command, command.getStdin()));
+            // the lines of a channel are already split, grep reads them as they are
+            command.setStdin(new LineChannel());
+            assertFalse(ParallelGrep.isEnabled(command, command.getStdin()));
+            // the input of a builtin without the PARALLELIZABLE trait is never split
+            Command sort = new Command(List.of("sort"));
+            sort.setStdin(new ByteArrayInputStream(new byte[0]));
+            assertFalse(ParallelGrep.isEnabled(sort, sort.getStdin()));
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.grep.threads");
+            } else {
+                System.setProperty("cli.grep.threads", property);
+            }
+        }
+    }
+
+    private static String grep(List<String> args, String input) {
+        Command command = new Command(args);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdin(new ByteArrayInputStream(input.getBytes()));
+        command.setStdout(output);
+        command.setStderr(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        assertEquals(0, Executor.execute(command));
+        return output.toString();
+    }
+}
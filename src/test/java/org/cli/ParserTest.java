@@ -4,6 +4,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,7 +32,8 @@ public class ParserTest {
         findVarsAndReplace = Parser.class.getDeclaredMethod("findVarsAndReplace", String.class, Environment.class);
         findVarsAndReplace.setAccessible(true);
 
-        setVarIfNeed = Parser.class.getDeclaredMethod("setVarIfNeed", String.class, Environment.class);
+        setVarIfNeed = Parser.class.getDeclaredMethod("setVarIfNeed", String.class, Environment.class, List.class,
+                PrintStream.class);
         setVarIfNeed.setAccessible(true);
 
         evalQuotes = Parser.class.getDeclaredMethod("evalQuotes", String.class);
@@ -88,12 +90,21 @@ public class ParserTest {
         assertEquals(expected, tokens);
     }
 
+    @Test
+    void testTokenize_WithRedirections() throws InvocationTargetException, IllegalAccessException {
+        String input = "cat<in.txt | grep x >out.txt 2> \"err file\" >>log";
+        List<String> expected = List.of("cat", "<", "in.txt", "|", "grep", "x", ">", "out.txt", "2>", "\"err file\"", ">>", "log");
+        List<String> tokens = (List<String>) tokenize.invoke(null, input);
+
+        assertEquals(expected, tokens);
+    }
+
     @Order(1)
     @ParameterizedTest
     @CsvSource({"USER, Alice, Alice", "HOME, /home/Alice, /home/Alice", "withQuotes, aaa\"bbb\"ccc, aaabbbccc", "x, ec, ec", "y, \"ho 123\", ho 123"})
     void testSetVarIfNeed_ValidAssignment(String key, String value, String expect) throws InvocationTargetException, IllegalAccessException {
         String input = key + "=" + value;
-        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env);
+        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env, List.of(), System.err);
 
         assertTrue(result1);
         assertEquals(expect, env.getVar(key));
@@ -102,7 +113,7 @@ public class ParserTest {
     @Test
     void testSetVarIfNeed_equalInsideQuotes() throws InvocationTargetException, IllegalAccessException {
         String input = "thisEqual\"keq=value\"insideQuotes";
-        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env);
+        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env, List.of(), System.err);
 
         assertFalse(result1);
     }
@@ -110,7 +121,7 @@ public class ParserTest {
     @Test
     void testSetVarIfNeed_InvalidAssignment() throws InvocationTargetException, IllegalAccessException {
         String input = "echo something";
-        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env);
+        boolean result1 = (boolean) setVarIfNeed.invoke(null, input, env, List.of(), System.err);
 
         assertFalse(result1);
     }
@@ -183,6 +194,63 @@ public class ParserTest {
         assertEquals(List.of("world"), commands.get(1).getArgs());
     }
 
+    @Test
+    void testParse_Globs() {
+        String input = "wc src/main/java/org/cli/Glo?.java 'src/*' \"*.none\" *.none";
+        List<Command> commands = Parser.parse(input, env);
+
+        assertEquals(1, commands.size());
+        // quoted words and patterns without matches are not expanded
+        assertEquals(List.of("src/main/java/org/cli/Glob.java", "src/*", "*.none", "*.none"),
+                commands.getFirst().getArgs());
+    }
+
+    @Test
+    void testParse_CommandSubstitution() {
+        List<Command> commands = Parser.parse("echo $(echo 'a  b') \"x $(echo 'a  b')\" '$(echo a)' `pwd`", env);
+
+        assertEquals(1, commands.size());
+        // outputs are split into words outside double quotes
+        assertEquals(List.of("a", "b", "x a  b", "$(echo a)", System.getProperty("user.dir")),
+                commands.getFirst().getArgs());
+    }
+
+    @Test
+    void testParse_NestedSubstitutionAndPipeline() {
+        List<Command> commands = Parser.parse("echo pre$(echo $(echo deep) | grep de)post", env);
+
+        assertEquals(List.of("predeeppost"), commands.getFirst().getArgs());
+    }
+
+    @Test
+    void testParse_SubstitutionInAssignment() {
+        List<Command> commands = Parser.parse("SUB=$(echo one two)", env);
+
+        assertTrue(commands.isEmpty());
+        assertEquals("one two", env.getVar("SUB"));
+    }
+
+    @Test
+    void testParse_SubstitutionErrors() {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        assertTrue(Parser.parse("echo $(echo a", env, new PrintStream(errors)).isEmpty());
+        assertEquals("Parser error: Unclosed command substitution.\n", errors.toString());
+
+        String property = System.getProperty("cli.substitution.limit");
+        System.setProperty("cli.substitution.limit", "4");
+        try {
+            errors.reset();
+            assertTrue(Parser.parse("echo $(echo 123456789)", env, new PrintStream(errors)).isEmpty());
+            assertTrue(errors.toString().contains("Parser error: Output of $(echo 123456789) is larger than 4 bytes."));
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.substitution.limit");
+            } else {
+                System.setProperty("cli.substitution.limit", property);
+            }
+        }
+    }
+
     @Test
     void testParse_VariableAssignment() {
         String input = "VAR=value";
@@ -206,12 +274,47 @@ public class ParserTest {
         assertEquals(List.of("-l"), commands.get(2).getArgs());
     }
 
+    @Test
+    void testParse_Redirections() {
+        String input = "grep x < in.txt > 'out file.txt' 2> err.txt | wc >> total.txt";
+        List<Command> commands = Parser.parse(input, env);
+
+        assertEquals(2, commands.size());
+        Command grep = commands.getFirst();
+        assertEquals(List.of("x"), grep.getArgs());
+        assertEquals(Path.of("in.txt"), grep.getInputRedirect());
+        assertEquals(Path.of("out file.txt"), grep.getOutputRedirect());
+        assertFalse(grep.isAppendOutput());
+        assertEquals(Path.of("err.txt"), grep.getErrorRedirect());
+        Command wc = commands.get(1);
+        assertTrue(wc.getArgs().isEmpty());
+        assertEquals(Path.of("total.txt"), wc.getOutputRedirect());
+        assertTrue(wc.isAppendOutput());
+    }
+
+    @Test
+    void testParse_QuotedRedirectionIsArgument() {
+        List<Command> commands = Parser.parse("echo '>' file", env);
+
+        assertEquals(1, commands.size());
+        assertEquals(List.of(">", "file"), commands.getFirst().getArgs());
+        assertFalse(commands.getFirst().hasRedirects());
+    }
+
+    @Test
+    void testParse_MissingRedirectionTarget() {
+        ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errContent));
+        List<Command> commands = Parser.parse("echo hello > | wc", env);
+        assertTrue(commands.isEmpty());
+        assertTrue(errContent.toString().contains("Parser error: Missing file name after >."));
+    }
+
     @Test
     void testEmptyVariableValue() throws InvocationTargetException, IllegalAccessException {
         String input = "VAR=";
         ByteArrayOutputStream errContent = new ByteArrayOutputStream();
-        System.setErr(new PrintStream(errContent));
-        boolean result = (boolean) setVarIfNeed.invoke(null, input, env);
+        boolean result = (boolean) setVarIfNeed.invoke(null, input, env, List.of(), new PrintStream(errContent));
         assertFalse(result);
         assertTrue(errContent.toString().contains("Parser error: Variable value cannot be empty."));
     }
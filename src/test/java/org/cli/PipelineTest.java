@@ -2,13 +2,18 @@ package org.cli;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 public class PipelineTest {
@@ -136,7 +141,6 @@ public class PipelineTest {
         assertNotEquals(0, exitCode);
     }
 
-    @Disabled
     @Test
     public void testPipeDataTransferBetweenEchoAndCat() {
         Command echoCommand = new Command(List.of("echo", "Hello, world!"));
@@ -152,4 +156,192 @@ public class PipelineTest {
         assertEquals("Hello, world!", outputStream.toString().strip());
     }
 
+    @Test
+    public void testPipelineOfBuiltins() throws IOException {
+        Path testFile = Files.createTempFile("test", ".txt");
+        Files.write(testFile, List.of("first ERROR", "nothing", "second ERROR here"));
+
+        Command cat = new Command(List.of("cat", testFile.toString()));
+        Command grep = new Command(List.of("grep", "ERROR"));
+        Command wc = new Command(List.of("wc"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        wc.setStdout(output);
+
+        int exitCode = Pipeline.pipe(List.of(cat, grep, wc));
+
+        assertEquals(0, exitCode);
+        assertEquals("      2       5      30 \n", output.toString());
+
+        Files.delete(testFile);
+    }
+
+    @Test
+    public void testEarlyTerminationStopsUpstream() {
+        // `yes` never finishes by itself, it has to be stopped when `head` exits
+        Command yes = new Command(List.of("yes"));
+        Command head = new Command(List.of("head", "-n", "1"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        head.setStdout(output);
+
+        int exitCode = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> Pipeline.pipe(List.of(yes, head)));
+
+        assertEquals(0, exitCode);
+        assertEquals("y\n", output.toString());
+    }
+
+    @Test
+    public void testEarlyTerminationStopsUpstreamBuiltin() throws IOException {
+        Path testFile = Files.createTempFile("test", ".txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            content.append("line ").append(i).append("\n");
+        }
+        Files.writeString(testFile, content);
+
+        Command cat = new Command(List.of("cat", testFile.toString()));
+        Command grep = new Command(List.of("grep", "7"));
+        Command head = new Command(List.of("head", "-n", "1"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        head.setStdout(output);
+
+        int exitCode = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> Pipeline.pipe(List.of(cat, grep, head)));
+
+        assertEquals(0, exitCode);
+        assertEquals("line 7\n", output.toString());
+
+        Files.delete(testFile);
+    }
+
+    // Runs the line with or without fusion, returns the exit code, stdout and stderr
+    private static String runLine(String line, Path file, boolean fused) {
+        Environment env = new Environment();
+        env.setVar("FILE", file.toString());
+        List<Command> commands = Parser.parse(line, env);
+        if (fused) {
+            commands = FusedCommand.fuse(commands);
+            assertTrue(commands.stream().anyMatch(command -> command instanceof FusedCommand), line);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        for (Command command : commands) {
+            command.setStderr(new PrintStream(errors, true));
+        }
+        commands.getLast().setStdout(output);
+        int exitCode = Pipeline.pipe(commands);
+        return exitCode + "\n" + output + "\n" + errors;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "cat $FILE | grep ERROR",
+            "cat $FILE | wc",
+            "cat $FILE | grep -i error | wc",
+            "grep -A 1 ERROR $FILE | grep ^---",
+            "grep -w ERROR $FILE | grep -A 2 e | wc",
+            "cat $FILE | grep ERROR | sort | grep two",
+            "cat $FILE.missing | grep ERROR | wc",
+    })
+    public void testFusedChainMatchesPipeline(String line) throws IOException {
+        Path testFile = Files.createTempFile("test", ".txt");
+        // CR LF, a line that is not valid UTF-8, a blank line and no newline at the end
+        Files.write(testFile, "ERROR one\r\nok  two\n\n   \nerror \u00e9\n\u00ff\u00fe\nERROR two\nlast line"
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(runLine(line, testFile, false), runLine(line, testFile, true));
+
+        Files.delete(testFile);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "grep e $FILE | sort",
+            "grep -i error $FILE | wc",
+            "grep -A 1 ERROR $FILE | count",
+            "sort $FILE | grep e",
+            "sort $FILE | grep -A 1 o | wc",
+            "grep e $FILE | tail",
+    })
+    public void testLineChannelsMatchPipes(String line) throws IOException {
+        Path testFile = Files.createTempFile("test", ".txt");
+        // CR LF, a lone CR, a cut UTF-8 sequence, a blank line and no newline at the end
+        byte[] data = "ERROR one\r\nok  two\rthree\n\n\u00e9 ERROR \u20ac\nbroken \u00e2\u0082\nERROR two\nlast line"
+                .getBytes(StandardCharsets.ISO_8859_1);
+        Files.write(testFile, data);
+
+        String channels = System.getProperty("cli.lineChannels");
+        try {
+            System.setProperty("cli.lineChannels", "false");
+            String piped = runLineBytes(line, testFile);
+            System.setProperty("cli.lineChannels", "true");
+            assertEquals(piped, runLineBytes(line, testFile));
+        } finally {
+            if (channels == null) {
+                System.clearProperty("cli.lineChannels");
+            } else {
+                System.setProperty("cli.lineChannels", channels);
+            }
+            Files.delete(testFile);
+        }
+    }
+
+    // Exit code, output bytes and errors of the pipeline
+    private static String runLineBytes(String line, Path file) {
+        Environment env = new Environment();
+        env.setVar("FILE", file.toString());
+        List<Command> commands = Parser.parse(line, env);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        for (Command command : commands) {
+            command.setStderr(new PrintStream(errors, true));
+        }
+        commands.getLast().setStdout(output);
+        int exitCode = Pipeline.pipe(commands);
+        return exitCode + "\n" + output.toString(StandardCharsets.ISO_8859_1) + "\n" + errors;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "cat $FILE | grep ERROR",
+            "cat $FILE | grep -A 1 ERROR | wc",
+            "grep ERROR $FILE | wc",
+            "cat $FILE | grep y | grep ERROR",
+            "cat $FILE | wc",
+            "cat $FILE | sort | grep ERROR | wc",
+    })
+    public void testLongLinesMatchPipes(String line) throws IOException {
+        Path testFile = Files.createTempFile("test", ".txt");
+        // lines longer than the window of the input, the last one ends with a full window
+        int window = ByteLineReader.DEFAULT_WINDOW_SIZE;
+        Files.writeString(testFile, "ERROR short\n" + "x".repeat(window * 3 / 2) + " ERROR \u00e9\n"
+                + "y \u20ac".repeat(window) + "\nERROR y\n" + "z".repeat(window * 2), StandardCharsets.UTF_8);
+
+        String channels = System.getProperty("cli.lineChannels");
+        try {
+            String fused = runLine(line, testFile, true);
+            assertEquals(fused, runLine(line, testFile, false), line);
+            System.setProperty("cli.lineChannels", "false");
+            assertEquals(fused, runLine(line, testFile, false), line);
+            if (line.equals("grep ERROR $FILE | wc")) {
+                assertEquals("0\n" + String.format("%7d %7d %7d %n", 3, 7, window * 3 / 2 + 30) + "\n", fused);
+            }
+        } finally {
+            if (channels == null) {
+                System.clearProperty("cli.lineChannels");
+            } else {
+                System.setProperty("cli.lineChannels", channels);
+            }
+            Files.delete(testFile);
+        }
+    }
+
+    @Test
+    public void testFusionKeepsOtherStages() {
+        List<Command> commands = FusedCommand.fuse(Parser.parse("echo x | grep x | wc | cat f | grep y > out", new Environment()));
+
+        assertEquals(List.of("echo", "grep|wc", "cat|grep"), commands.stream().map(Command::getName).toList());
+        assertEquals(Path.of("out"), commands.getLast().getOutputRedirect());
+    }
 }
@@ -0,0 +1,146 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for ResultCache
+class ResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    // number of real executions of builtins
+    private int executions;
+
+    private String run(ResultCache cache, String... tokens) {
+        Command command = new Command(List.of(tokens));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        command.setStdout(output);
+        command.setStdin(new ByteArrayInputStream("from stdin\n".getBytes()));
+        int exitCode = cache.execute(command, c -> {
+            executions++;
+            return Executor.execute(c);
+        });
+        return exitCode + ":" + output;
+    }
+
+    @Test
+    void testRepeatedQueryIsReplayed() throws IOException {
+        Path file = Files.writeString(dir.resolve("log.txt"), "ERROR one\nok\nERROR two\n");
+        ResultCache cache = new ResultCache(1 << 20, null);
+
+        String first = run(cache, "grep", "ERROR", file.toString());
+        String second = run(cache, "grep", "ERROR", file.toString());
+
+        assertEquals("0:ERROR one\nERROR two\n", first);
+        assertEquals(first, second);
+        assertEquals(1, executions);
+        // other arguments are another query
+        run(cache, "grep", "ok", file.toString());
+        assertEquals(2, executions);
+    }
+
+    @Test
+    void testChangedFileIsReadAgain() throws IOException {
+        Path file = Files.writeString(dir.resolve("log.txt"), "a\nb\n");
+        ResultCache cache = new ResultCache(1 << 20, null);
+        run(cache, "wc", file.toString());
+
+        Files.writeString(file, "a\nb\nc\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+        assertTrue(run(cache, "wc", file.toString()).startsWith("0:      3"));
+        assertEquals(2, executions);
+    }
+
+    @Test
+    void testChannelsAreKept() throws IOException {
+        Path file = Files.writeString(dir.resolve("log.txt"), "ERROR one\n");
+        ResultCache cache = new ResultCache(1 << 20, null);
+        LineChannel lines = new LineChannel();
+        Command piped = new Command(List.of("grep", "ERROR", file.toString()));
+        piped.setStdout(lines);
+        assertEquals(0, cache.execute(piped, c -> {
+            executions++;
+            assertSame(lines, c.getLineOutput());
+            return 0;
+        }));
+        try (FileChannel target = FileChannel.open(dir.resolve("out.txt"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            Command redirected = new Command(List.of("grep", "ERROR", file.toString()));
+            redirected.setStdout(target);
+            assertEquals(0, cache.execute(redirected, c -> {
+                executions++;
+                assertSame(target, c.getStdoutChannel());
+                return 0;
+            }));
+        }
+
+        // the runs over channels were not recorded
+        assertEquals("0:ERROR one\n", run(cache, "grep", "ERROR", file.toString()));
+        assertEquals(3, executions);
+    }
+
+    @Test
+    void testStdinIsNotCached() {
+        ResultCache cache = new ResultCache(1 << 20, null);
+        run(cache, "wc");
+        run(cache, "wc");
+        assertEquals(2, executions);
+    }
+
+    @Test
+    void testFailureIsNotCached() throws IOException {
+        Path file = Files.writeString(dir.resolve("data.txt"), "x\n");
+        ResultCache cache = new ResultCache(1 << 20, null);
+        // sort fails on the invalid memory limit, the file argument alone doesn't make it cacheable
+        assertTrue(run(cache, "sort", "-S", "bad", file.toString()).startsWith("1:"));
+        run(cache, "sort", "-S", "bad", file.toString());
+        assertEquals(2, executions);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws IOException {
+        Path[] files = new Path[5];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Files.writeString(dir.resolve(i + ".txt"), String.valueOf(i).repeat(90) + "\n");
+        }
+        // room for four results of 91 bytes
+        ResultCache cache = new ResultCache(400, null);
+
+        for (Path file : files) {
+            run(cache, "sort", file.toString());
+        }
+        assertEquals(5, executions);
+        run(cache, "sort", files[1].toString());
+        run(cache, "sort", files[4].toString());
+        assertEquals(5, executions);
+        run(cache, "sort", files[0].toString());
+        assertEquals(6, executions);
+    }
+
+    @Test
+    void testPersistedBetweenSessions() throws IOException {
+        Path file = Files.writeString(dir.resolve("words.txt"), "b\na\nb\n");
+        Path store = dir.resolve("cache");
+
+        String first = run(new ResultCache(1 << 20, store), "count", file.toString());
+        String second = run(new ResultCache(1 << 20, store), "count", file.toString());
+
+        assertEquals("0:      2 b\n      1 a\n", first);
+        assertEquals(first, second);
+        assertEquals(1, executions);
+    }
+}
@@ -0,0 +1,193 @@
+package org.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Test class for Tee
+class TeeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCopiesToFilesAndStdout() throws IOException {
+        byte[] data = randomBytes(5 * Tee.CHUNK_SIZE + 123);
+        Path first = dir.resolve("first");
+        Path second = dir.resolve("second");
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+
+        assertEquals(0, run(data, stdout, "tee", first.toString(), second.toString()));
+
+        assertArrayEquals(data, stdout.toByteArray());
+        assertArrayEquals(data, Files.readAllBytes(first));
+        assertArrayEquals(data, Files.readAllBytes(second));
+    }
+
+    @Test
+    void testAppend() throws IOException {
+        Path file = dir.resolve("log");
+        Files.writeString(file, "old\n");
+
+        assertEquals(0, run("new\n".getBytes(), new ByteArrayOutputStream(), "tee", "-a", file.toString()));
+        assertEquals("old\nnew\n", Files.readString(file));
+
+        assertEquals(0, run("again\n".getBytes(), new ByteArrayOutputStream(), "tee", file.toString()));
+        assertEquals("again\n", Files.readString(file));
+    }
+
+    @Test
+    void testSlowSinkDoesNotStallOthers() throws Exception {
+        // fits in the queue of the blocked sink
+        byte[] data = randomBytes(Tee.CHUNK_SIZE * (Tee.QUEUE_CAPACITY / 2));
+        Path file = dir.resolve("fast");
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                received.write(b, off, len);
+            }
+        };
+        AtomicInteger exitCode = new AtomicInteger(-1);
+        Thread tee = new Thread(() -> exitCode.set(run(data, slow, "tee", file.toString())));
+        tee.start();
+
+        // the file gets the whole input while stdout is blocked
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((!Files.exists(file) || Files.size(file) < data.length) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(data.length, Files.size(file));
+        assertEquals(0, received.size());
+
+        release.countDown();
+        tee.join();
+        assertEquals(0, exitCode.get());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void testStoppedCopyReturnsQueuedChunks() throws Exception {
+        // more than the queue of stdout holds, the reading waits for it
+        byte[] data = randomBytes(Tee.CHUNK_SIZE * (Tee.QUEUE_CAPACITY * 2));
+        long lent = BufferPool.shared().stats().lentBuffers();
+        OutputStream blocked = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+        Tee tee = new Tee();
+        tee.addFile(dir.resolve("log"), false);
+        tee.addStdout(blocked, null);
+        AtomicInteger stopped = new AtomicInteger();
+        Thread copy = new Thread(() -> {
+            try {
+                tee.copy(new ByteArrayInputStream(data), new PrintStream(new ByteArrayOutputStream()));
+            } catch (InterruptedException e) {
+                stopped.incrementAndGet();
+            } catch (IOException e) {
+                // not expected, the pool check fails
+            }
+        });
+        copy.start();
+
+        // the file is written up to the chunks stdout is behind
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (copy.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        copy.interrupt();
+        copy.join(10_000);
+
+        assertEquals(1, stopped.get());
+        assertEquals(lent, BufferPool.shared().stats().lentBuffers());
+    }
+
+    @Test
+    void testBrokenStdoutStillWritesFiles() throws IOException {
+        byte[] data = randomBytes(3 * Tee.CHUNK_SIZE);
+        Path file = dir.resolve("log");
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new BrokenPipeException();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new BrokenPipeException();
+            }
+        };
+
+        assertEquals(0, run(data, broken, "tee", file.toString()));
+        assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testUnwritableFile() throws IOException {
+        Path missing = dir.resolve("missing").resolve("log");
+        Path file = dir.resolve("log");
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        Command command = new Command(List.of("tee", missing.toString(), file.toString()));
+        command.setStdin(new ByteArrayInputStream("data\n".getBytes()));
+        command.setStdout(stdout);
+        command.setStderr(new PrintStream(errors));
+
+        assertEquals(1, Executor.execute(command));
+        assertEquals("data\n", stdout.toString());
+        assertEquals("data\n", Files.readString(file));
+        assertTrue(errors.toString().startsWith("tee: " + missing), errors.toString());
+    }
+
+    private static int run(byte[] input, OutputStream stdout, String... tokens) {
+        Command command = new Command(Arrays.asList(tokens));
+        command.setStdin(new ByteArrayInputStream(input));
+        command.setStdout(stdout);
+        return Executor.execute(command);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}